@@ -0,0 +1,76 @@
+#!/bin/bash
+## begin license ##
+#
+# "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+#
+# Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+#
+# This file is part of "Meresco Lucene"
+#
+# "Meresco Lucene" is free software; you can redistribute it and/or modify
+# it under the terms of the GNU General Public License as published by
+# the Free Software Foundation; either version 2 of the License, or
+# (at your option) any later version.
+#
+# "Meresco Lucene" is distributed in the hope that it will be useful,
+# but WITHOUT ANY WARRANTY; without even the implied warranty of
+# MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+# GNU General Public License for more details.
+#
+# You should have received a copy of the GNU General Public License
+# along with "Meresco Lucene"; if not, write to the Free Software
+# Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+#
+## end license ##
+
+# Builds and runs the JMH benchmarks in benchmark/. Arguments are passed to
+# JMH, e.g. ./benchmark.sh JoinBenchmark -p numberOfDocs=100000
+#
+# With "load" as first argument it runs the end to end LoadTool instead, e.g.
+# ./benchmark.sh load --stateDir /tmp/load --records 1000000 --concurrency 16
+
+LUCENEVERSION=8.1.1
+JARS=$(find jars -type f -name "*.jar")
+LUCENE_JARS=$(find /usr/share/java -type f -name "lucene-*${LUCENEVERSION}.jar")
+JMH_JARS=$(find /usr/share/java -type f -name "jmh-core*.jar" -o -type f -name "jmh-generator-annprocess*.jar" -o -type f -name "jopt-simple*.jar")
+
+if [ -z "${JMH_JARS}" ]; then
+    echo "JMH is not installed. Please install the libjmh-java package."
+    exit 1
+fi
+
+mydir=$(cd $(dirname $0);pwd)
+BUILDDIR=${mydir}/build-benchmark
+
+test -d $BUILDDIR && rm -r $BUILDDIR
+mkdir $BUILDDIR
+
+CP="$(echo $JARS | tr ' ' ':'):$(echo $LUCENE_JARS | tr ' ' ':'):$(echo $JMH_JARS | tr ' ' ':')"
+
+JAVA_HOME=
+test -f /etc/debian_version && JAVA_HOME=/usr/lib/jvm/java-8-openjdk-amd64
+test -f /etc/redhat_version && JAVA_HOME=/usr/lib/jvm/java
+if [ -z "${JAVA_HOME}" ]; then
+    echo "Unable to determine JAVA_HOME"
+    exit 1
+fi
+
+if [ ! -d "${JAVA_HOME}" ]; then
+    echo "${JAVA_HOME} does not exist"
+    exit 1
+fi
+export JAVA_HOME
+
+${JAVA_HOME}/bin/javac -d $BUILDDIR -cp $CP `find src/org benchmark/org -name "*.java"`
+if [ "$?" != "0" ]; then
+    echo "Build failed"
+    exit 1
+fi
+
+if [ "$1" == "load" ]; then
+    shift
+    ${JAVA_HOME}/bin/java -Dfile.encoding=UTF-8 -cp $BUILDDIR:$CP org.meresco.lucene.benchmark.LoadTool "$@"
+    exit $?
+fi
+
+${JAVA_HOME}/bin/java -cp $BUILDDIR:$CP org.openjdk.jmh.Main "$@"
@@ -0,0 +1,137 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene.benchmark;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.facet.FacetField;
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.facet.taxonomy.CachedOrdinalsReader;
+import org.apache.lucene.facet.taxonomy.DocValuesOrdinalsReader;
+import org.apache.lucene.facet.taxonomy.OrdinalsReader;
+import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyReader;
+import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyWriter;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.TieredMergePolicy;
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.store.FSDirectory;
+import org.apache.lucene.util.BytesRef;
+import org.meresco.lucene.analysis.MerescoStandardAnalyzer;
+import org.meresco.lucene.search.SuperIndexSearcher;
+
+/**
+ * A synthetic index shared by the benchmarks. Document i has:
+ * <ul>
+ * <li>text: a Zipf-like mix of the terms t0 (every document) to t9 (one in 512)</li>
+ * <li>__key__: key i / DUPLICATES + 1, so every key occurs DUPLICATES times</li>
+ * <li>sort: a random sortable string</li>
+ * <li>facets cat (10 values) and tag (1000 values)</li>
+ * </ul>
+ * The index is written with several segments, like a live index between merges.
+ */
+public class BenchmarkIndex implements AutoCloseable {
+    public static final String KEY_FIELD = "__key__";
+    public static final int DUPLICATES = 5;
+
+    public final int numberOfDocs;
+    public final FacetsConfig facetsConfig = new FacetsConfig();
+    public final DirectoryReader reader;
+    public final DirectoryTaxonomyReader taxoReader;
+    public final SuperIndexSearcher superSearcher;
+    public final IndexSearcher searcher;
+    public final OrdinalsReader ordinalsReader = new CachedOrdinalsReader(new DocValuesOrdinalsReader());
+    private final Path tmpDir;
+    private final FSDirectory indexDirectory;
+    private final FSDirectory taxoDirectory;
+    private final ExecutorService executor = Executors.newFixedThreadPool(10);
+
+    public BenchmarkIndex(int numberOfDocs) throws IOException {
+        this.numberOfDocs = numberOfDocs;
+        this.tmpDir = Files.createTempDirectory("meresco-lucene-benchmark");
+        this.indexDirectory = FSDirectory.open(tmpDir.resolve("index"));
+        this.taxoDirectory = FSDirectory.open(tmpDir.resolve("taxo"));
+        this.facetsConfig.setMultiValued("tag", true);
+
+        IndexWriterConfig config = new IndexWriterConfig(new MerescoStandardAnalyzer());
+        config.setMergePolicy(new TieredMergePolicy().setSegmentsPerTier(8));
+        Random random = new Random(42);
+        try (IndexWriter writer = new IndexWriter(indexDirectory, config);
+                DirectoryTaxonomyWriter taxoWriter = new DirectoryTaxonomyWriter(taxoDirectory)) {
+            for (int i = 0; i < numberOfDocs; i++) {
+                Document doc = new Document();
+                StringBuilder text = new StringBuilder("t0");
+                for (int t = 1; t < 10; t++) {
+                    if ((i & ((1 << t) - 1)) == 0)
+                        text.append(" t").append(t);
+                }
+                doc.add(new TextField("text", text.toString(), Store.NO));
+                doc.add(new NumericDocValuesField(KEY_FIELD, i / DUPLICATES + 1));
+                doc.add(new SortedDocValuesField("sort", new BytesRef(Integer.toString(random.nextInt(numberOfDocs)))));
+                doc.add(new FacetField("cat", "cat" + (i % 10)));
+                doc.add(new FacetField("tag", "tag" + random.nextInt(1000)));
+                doc.add(new FacetField("tag", "tag" + random.nextInt(1000)));
+                writer.addDocument(facetsConfig.build(taxoWriter, doc));
+            }
+            writer.commit();
+            taxoWriter.commit();
+        }
+        this.reader = DirectoryReader.open(indexDirectory);
+        this.taxoReader = new DirectoryTaxonomyReader(taxoDirectory);
+        this.superSearcher = new SuperIndexSearcher(reader, executor, 6);
+        this.searcher = new IndexSearcher(reader);
+        this.superSearcher.setQueryCache(null);
+        this.searcher.setQueryCache(null);
+    }
+
+    public int maxKey() {
+        return (numberOfDocs - 1) / DUPLICATES + 1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.executor.shutdown();
+        this.reader.close();
+        this.taxoReader.close();
+        this.indexDirectory.close();
+        this.taxoDirectory.close();
+        try (Stream<Path> paths = Files.walk(this.tmpDir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,237 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene.benchmark;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonArrayBuilder;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+
+/**
+ * A synthetic two core corpus, in the json format read by DocumentStringToDocument,
+ * plus a mix of requests against it. Core records holds n records with:
+ * <ul>
+ * <li>title: two to eight words from a Zipf distributed vocabulary</li>
+ * <li>__key__: a unique key, "record:i"</li>
+ * <li>__work__: a key shared by WORK_SIZE records, to deduplicate on</li>
+ * <li>sortYear and facets genre (Zipf), year and the multivalued subject (Zipf)</li>
+ * </ul>
+ * Core holdings holds zero to six holdings per record, joined on __key__, with a
+ * location and an available flag. Everything is derived from the seed and the
+ * record or request number, so threads can generate in any order.
+ */
+public class CorpusGenerator {
+    public static final String RECORDS = "records";
+    public static final String HOLDINGS = "holdings";
+    public static final String KEY_FIELD = "__key__";
+    public static final String WORK_FIELD = "__work__";
+    public static final int WORK_SIZE = 3;
+    private static final String[] TYPES = {"book", "article", "journal", "map", "score", "thesis"};
+
+    public final int numberOfRecords;
+    private final long seed;
+    private final Zipf words = new Zipf(20000);
+    private final Zipf genres = new Zipf(50);
+    private final Zipf subjects = new Zipf(2000);
+
+    public CorpusGenerator(int numberOfRecords, long seed) {
+        this.numberOfRecords = numberOfRecords;
+        this.seed = seed;
+    }
+
+    public JsonObject settings(String core) {
+        JsonObjectBuilder settings = Json.createObjectBuilder();
+        if (core.equals(RECORDS)) {
+            settings.add("drilldownFields", Json.createArrayBuilder()
+                .add(Json.createObjectBuilder()
+                    .add("dim", "subject")
+                    .add("multiValued", true)));
+        }
+        return settings.build();
+    }
+
+    public JsonArray record(int i) {
+        Random random = random(i);
+        StringBuilder title = new StringBuilder();
+        for (int w = 2 + random.nextInt(7); w > 0; w--) {
+            title.append(word(words.sample(random))).append(' ');
+        }
+        int year = 1900 + (int) (125 * Math.sqrt(random.nextDouble()));
+        JsonArrayBuilder fields = Json.createArrayBuilder()
+            .add(field("TextField", "title").add("value", title.toString().trim()))
+            .add(field("StringField", "type").add("value", TYPES[random.nextInt(TYPES.length)]))
+            .add(field("KeyField", KEY_FIELD).add("value", "record:" + i))
+            .add(field("KeyField", WORK_FIELD).add("value", "work:" + i / WORK_SIZE))
+            .add(field("IntField", "sortYear").add("value", year).add("sort", true))
+            .add(facet("genre", "genre" + genres.sample(random)))
+            .add(facet("year", Integer.toString(year)));
+        Set<Integer> recordSubjects = new HashSet<>();
+        for (int s = 1 + random.nextInt(3); s > 0; s--) {
+            recordSubjects.add(subjects.sample(random));
+        }
+        for (int subject : recordSubjects) {
+            fields.add(facet("subject", "subject" + subject));
+        }
+        return fields.build();
+    }
+
+    public int holdingsFor(int i) {
+        return random(i).nextInt(7);
+    }
+
+    public JsonArray holding(int i, int h) {
+        Random random = random(i * 7L + h + 1);
+        String location = "location" + random.nextInt(20);
+        return Json.createArrayBuilder()
+            .add(field("KeyField", KEY_FIELD).add("value", "record:" + i))
+            .add(field("StringField", "location").add("value", location))
+            .add(field("StringField", "available").add("value", Boolean.toString(random.nextInt(4) != 0)))
+            .add(facet("location", location))
+            .build();
+    }
+
+    /**
+     * Request n of the replay mix: 60% record queries, 20% queries joined with
+     * holdings, 10% key exports and 10% updates of new records. Each line has the
+     * request path and its json body.
+     */
+    public JsonObject request(int n) {
+        Random random = random(-n - 1L);
+        int kind = random.nextInt(100);
+        if (kind >= 90) {
+            int i = numberOfRecords + n;
+            return Json.createObjectBuilder()
+                .add("path", "/" + RECORDS + "/update/?identifier=record:" + i)
+                .add("body", record(i))
+                .build();
+        }
+        JsonObjectBuilder query = Json.createObjectBuilder()
+            .add("resultsFrom", RECORDS)
+            .add("_start", 0)
+            .add("_stop", 10);
+        JsonArrayBuilder clauses = Json.createArrayBuilder();
+        for (int w = 1 + random.nextInt(2); w > 0; w--) {
+            clauses.add(termQuery("title", word(words.sample(random))).add("occur", "MUST"));
+        }
+        JsonObjectBuilder queries = Json.createObjectBuilder()
+            .add(RECORDS, Json.createObjectBuilder().add("type", "BooleanQuery").add("clauses", clauses));
+        JsonObjectBuilder facets = Json.createObjectBuilder()
+            .add(RECORDS, Json.createArrayBuilder()
+                .add(Json.createObjectBuilder().add("fieldname", "genre").add("maxTerms", 10))
+                .add(Json.createObjectBuilder().add("fieldname", "subject").add("maxTerms", 20)));
+        if (random.nextInt(3) == 0) {
+            query.add("_drilldownQueries", Json.createObjectBuilder()
+                .add(RECORDS, Json.createArrayBuilder()
+                    .add(Json.createArrayBuilder()
+                        .add("genre")
+                        .add(Json.createArrayBuilder().add("genre" + genres.sample(random))))));
+        }
+        if (random.nextInt(3) == 0) {
+            query.add("_dedupField", WORK_FIELD);
+        }
+        if (random.nextInt(5) == 0) {
+            query.add("_sortKeys", Json.createArrayBuilder()
+                .add(Json.createObjectBuilder()
+                    .add("sortBy", "sortYear")
+                    .add("type", "Int")
+                    .add("sortDescending", true)));
+        }
+        String path = "/query/";
+        if (kind >= 60) {
+            query.add("cores", Json.createArrayBuilder().add(RECORDS).add(HOLDINGS));
+            query.add("_matches", Json.createObjectBuilder()
+                .add(RECORDS + "->" + HOLDINGS, Json.createArrayBuilder()
+                    .add(Json.createObjectBuilder().add("core", RECORDS).add("uniqueKey", KEY_FIELD))
+                    .add(Json.createObjectBuilder().add("core", HOLDINGS).add("key", KEY_FIELD))));
+            queries.add(HOLDINGS, termQuery("available", "true"));
+            facets.add(HOLDINGS, Json.createArrayBuilder()
+                .add(Json.createObjectBuilder().add("fieldname", "location").add("maxTerms", 20)));
+            if (kind >= 80) {
+                path = "/exportkeys/?exportKey=" + KEY_FIELD;
+            }
+        }
+        query.add("_queries", queries).add("_facets", facets);
+        return Json.createObjectBuilder()
+            .add("path", path)
+            .add("body", query)
+            .build();
+    }
+
+    private Random random(long n) {
+        return new Random(seed * 1000003 + n);
+    }
+
+    private static String word(int rank) {
+        return "w" + Integer.toString(rank, 36);
+    }
+
+    private static JsonObjectBuilder field(String type, String name) {
+        return Json.createObjectBuilder().add("type", type).add("name", name);
+    }
+
+    private static JsonObjectBuilder facet(String name, String value) {
+        return field("FacetField", name).add("path", Json.createArrayBuilder().add(value));
+    }
+
+    private static JsonObjectBuilder termQuery(String field, String value) {
+        return Json.createObjectBuilder()
+            .add("type", "TermQuery")
+            .add("term", Json.createObjectBuilder().add("field", field).add("value", value));
+    }
+
+    /**
+     * Samples ranks 0 to n - 1 with probability proportional to 1 / (rank + 1).
+     */
+    static class Zipf {
+        private final double[] cumulative;
+
+        Zipf(int n) {
+            cumulative = new double[n];
+            double sum = 0;
+            for (int i = 0; i < n; i++) {
+                sum += 1.0 / (i + 1);
+                cumulative[i] = sum;
+            }
+        }
+
+        int sample(Random random) {
+            double x = random.nextDouble() * cumulative[cumulative.length - 1];
+            int lo = 0, hi = cumulative.length - 1;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (cumulative[mid] < x)
+                    lo = mid + 1;
+                else
+                    hi = mid;
+            }
+            return lo;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.facet.FacetResult;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.meresco.lucene.search.FacetCountsPool;
+import org.meresco.lucene.search.FacetSuperCollector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Counting facets with the FacetSuperCollector, including merging the
+ * counts of the parallel sub collectors and taking the top children. Count
+ * arrays are reused through a FacetCountsPool, as in Lucene.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class FacetBenchmark {
+    @Param({"1000000"})
+    public int numberOfDocs;
+
+    private BenchmarkIndex index;
+    private FacetCountsPool pool = new FacetCountsPool(64 * 1024 * 1024);
+
+    @Setup
+    public void setUp() throws Exception {
+        index = new BenchmarkIndex(numberOfDocs);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        index.close();
+    }
+
+    private void facets(Query query, Blackhole blackhole) throws Throwable {
+        FacetSuperCollector collector = new FacetSuperCollector(index.taxoReader, index.facetsConfig, index.ordinalsReader, pool);
+        index.superSearcher.search(query, collector);
+        FacetResult cat = collector.getTopChildren(10, "cat");
+        FacetResult tag = collector.getTopChildren(10, "tag");
+        blackhole.consume(cat);
+        blackhole.consume(tag);
+        collector.release();
+    }
+
+    @Benchmark
+    public void facetsMatchAll(Blackhole blackhole) throws Throwable {
+        facets(new MatchAllDocsQuery(), blackhole);
+    }
+
+    @Benchmark
+    public void facetsTerm(Blackhole blackhole) throws Throwable {
+        facets(new TermQuery(new Term("text", "t3")), blackhole);
+    }
+}
@@ -0,0 +1,140 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.util.FixedBitSet;
+import org.meresco.lucene.queries.KeyFilter;
+import org.meresco.lucene.search.DeDupFilterSuperCollector;
+import org.meresco.lucene.search.JoinSortCollector;
+import org.meresco.lucene.search.JoinSortField;
+import org.meresco.lucene.search.TopFieldSuperCollector;
+import org.meresco.lucene.search.TopScoreDocSuperCollector;
+import org.meresco.lucene.search.TotalHitCountSuperCollector;
+import org.meresco.lucene.search.join.KeyCollector;
+import org.meresco.lucene.search.join.KeySuperCollector;
+import org.meresco.lucene.search.join.ScoreSuperCollector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The join primitives used by composed queries: collecting keys, filtering
+ * on collected keys, collecting scores per key and sorting on a field of the
+ * joined document; plus deduplication on a key.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class JoinBenchmark {
+    @Param({"1000000"})
+    public int numberOfDocs;
+
+    private BenchmarkIndex index;
+    private Query query;
+    private FixedBitSet keys;
+
+    @Setup
+    public void setUp() throws Throwable {
+        index = new BenchmarkIndex(numberOfDocs);
+        query = new TermQuery(new Term("text", "t2"));
+        KeySuperCollector collector = new KeySuperCollector(BenchmarkIndex.KEY_FIELD);
+        index.superSearcher.search(query, collector);
+        keys = collector.getCollectedKeys();
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        index.close();
+    }
+
+    @Benchmark
+    public FixedBitSet keySuperCollector() throws Throwable {
+        KeySuperCollector collector = new KeySuperCollector(BenchmarkIndex.KEY_FIELD);
+        index.superSearcher.search(query, collector);
+        return collector.getCollectedKeys();
+    }
+
+    @Benchmark
+    public FixedBitSet keyCollector() throws Throwable {
+        KeyCollector collector = new KeyCollector(BenchmarkIndex.KEY_FIELD);
+        index.searcher.search(query, collector);
+        return collector.getCollectedKeys();
+    }
+
+    @Benchmark
+    public long keyFilter() throws Throwable {
+        TotalHitCountSuperCollector collector = new TotalHitCountSuperCollector();
+        index.superSearcher.search(new KeyFilter(keys, BenchmarkIndex.KEY_FIELD), collector);
+        return collector.getTotalHits();
+    }
+
+    @Benchmark
+    public float scoreSuperCollector() throws Throwable {
+        ScoreSuperCollector collector = new ScoreSuperCollector(BenchmarkIndex.KEY_FIELD);
+        index.superSearcher.search(query, collector);
+        return collector.score(1);
+    }
+
+    @Benchmark
+    public ScoreDoc[] joinSort() throws Throwable {
+        JoinSortCollector joinCollector = new JoinSortCollector(BenchmarkIndex.KEY_FIELD, BenchmarkIndex.KEY_FIELD);
+        index.searcher.search(new MatchAllDocsQuery(), joinCollector);
+        JoinSortField sortField = new JoinSortField("sort", SortField.Type.STRING, false, "other");
+        sortField.setCollector(joinCollector);
+        TopFieldSuperCollector collector = new TopFieldSuperCollector(new Sort(sortField), 10, false, false);
+        index.superSearcher.search(query, collector);
+        return collector.topDocs(0).scoreDocs;
+    }
+
+    @Benchmark
+    public TopDocs dedup() throws Throwable {
+        TopScoreDocSuperCollector topCollector = new TopScoreDocSuperCollector(110);
+        DeDupFilterSuperCollector collector = new DeDupFilterSuperCollector(BenchmarkIndex.KEY_FIELD, null, topCollector);
+        index.superSearcher.search(query, collector);
+        return topCollector.topDocs(0);
+    }
+}
@@ -0,0 +1,287 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene.benchmark;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.StringReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonValue;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.HelpFormatter;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
+import org.apache.commons.cli.PosixParser;
+import org.meresco.lucene.http.LuceneHttpServer;
+
+/**
+ * End to end load test. Starts the http server in-process on a state directory,
+ * indexes a CorpusGenerator corpus into it through /update unless it already
+ * holds one, then replays requests at a fixed concurrency and reports latency
+ * percentiles and throughput per endpoint.
+ *
+ * The replay file has one json object per line with a "path" and a "body", as
+ * written by CorpusGenerator.request; a line without "path" is a ComposedQuery
+ * for /query/. Without a replay file the generated request mix is used.
+ */
+public class LoadTool {
+    private final String baseUrl;
+
+    LoadTool(int port) {
+        this.baseUrl = "http://localhost:" + port;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new Options();
+        options.addOption(requiredOption("d", "stateDir", "Directory for the lucene data; reused when it already holds a corpus"));
+        options.addOption(new Option("n", "records", true, "Number of records to generate (default 100000)"));
+        options.addOption(new Option("f", "replay", true, "File with requests to replay (default: generated)"));
+        options.addOption(new Option("r", "requests", true, "Number of requests to measure (default 10000)"));
+        options.addOption(new Option("w", "warmup", true, "Number of requests to run before measuring (default 1000)"));
+        options.addOption(new Option("c", "concurrency", true, "Number of concurrent clients (default 8)"));
+        options.addOption(new Option("p", "port", true, "Port number (default: any free port)"));
+        options.addOption(new Option(null, "inMemoryKeys", false, "Keep a map of all keys to their numbers in memory"));
+
+        CommandLine commandLine;
+        try {
+            commandLine = new PosixParser().parse(options, args);
+        } catch (ParseException e) {
+            new HelpFormatter().printHelp("load-tool", options);
+            System.exit(1);
+            return;
+        }
+        Path stateDir = Paths.get(commandLine.getOptionValue("d"));
+        int numberOfRecords = Integer.parseInt(commandLine.getOptionValue("n", "100000"));
+        int requests = Integer.parseInt(commandLine.getOptionValue("r", "10000"));
+        int warmup = Integer.parseInt(commandLine.getOptionValue("w", "1000"));
+        int concurrency = Integer.parseInt(commandLine.getOptionValue("c", "8"));
+        int port = Integer.parseInt(commandLine.getOptionValue("p", "0"));
+
+        CorpusGenerator generator = new CorpusGenerator(numberOfRecords, 42);
+        boolean existingCorpus = Files.exists(stateDir.resolve("lucene-" + CorpusGenerator.RECORDS));
+        Files.createDirectories(stateDir);
+        LuceneHttpServer server = new LuceneHttpServer(port, stateDir.toString(), new String[] {CorpusGenerator.RECORDS, CorpusGenerator.HOLDINGS}, commandLine.hasOption("inMemoryKeys"));
+        server.start();
+        LoadTool loadTool = new LoadTool(server.getPort());
+        try {
+            for (String core : new String[] {CorpusGenerator.RECORDS, CorpusGenerator.HOLDINGS}) {
+                loadTool.post("/" + core + "/settings/", generator.settings(core).toString());
+            }
+            if (existingCorpus) {
+                System.out.println("Using the corpus in " + stateDir);
+            } else {
+                loadTool.index(generator, concurrency);
+            }
+
+            List<JsonObject> replay = new ArrayList<>();
+            if (commandLine.hasOption("f")) {
+                try (BufferedReader reader = Files.newBufferedReader(Paths.get(commandLine.getOptionValue("f")), StandardCharsets.UTF_8)) {
+                    String line;
+                    while ((line = reader.readLine()) != null) {
+                        if (!line.trim().isEmpty())
+                            replay.add(Json.createReader(new StringReader(line)).readObject());
+                    }
+                }
+            } else {
+                for (int n = 0; n < warmup + requests; n++) {
+                    replay.add(generator.request(n));
+                }
+            }
+            if (warmup > 0) {
+                System.out.println("Warming up with " + warmup + " requests");
+                loadTool.replay(replay, 0, warmup, concurrency);
+            }
+            System.out.println("Replaying " + requests + " requests with concurrency " + concurrency);
+            loadTool.replay(replay, warmup, requests, concurrency).report(System.out);
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    void index(CorpusGenerator generator, int concurrency) throws Exception {
+        System.out.println("Indexing " + generator.numberOfRecords + " records with their holdings");
+        long t0 = System.nanoTime();
+        AtomicInteger holdings = new AtomicInteger();
+        Stats stats = run(generator.numberOfRecords, concurrency, i -> {
+            post("/" + CorpusGenerator.RECORDS + "/update/?identifier=record:" + i, generator.record(i).toString());
+            for (int h = generator.holdingsFor(i) - 1; h >= 0; h--) {
+                post("/" + CorpusGenerator.HOLDINGS + "/update/?identifier=holding:" + i + "." + h, generator.holding(i, h).toString());
+                holdings.incrementAndGet();
+            }
+            return "/update/";
+        });
+        if (stats.errors() > 0)
+            throw new Exception(stats.errors() + " updates failed, first: " + stats.firstError());
+        post("/commit/", "");
+        long ms = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - t0);
+        System.out.println(String.format("Indexed %d records and %d holdings in %d ms",
+                generator.numberOfRecords, holdings.get(), ms));
+    }
+
+    Stats replay(List<JsonObject> requests, int offset, int count, int concurrency) throws Exception {
+        return run(count, concurrency, n -> {
+            JsonObject request = requests.get((offset + n) % requests.size());
+            String path = request.getString("path", "/query/");
+            JsonValue body = request.containsKey("path") ? request.get("body") : request;
+            post(path, body.toString());
+            return path.replaceFirst("\\?.*", "");
+        });
+    }
+
+    interface Request {
+        String execute(int n) throws Exception;
+    }
+
+    private Stats run(int count, int concurrency, Request request) throws InterruptedException {
+        Stats stats = new Stats();
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService clients = Executors.newFixedThreadPool(concurrency);
+        long t0 = System.nanoTime();
+        for (int c = 0; c < concurrency; c++) {
+            clients.execute(() -> {
+                int n;
+                while ((n = next.getAndIncrement()) < count) {
+                    long start = System.nanoTime();
+                    String endpoint;
+                    try {
+                        endpoint = request.execute(n);
+                    } catch (Exception e) {
+                        stats.error(e);
+                        continue;
+                    }
+                    stats.record(endpoint, System.nanoTime() - start);
+                }
+            });
+        }
+        clients.shutdown();
+        clients.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+        stats.elapsedNanos = System.nanoTime() - t0;
+        return stats;
+    }
+
+    void post(String path, String body) throws Exception {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + path).openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setInstanceFollowRedirects(false);
+        connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        int status = connection.getResponseCode();
+        ByteArrayOutputStream response = new ByteArrayOutputStream();
+        try (InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream()) {
+            byte[] buffer = new byte[8192];
+            int n;
+            while (in != null && (n = in.read(buffer)) != -1) {
+                if (status != HttpURLConnection.HTTP_OK)
+                    response.write(buffer, 0, n);
+            }
+        }
+        if (status != HttpURLConnection.HTTP_OK)
+            throw new Exception("HTTP " + status + " for " + path + ": " + response.toString("UTF-8"));
+    }
+
+    static class Stats {
+        private final Map<String, long[]> latencies = new TreeMap<>();
+        private final Map<String, Integer> counts = new TreeMap<>();
+        private int errors;
+        private String firstError;
+        long elapsedNanos;
+
+        synchronized void record(String endpoint, long nanos) {
+            int count = counts.getOrDefault(endpoint, 0);
+            long[] values = latencies.get(endpoint);
+            if (values == null || values.length == count)
+                latencies.put(endpoint, values = Arrays.copyOf(values == null ? new long[0] : values, Math.max(16, count * 2)));
+            values[count] = nanos;
+            counts.put(endpoint, count + 1);
+        }
+
+        synchronized void error(Exception e) {
+            if (errors++ == 0)
+                firstError = e.toString();
+        }
+
+        synchronized int errors() {
+            return errors;
+        }
+
+        synchronized String firstError() {
+            return firstError;
+        }
+
+        synchronized void report(PrintStream out) {
+            double seconds = elapsedNanos / 1e9;
+            out.println(String.format("%-20s %8s %10s %9s %9s %9s %9s %9s", "endpoint", "requests", "req/s", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms"));
+            int total = 0;
+            for (String endpoint : counts.keySet()) {
+                int count = counts.get(endpoint);
+                long[] values = Arrays.copyOf(latencies.get(endpoint), count);
+                Arrays.sort(values);
+                out.println(String.format("%-20s %8d %10.1f %9.2f %9.2f %9.2f %9.2f %9.2f", endpoint, count, count / seconds,
+                        percentile(values, 0.5), percentile(values, 0.9), percentile(values, 0.99), percentile(values, 0.999), values[count - 1] / 1e6));
+                total += count;
+            }
+            out.println(String.format("%-20s %8d %10.1f", "total", total, total / seconds));
+            if (errors > 0)
+                out.println(errors + " requests failed, first: " + firstError);
+        }
+
+        static double percentile(long[] sorted, double p) {
+            return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)] / 1e6;
+        }
+    }
+
+    private static Option requiredOption(String opt, String longOpt, String description) {
+        Option option = new Option(opt, longOpt, true, description);
+        option.setRequired(true);
+        return option;
+    }
+}
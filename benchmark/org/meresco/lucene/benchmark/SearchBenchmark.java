@@ -0,0 +1,115 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopScoreDocCollector;
+import org.meresco.lucene.search.TopScoreDocSuperCollector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Top 10 by score with the SuperIndexSearcher, which searches segment
+ * partitions in parallel, against a plain single threaded IndexSearcher.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class SearchBenchmark {
+    @Param({"1000000"})
+    public int numberOfDocs;
+
+    private BenchmarkIndex index;
+
+    @State(Scope.Benchmark)
+    public static class TermQueryState {
+        @Param({"t0", "t3"})
+        public String term;
+
+        Query query;
+
+        @Setup
+        public void setUp() {
+            query = new TermQuery(new Term("text", term));
+        }
+    }
+
+    @Setup
+    public void setUp() throws Exception {
+        index = new BenchmarkIndex(numberOfDocs);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        index.close();
+    }
+
+    @Benchmark
+    public TopDocs superIndexSearcher(TermQueryState state) throws Throwable {
+        TopScoreDocSuperCollector collector = new TopScoreDocSuperCollector(10);
+        index.superSearcher.search(state.query, collector);
+        return collector.topDocs(0);
+    }
+
+    @Benchmark
+    public TopDocs indexSearcher(TermQueryState state) throws Throwable {
+        TopScoreDocCollector collector = TopScoreDocCollector.create(10, Integer.MAX_VALUE);
+        index.searcher.search(state.query, collector);
+        return collector.topDocs();
+    }
+
+    @Benchmark
+    public TopDocs superIndexSearcherMatchAll() throws Throwable {
+        TopScoreDocSuperCollector collector = new TopScoreDocSuperCollector(10);
+        index.superSearcher.search(new MatchAllDocsQuery(), collector);
+        return collector.topDocs(0);
+    }
+
+    @Benchmark
+    public TopDocs indexSearcherMatchAll() throws Throwable {
+        TopScoreDocCollector collector = TopScoreDocCollector.create(10, Integer.MAX_VALUE);
+        index.searcher.search(new MatchAllDocsQuery(), collector);
+        return collector.topDocs();
+    }
+}
@@ -0,0 +1,280 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.json.Json;
+import javax.json.JsonObjectBuilder;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+
+import org.apache.lucene.document.Document;
+import org.meresco.lucene.Lucene.UninitializedException;
+
+/**
+ * Applies newline delimited json updates to a core as they are read.
+ * Each line is one of:
+ * <pre>
+ * {"identifier": "id", "document": [...fields...]}
+ * {"document": [...fields...]}
+ * {"identifier": "id", "delete": true}
+ * </pre>
+ * with fields as read by DocumentStringToDocument. A failing update does not stop
+ * the others. Statuses are written only after the last line has been read, so
+ * clients may send all of their updates before reading the response: a status
+ * line for each failed update, for the first MAX_REPORTED_FAILURES of them by
+ * line number, and then a summary like {"updates": 10, "failures": 1}.
+ *
+ * With more than one indexingThreads the reading thread only splits the stream:
+ * lines go through bounded queues to workers, on the indexing executor of the
+ * core, that parse them, resolve facet
+ * ordinals and write to the index, which analyzes on the calling thread. Lines
+ * for the same identifier always go to the same worker, so they are applied in
+ * order.
+ */
+public class BulkUpdate {
+    public static final int MAX_REPORTED_FAILURES = 1000;
+    private static final Line END = new Line(0, null);
+
+    private final Lucene lucene;
+    private final DocumentStreamConverter converter;
+    private final AtomicInteger updates = new AtomicInteger();
+    private final AtomicInteger failures = new AtomicInteger();
+    private final TreeMap<Integer, String> failureStatuses = new TreeMap<>();
+    private volatile Throwable fatal;
+
+    public BulkUpdate(Lucene lucene, DocumentStreamConverter converter) {
+        this.lucene = lucene;
+        this.converter = converter;
+    }
+
+    public void apply(BufferedReader reader, Writer statusWriter) throws Exception {
+        LuceneSettings settings = lucene.getSettings();
+        if (settings.indexingThreads <= 1)
+            applySequential(reader);
+        else
+            applyParallel(reader, settings.indexingThreads, settings.indexingQueueSize);
+        for (String failureStatus : failureStatuses.values()) {
+            statusWriter.write(failureStatus);
+            statusWriter.write('\n');
+        }
+        statusWriter.write(Json.createObjectBuilder()
+                .add("updates", updates.get())
+                .add("failures", failures.get())
+                .build().toString());
+        statusWriter.write('\n');
+    }
+
+    private void applySequential(BufferedReader reader) throws Exception {
+        int lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (!line.trim().isEmpty())
+                process(new Line(lineNumber, line));
+        }
+    }
+
+    private void applyParallel(BufferedReader reader, int threads, int queueSize) throws Exception {
+        List<BlockingQueue<Line>> queues = new ArrayList<>();
+        for (int i = 0; i < threads; i++)
+            queues.add(new ArrayBlockingQueue<>(queueSize));
+        List<Future<?>> workers = submitWorkers(lucene.getIndexingExecutor(), queues);
+        boolean ended = false;
+        try {
+            int lineNumber = 0;
+            int next = 0;
+            String line;
+            while (fatal == null && (line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty())
+                    continue;
+                String identifier = identifierOf(line);
+                int worker = identifier == null ? next = (next + 1) % threads : (identifier.hashCode() & Integer.MAX_VALUE) % threads;
+                queues.get(worker).put(new Line(lineNumber, line));
+            }
+            for (BlockingQueue<Line> queue : queues)
+                queue.put(END);
+            ended = true;
+        } finally {
+            if (!ended) {
+                // Reading failed or was interrupted. Without blocking, drop what is queued
+                // and end each worker, so none is left waiting on the shared executor.
+                // Interrupting them instead could close the files of the IndexWriter.
+                for (BlockingQueue<Line> queue : queues) {
+                    queue.clear();
+                    queue.offer(END);
+                }
+            }
+        }
+        for (Future<?> worker : workers)
+            worker.get();
+        if (fatal instanceof Error)
+            throw (Error) fatal;
+        if (fatal != null)
+            throw (Exception) fatal;
+    }
+
+    /**
+     * Submits a worker per queue. Workers of one bulk update are submitted together
+     * and the executor has at least as many threads, so with concurrent bulk updates
+     * each gets all of its workers running, one update after the other.
+     */
+    private List<Future<?>> submitWorkers(ThreadPoolExecutor executor, List<BlockingQueue<Line>> queues) {
+        List<Future<?>> workers = new ArrayList<>();
+        synchronized (executor) {
+            if (executor.getMaximumPoolSize() < queues.size()) {
+                executor.setMaximumPoolSize(queues.size());
+                executor.setCorePoolSize(queues.size());
+            }
+            for (BlockingQueue<Line> queue : queues) {
+                workers.add(executor.submit(() -> {
+                    Line line;
+                    while ((line = queue.take()) != END) {
+                        if (fatal != null)
+                            continue;  // keep draining so the reader never blocks
+                        try {
+                            process(line);
+                        } catch (Throwable t) {
+                            fatal = t;
+                        }
+                    }
+                    return null;
+                }));
+            }
+        }
+        return workers;
+    }
+
+    private void process(Line line) throws IOException, UninitializedException {
+        JsonObjectBuilder status = Json.createObjectBuilder().add("line", line.number);
+        try {
+            applyLine(line.text, status);
+        } catch (UninitializedException e) {
+            throw e;
+        } catch (Exception e) {
+            failures.incrementAndGet();
+            String failureStatus = status.add("status", "error").add("error", e.toString()).build().toString();
+            synchronized (failureStatuses) {
+                failureStatuses.put(line.number, failureStatus);
+                if (failureStatuses.size() > MAX_REPORTED_FAILURES)
+                    failureStatuses.pollLastEntry();
+            }
+        }
+        updates.incrementAndGet();
+    }
+
+    private void applyLine(String line, JsonObjectBuilder status) throws Exception {
+        String identifier = null;
+        boolean delete = false;
+        Document document = null;
+        try (JsonParser parser = DocumentStreamConverter.createParser(new StringReader(line))) {
+            DocumentStreamConverter.expect(parser.next(), Event.START_OBJECT);
+            Event event;
+            while ((event = parser.next()) != Event.END_OBJECT) {
+                String key = parser.getString();
+                event = parser.next();
+                switch (key) {
+                    case "identifier":
+                        identifier = parser.getString();
+                        status.add("identifier", identifier);
+                        break;
+                    case "delete":
+                        delete = event == Event.VALUE_TRUE;
+                        break;
+                    case "document":
+                        DocumentStreamConverter.expect(event, Event.START_ARRAY);
+                        document = converter.convert(parser);
+                        break;
+                    default:
+                        DocumentStreamConverter.skip(parser, event);
+                }
+            }
+        }
+        if (delete) {
+            if (identifier == null)
+                throw new IllegalArgumentException("delete requires an identifier");
+            lucene.deleteDocument(identifier);
+        } else if (document == null) {
+            throw new IllegalArgumentException("update requires a document or delete");
+        } else if (identifier == null) {
+            lucene.addDocument(document);
+        } else {
+            lucene.addDocument(identifier, document);
+        }
+    }
+
+    /**
+     * The identifier of an update line, read without parsing its document when the
+     * identifier comes first; null when absent or unreadable.
+     */
+    static String identifierOf(String line) {
+        try (JsonParser parser = DocumentStreamConverter.createParser(new StringReader(line))) {
+            if (parser.next() != Event.START_OBJECT)
+                return null;
+            Event event;
+            while ((event = parser.next()) == Event.KEY_NAME) {
+                String key = parser.getString();
+                event = parser.next();
+                if (key.equals("identifier"))
+                    return event == Event.VALUE_STRING ? parser.getString() : null;
+                DocumentStreamConverter.skip(parser, event);
+            }
+        } catch (RuntimeException e) {
+            // the worker reports it
+        }
+        return null;
+    }
+
+    public int getUpdates() {
+        return updates.get();
+    }
+
+    public int getFailures() {
+        return failures.get();
+    }
+
+    static class Line {
+        final int number;
+        final String text;
+
+        Line(int number, String text) {
+            this.number = number;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Commits Lucene cores on a shared pool of threads. Different cores commit
+ * in parallel. Commit requests for a core that arrive while it is committing
+ * are coalesced into one next commit, so concurrent requests cost at most one
+ * extra fsync round. Also schedules the delayed commits and refreshes of
+ * all cores, and keeps statistics of commit latencies.
+ */
+public class CommitScheduler {
+    private final ScheduledExecutorService timer;
+    private final ExecutorService committers;
+    private final Map<Lucene, CoreState> cores = new ConcurrentHashMap<>();
+    private long commitCount = 0;
+    private long totalCommitTime = 0;
+    private long maxCommitTime = 0;
+    private long lastCommitTime = 0;
+
+    public CommitScheduler(int numberOfThreads) {
+        this.timer = Executors.newSingleThreadScheduledExecutor(daemonThreads("commit-timer"));
+        this.committers = Executors.newFixedThreadPool(numberOfThreads, daemonThreads("commit"));
+    }
+
+    /**
+     * Commits lucene once, or joins a commit that has been requested but not
+     * started yet. Returns when the changes made before the call are durable.
+     */
+    public void commit(Lucene lucene) throws Exception {
+        await(commitAsync(lucene));
+    }
+
+    /**
+     * Commits all lucenes in parallel and waits for all of them.
+     */
+    public void commitAll(List<Lucene> lucenes) throws Exception {
+        List<CompletableFuture<Void>> rounds = new ArrayList<>();
+        for (Lucene lucene : lucenes)
+            rounds.add(commitAsync(lucene));
+        await(CompletableFuture.allOf(rounds.toArray(new CompletableFuture<?>[0])));
+    }
+
+    public CompletableFuture<Void> commitAsync(Lucene lucene) {
+        CoreState state = coreState(lucene);
+        synchronized (state) {
+            if (state.pending == null)
+                state.pending = new CompletableFuture<>();
+            CompletableFuture<Void> round = state.pending;
+            if (!state.running)
+                startRound(lucene, state);
+            return round;
+        }
+    }
+
+    /**
+     * Schedules a commit of lucene after delayMs, unless one is scheduled
+     * already. Any commit of lucene cancels it. As nobody waits for it, a
+     * failing scheduled commit is passed to reportError.
+     */
+    public void scheduleCommit(Lucene lucene, long delayMs) {
+        CoreState state = coreState(lucene);
+        synchronized (state) {
+            if (state.scheduled == null)
+                state.scheduled = schedule(() -> commitAsync(lucene).whenComplete((result, e) -> {
+                    if (e != null)
+                        reportError(e);
+                }), delayMs);
+        }
+    }
+
+    /**
+     * Runs task after delayMs on the timer thread; whatever it throws is passed
+     * to reportError instead of being kept in the returned future.
+     */
+    public ScheduledFuture<?> schedule(Runnable task, long delayMs) {
+        return this.timer.schedule(() -> {
+            try {
+                task.run();
+            } catch (Throwable e) {
+                reportError(e);
+            }
+        }, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Cancels the scheduled commit of lucene and forgets about it.
+     */
+    public void remove(Lucene lucene) {
+        CoreState state = this.cores.remove(lucene);
+        if (state != null) {
+            synchronized (state) {
+                if (state.scheduled != null)
+                    state.scheduled.cancel(false);
+            }
+        }
+    }
+
+    public void close() {
+        this.timer.shutdownNow();
+        this.committers.shutdown();
+    }
+
+    public synchronized long getCommitCount() {
+        return this.commitCount;
+    }
+
+    public synchronized long getTotalCommitTime() {
+        return this.totalCommitTime;
+    }
+
+    public synchronized long getMaxCommitTime() {
+        return this.maxCommitTime;
+    }
+
+    public synchronized long getLastCommitTime() {
+        return this.lastCommitTime;
+    }
+
+    /**
+     * Reports failures of scheduled commits and tasks, which have no caller to throw to.
+     */
+    protected void reportError(Throwable e) {
+        e.printStackTrace();
+    }
+
+    private CoreState coreState(Lucene lucene) {
+        return this.cores.computeIfAbsent(lucene, l -> new CoreState());
+    }
+
+    private void startRound(Lucene lucene, CoreState state) {
+        CompletableFuture<Void> round = state.pending;
+        state.pending = null;
+        state.running = true;
+        if (state.scheduled != null) {
+            state.scheduled.cancel(false);
+            state.scheduled = null;
+        }
+        this.committers.execute(() -> {
+            long t0 = System.currentTimeMillis();
+            Throwable failure = null;
+            try {
+                lucene.commitNow();
+            } catch (Throwable e) {
+                failure = e;
+            }
+            // Recorded first, so whoever waits for the round sees it in the statistics.
+            recordCommitTime(System.currentTimeMillis() - t0);
+            if (failure == null)
+                round.complete(null);
+            else
+                round.completeExceptionally(failure);
+            synchronized (state) {
+                state.running = false;
+                if (state.pending != null)
+                    startRound(lucene, state);
+            }
+        });
+    }
+
+    private synchronized void recordCommitTime(long time) {
+        this.commitCount++;
+        this.totalCommitTime += time;
+        this.maxCommitTime = Math.max(this.maxCommitTime, time);
+        this.lastCommitTime = time;
+    }
+
+    private static void await(CompletableFuture<Void> future) throws Exception {
+        try {
+            future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception)
+                throw (Exception) e.getCause();
+            throw e;
+        }
+    }
+
+    static ThreadFactory daemonThreads(String name) {
+        ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+        return runnable -> {
+            Thread thread = defaultFactory.newThread(runnable);
+            thread.setName(name + "-" + thread.getName());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    private static class CoreState {
+        CompletableFuture<Void> pending;
+        boolean running;
+        ScheduledFuture<?> scheduled;
+    }
+}
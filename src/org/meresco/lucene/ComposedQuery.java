@@ -30,6 +30,7 @@ package org.meresco.lucene;
 import java.io.Reader;
 import java.io.StringReader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -79,6 +80,44 @@ public class ComposedQuery {
             "clusterConfig=" + clusterConfig + ")";
     }
 
+    /**
+     * Value-equal snapshot of this query for use as a cache key; see
+     * {@link QueryData#cacheKey()}.
+     */
+    public List<Object> cacheKey() {
+        Map<String, Object> facetsKey = new HashMap<>();
+        for (Map.Entry<String, List<FacetRequest>> e : facets.entrySet())
+            facetsKey.put(e.getKey(), QueryData.facetsKey(e.getValue()));
+        Map<String, Object> drilldownQueriesKey = new HashMap<>();
+        for (Map.Entry<String, List<String[]>> e : drilldownQueries.entrySet())
+            drilldownQueriesKey.put(e.getKey(), QueryData.drilldownQueriesKey(e.getValue()));
+        List<Object> unitesKey = new ArrayList<>();
+        for (Unite u : unites)
+            unitesKey.add(Arrays.asList(u.coreA, u.coreB, u.queryA, u.queryB));
+        return Arrays.asList(
+                resultsFrom,
+                new HashSet<>(cores),
+                new HashMap<>(queries),
+                relationalFilter,
+                copyOf(filterQueries),
+                facetsKey,
+                drilldownQueriesKey,
+                copyOf(otherCoreFacetsFilter),
+                new HashMap<>(rankQueries),
+                rankQueryScoreRatio,
+                unitesKey,
+                matches.toString(),
+                queryData.cacheKey(),
+                clusterConfig == null ? null : clusterConfig.toString());
+    }
+
+    private static Map<String, List<Query>> copyOf(Map<String, List<Query>> queries) {
+        Map<String, List<Query>> copy = new HashMap<>();
+        for (Map.Entry<String, List<Query>> e : queries.entrySet())
+            copy.put(e.getKey(), new ArrayList<>(e.getValue()));
+        return copy;
+    }
+
     public ComposedQuery(String resultsFrom) {
         this.resultsFrom = resultsFrom;
     }
@@ -109,6 +148,12 @@ public class ComposedQuery {
         cq.queryData.dedupField = json.getString("_dedupField", null);
         cq.queryData.getDedupSortFieldsFromJson(json, "_dedupSortField");
         cq.queryData.clustering = json.getBoolean("_clustering", false);
+        if (json.containsKey("_totalHitsThreshold") && json.get("_totalHitsThreshold") != JsonValue.NULL) {
+            cq.queryData.totalHitsThreshold = json.getInt("_totalHitsThreshold");
+        }
+        if (json.containsKey("_timeAllowed") && json.get("_timeAllowed") != JsonValue.NULL) {
+            cq.queryData.timeAllowed = json.getJsonNumber("_timeAllowed").longValue();
+        }
         JsonArray fields = json.getJsonArray("_storedFields");
         if (fields != null) {
             fields.stream().forEach(s -> cq.queryData.storedFields.add(((JsonString) s).getString()));
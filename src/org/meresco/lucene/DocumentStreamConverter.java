@@ -0,0 +1,444 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.json.Json;
+import javax.json.stream.JsonParser;
+import javax.json.stream.JsonParser.Event;
+import javax.json.stream.JsonParserFactory;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.DoublePoint;
+import org.apache.lucene.document.Field;
+import org.apache.lucene.document.FieldType;
+import org.apache.lucene.document.IntPoint;
+import org.apache.lucene.document.LongPoint;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.SortedDocValuesField;
+import org.apache.lucene.document.StoredField;
+import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.facet.FacetField;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.NumericUtils;
+import org.meresco.lucene.numerate.TermNumerator;
+
+/**
+ * Streaming counterpart of DocumentStringToDocument, one per core. Reads the fields
+ * with a pull parser instead of a json tree, and compiles each field name with its
+ * type and options once into a FieldSpec. A field name sent with different types
+ * or options gets a FieldSpec for each of them, so their fields are reused too.
+ *
+ * Fields are reused per thread: a converted Document is only valid until the next
+ * conversion on the same thread, so it must be indexed before that.
+ */
+public class DocumentStreamConverter {
+    private static final JsonParserFactory parserFactory = Json.createParserFactory(null);
+
+    private final TermNumerator termNumerator;
+    private final Map<String, FieldSpec[]> specs = new ConcurrentHashMap<>();
+    private final ThreadLocal<ThreadState> threadStates = ThreadLocal.withInitial(ThreadState::new);
+
+    public DocumentStreamConverter(TermNumerator termNumerator) {
+        this.termNumerator = termNumerator;
+    }
+
+    public Document convert(Reader reader) throws IOException {
+        try (JsonParser parser = parserFactory.createParser(reader)) {
+            expect(parser.next(), Event.START_ARRAY);
+            return convert(parser);
+        }
+    }
+
+    /**
+     * Converts the fields array whose START_ARRAY the parser has just returned,
+     * leaving the parser at its END_ARRAY.
+     */
+    public Document convert(JsonParser parser) throws IOException {
+        ThreadState state = threadStates.get();
+        state.generation++;
+        Document doc = new Document();
+        FieldValue value = state.value;
+        Event event;
+        while ((event = parser.next()) != Event.END_ARRAY) {
+            expect(event, Event.START_OBJECT);
+            value.read(parser);
+            addFields(doc, spec(value), value, state);
+        }
+        return doc;
+    }
+
+    public static JsonParser createParser(Reader reader) {
+        return parserFactory.createParser(reader);
+    }
+
+    static void expect(Event event, Event expected) {
+        if (event != expected)
+            throw new IllegalArgumentException("Expected " + expected + " but got " + event);
+    }
+
+    static void skip(JsonParser parser, Event event) {
+        if (event != Event.START_OBJECT && event != Event.START_ARRAY)
+            return;
+        int depth = 1;
+        while (depth > 0) {
+            event = parser.next();
+            if (event == Event.START_OBJECT || event == Event.START_ARRAY)
+                depth++;
+            else if (event == Event.END_OBJECT || event == Event.END_ARRAY)
+                depth--;
+        }
+    }
+
+    private FieldSpec spec(FieldValue value) {
+        if (value.name == null || value.type == null)
+            throw new IllegalArgumentException("Field without name or type");
+        FieldSpec spec = find(specs.get(value.name), value);
+        if (spec != null)
+            return spec;
+        return find(specs.compute(value.name, (name, variants) -> {
+            if (find(variants, value) != null)
+                return variants;
+            if (variants == null)
+                return new FieldSpec[] {new FieldSpec(value)};
+            FieldSpec[] more = Arrays.copyOf(variants, variants.length + 1);
+            more[variants.length] = new FieldSpec(value);
+            return more;
+        }), value);
+    }
+
+    private static FieldSpec find(FieldSpec[] variants, FieldValue value) {
+        if (variants != null)
+            for (FieldSpec spec : variants)
+                if (spec.matches(value))
+                    return spec;
+        return null;
+    }
+
+    private void addFields(Document doc, FieldSpec spec, FieldValue value, ThreadState state) throws IOException {
+        if (spec.kind == Kind.IGNORED)
+            return;
+        if (spec.kind == Kind.FACET) {
+            doc.add(new FacetField(spec.name, value.path.toArray(new String[value.path.size()])));
+            return;
+        }
+        FieldPool pool = state.pool(spec);
+        Field field;
+        switch (spec.kind) {
+            case STRING:
+            case TEXT:
+                field = pool.next();
+                if (field == null)
+                    field = pool.add(new Field(spec.name, value.string(), spec.fieldType));
+                else
+                    field.setStringValue(value.string());
+                break;
+            case SORTED_STRING:
+                field = pool.next();
+                if (field == null)
+                    field = pool.add(new SortedDocValuesField(spec.name, new BytesRef(value.string())));
+                else
+                    field.setBytesValue(new BytesRef(value.string()));
+                break;
+            case INT:
+                int intValue = (int) value.number();
+                if (spec.stored)
+                    doc.add(storedField(pool, spec.name, intValue));
+                field = pool.next();
+                if (field == null)
+                    field = pool.add(new IntPoint(spec.name, intValue));
+                else
+                    field.setIntValue(intValue);
+                break;
+            case DOUBLE:
+                double doubleValue = value.doubleNumber();
+                if (spec.stored)
+                    doc.add(storedField(pool, spec.name, doubleValue));
+                field = pool.next();
+                if (field == null)
+                    field = pool.add(new DoublePoint(spec.name, doubleValue));
+                else
+                    field.setDoubleValue(doubleValue);
+                break;
+            case LONG:
+                long longValue = value.number();
+                if (spec.stored)
+                    doc.add(storedField(pool, spec.name, longValue));
+                field = pool.next();
+                if (field == null)
+                    field = pool.add(new LongPoint(spec.name, longValue));
+                else
+                    field.setLongValue(longValue);
+                break;
+            case SORTED_DOUBLE:
+                field = numericDocValues(pool, spec.name, NumericUtils.doubleToSortableLong(value.doubleNumber()));
+                break;
+            case SORTED_INT:
+            case NUMERIC:
+                field = numericDocValues(pool, spec.name, spec.kind == Kind.SORTED_INT ? (int) value.number() : value.number());
+                break;
+            case KEY:
+                int key = value.isString ? termNumerator.numerateTerm(value.string) : (int) value.number();
+                field = numericDocValues(pool, spec.name, key);
+                break;
+            default:
+                throw new IllegalStateException(spec.kind.toString());
+        }
+        doc.add(field);
+    }
+
+    private static Field numericDocValues(FieldPool pool, String name, long value) {
+        Field field = pool.next();
+        if (field == null)
+            return pool.add(new NumericDocValuesField(name, value));
+        field.setLongValue(value);
+        return field;
+    }
+
+    private static Field storedField(FieldPool pool, String name, int value) {
+        Field field = pool.next();
+        if (field == null)
+            return pool.add(new StoredField(name, value));
+        field.setIntValue(value);
+        return field;
+    }
+
+    private static Field storedField(FieldPool pool, String name, long value) {
+        Field field = pool.next();
+        if (field == null)
+            return pool.add(new StoredField(name, value));
+        field.setLongValue(value);
+        return field;
+    }
+
+    private static Field storedField(FieldPool pool, String name, double value) {
+        Field field = pool.next();
+        if (field == null)
+            return pool.add(new StoredField(name, value));
+        field.setDoubleValue(value);
+        return field;
+    }
+
+    enum Kind {
+        STRING, SORTED_STRING, TEXT, INT, SORTED_INT, DOUBLE, SORTED_DOUBLE, LONG, NUMERIC, KEY, FACET, IGNORED
+    }
+
+    static class FieldSpec {
+        final String name;
+        final String type;
+        final boolean sort;
+        final boolean stored;
+        final boolean termVectors;
+        final Kind kind;
+        final FieldType fieldType;
+
+        FieldSpec(FieldValue value) {
+            this.name = value.name;
+            this.type = value.type;
+            this.sort = value.sort;
+            this.stored = value.stored;
+            this.termVectors = value.termVectors;
+            FieldType fieldType = null;
+            Kind kind;
+            switch (type) {
+                case "StringField":
+                    kind = sort ? Kind.SORTED_STRING : Kind.STRING;
+                    fieldType = stored ? StringField.TYPE_STORED : StringField.TYPE_NOT_STORED;
+                    break;
+                case "TextField":
+                    kind = Kind.TEXT;
+                    fieldType = TextField.TYPE_NOT_STORED;
+                    break;
+                case "NoTermsFrequencyField":
+                    kind = Kind.TEXT;
+                    fieldType = DocumentStringToDocument.NO_TERMS_FREQUENCY_FIELD;
+                    break;
+                case "IntPoint":
+                case "IntField":
+                    kind = sort ? Kind.SORTED_INT : Kind.INT;
+                    break;
+                case "DoublePoint":
+                case "DoubleField":
+                    kind = sort ? Kind.SORTED_DOUBLE : Kind.DOUBLE;
+                    break;
+                case "LongPoint":
+                case "LongField":
+                    kind = sort ? Kind.NUMERIC : Kind.LONG;
+                    break;
+                case "NumericField":
+                    kind = Kind.NUMERIC;
+                    break;
+                case "KeyField":
+                    kind = Kind.KEY;
+                    break;
+                case "FacetField":
+                    kind = Kind.FACET;
+                    break;
+                default:
+                    kind = Kind.IGNORED;
+            }
+            if (termVectors && fieldType != null && kind != Kind.SORTED_STRING && fieldType != DocumentStringToDocument.NO_TERMS_FREQUENCY_FIELD) {
+                fieldType = new FieldType(fieldType);
+                fieldType.setStoreTermVectors(true);
+                fieldType.freeze();
+            }
+            this.kind = kind;
+            this.fieldType = fieldType;
+        }
+
+        boolean matches(FieldValue value) {
+            return type.equals(value.type) && sort == value.sort && stored == value.stored && termVectors == value.termVectors;
+        }
+    }
+
+    /**
+     * One field entry as read from the parser; reused for all entries of a thread.
+     */
+    static class FieldValue {
+        String type;
+        String name;
+        String string;
+        boolean isString;
+        boolean hasNumber;
+        boolean integral;
+        long longValue;
+        double doubleValue;
+        boolean sort;
+        boolean stored;
+        boolean termVectors;
+        final List<String> path = new ArrayList<>();
+
+        void read(JsonParser parser) {
+            type = name = string = null;
+            isString = hasNumber = sort = stored = termVectors = false;
+            path.clear();
+            Event event;
+            while ((event = parser.next()) != Event.END_OBJECT) {
+                expect(event, Event.KEY_NAME);
+                String key = parser.getString();
+                event = parser.next();
+                switch (key) {
+                    case "type":
+                        type = parser.getString();
+                        break;
+                    case "name":
+                        name = parser.getString();
+                        break;
+                    case "value":
+                        if (event == Event.VALUE_STRING) {
+                            string = parser.getString();
+                            isString = true;
+                        } else if (event == Event.VALUE_NUMBER) {
+                            hasNumber = true;
+                            integral = parser.isIntegralNumber();
+                            if (integral) {
+                                longValue = parser.getLong();
+                                doubleValue = longValue;
+                            } else {
+                                doubleValue = parser.getBigDecimal().doubleValue();
+                                longValue = (long) doubleValue;
+                            }
+                        }
+                        break;
+                    case "sort":
+                        sort = event == Event.VALUE_TRUE;
+                        break;
+                    case "stored":
+                        stored = event == Event.VALUE_TRUE;
+                        break;
+                    case "termVectors":
+                        termVectors = event == Event.VALUE_TRUE;
+                        break;
+                    case "path":
+                        expect(event, Event.START_ARRAY);
+                        while ((event = parser.next()) != Event.END_ARRAY)
+                            path.add(parser.getString());
+                        break;
+                    default:
+                        skip(parser, event);
+                }
+            }
+        }
+
+        String string() {
+            if (!isString)
+                throw new IllegalArgumentException("Field " + name + " requires a string value");
+            return string;
+        }
+
+        long number() {
+            if (!hasNumber)
+                throw new IllegalArgumentException("Field " + name + " requires a numeric value");
+            return longValue;
+        }
+
+        double doubleNumber() {
+            number();
+            return doubleValue;
+        }
+    }
+
+    static class FieldPool {
+        private final List<Field> fields = new ArrayList<>();
+        private int generation;
+        private int used;
+
+        Field next() {
+            return used < fields.size() ? fields.get(used++) : null;
+        }
+
+        Field add(Field field) {
+            fields.add(field);
+            used++;
+            return field;
+        }
+    }
+
+    static class ThreadState {
+        final FieldValue value = new FieldValue();
+        final Map<FieldSpec, FieldPool> pools = new IdentityHashMap<>();
+        int generation;
+
+        FieldPool pool(FieldSpec spec) {
+            FieldPool pool = pools.get(spec);
+            if (pool == null)
+                pools.put(spec, pool = new FieldPool());
+            if (pool.generation != generation) {
+                pool.generation = generation;
+                pool.used = 0;
+            }
+            return pool;
+        }
+    }
+}
@@ -67,6 +67,11 @@ public class DocumentStringToDocument {
         this.termNumerator = termNumerator;
     }
 
+    public DocumentStringToDocument(JsonArray document, TermNumerator termNumerator) {
+        this.object = document;
+        this.termNumerator = termNumerator;
+    }
+
     public Document convert() throws IOException {
         Document doc = new Document();
         Iterator<JsonValue> iterator = object.iterator();
@@ -161,7 +166,7 @@ public class DocumentStringToDocument {
         return fieldType;
     }
 
-    private static final FieldType NO_TERMS_FREQUENCY_FIELD = new FieldType();
+    static final FieldType NO_TERMS_FREQUENCY_FIELD = new FieldType();
     static {
         NO_TERMS_FREQUENCY_FIELD.setTokenized(true);
         NO_TERMS_FREQUENCY_FIELD.setOmitNorms(true);
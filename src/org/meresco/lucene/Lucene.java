@@ -28,7 +28,9 @@ package org.meresco.lucene;
 
 import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -37,12 +39,15 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.collections4.map.LRUMap;
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.facet.DrillDownQuery;
 import org.apache.lucene.facet.FacetResult;
@@ -58,14 +63,19 @@ import org.apache.lucene.facet.taxonomy.TaxonomyReader.ChildrenIterator;
 import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyReader;
 import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyWriter;
 import org.apache.lucene.facet.taxonomy.writercache.LruTaxonomyWriterCache;
+import org.apache.lucene.document.DocumentStoredFieldVisitor;
 import org.apache.lucene.index.FieldInfo;
 import org.apache.lucene.index.FieldInfos;
 import org.apache.lucene.index.Fields;
 import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.index.MultiTerms;
 import org.apache.lucene.index.MultiFields;
+import org.apache.lucene.index.QueryTimeout;
+import org.apache.lucene.index.QueryTimeoutImpl;
+import org.apache.lucene.index.SortedDocValues;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.Terms;
 import org.apache.lucene.index.TermsEnum;
@@ -74,6 +84,7 @@ import org.apache.lucene.search.BooleanClause;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.LRUQueryCache;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.ReferenceManager.RefreshListener;
@@ -81,10 +92,12 @@ import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
 import org.apache.lucene.search.spell.DirectSpellChecker;
 import org.apache.lucene.search.spell.SuggestMode;
 import org.apache.lucene.search.spell.SuggestWord;
 import org.apache.lucene.store.MMapDirectory;
+import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.FixedBitSet;
 import org.meresco.lucene.JsonQueryConverter.FacetRequest;
@@ -93,18 +106,24 @@ import org.meresco.lucene.LuceneResponse.DedupHit;
 import org.meresco.lucene.LuceneResponse.DrilldownData;
 import org.meresco.lucene.LuceneResponse.Hit;
 import org.meresco.lucene.search.DeDupFilterSuperCollector;
+import org.meresco.lucene.search.FacetCountsCache;
+import org.meresco.lucene.search.FacetCountsPool;
 import org.meresco.lucene.search.FacetSuperCollector;
+import org.meresco.lucene.search.IncrementalTopScoreDocSuperCollector;
 import org.meresco.lucene.search.MerescoCluster;
 import org.meresco.lucene.search.MerescoCluster.DocScore;
 import org.meresco.lucene.search.MerescoClusterer;
 import org.meresco.lucene.search.MultiSuperCollector;
+import org.meresco.lucene.search.ParallelTasks;
 import org.meresco.lucene.search.SuperCollector;
 import org.meresco.lucene.search.SuperIndexSearcher;
 import org.meresco.lucene.search.TopDocSuperCollector;
 import org.meresco.lucene.search.TopFieldSuperCollector;
 import org.meresco.lucene.search.TopScoreDocSuperCollector;
+import org.meresco.lucene.search.TotalHitCountSuperCollector;
 import org.meresco.lucene.search.join.AggregateScoreSuperCollector;
 import org.meresco.lucene.search.join.KeySuperCollector;
+import org.meresco.lucene.search.join.KeyValuesCache;
 import org.meresco.lucene.search.join.ScoreSuperCollector;
 
 
@@ -114,11 +133,17 @@ public class Lucene {
     }
 
     public static final String ID_FIELD = "__id__";
-    private int commitCount = 0;
-    private Timer commitTimer;
+    private static final long QUERY_DEFAULT_RAM_BYTES_USED = 1024;
+    private final AtomicInteger commitCount = new AtomicInteger();
+    private CommitScheduler commitScheduler;
+    private boolean ownCommitScheduler = false;
+    private boolean refreshScheduled = false;
     public String name;
     private Path stateDir;
-    private Map<String, OrdinalsReader> ordinalsReaders = new HashMap<>();
+    private Map<String, OrdinalsReader> ordinalsReaders = Collections.synchronizedMap(new HashMap<>());
+    private FacetCountsPool facetCountsPool = new FacetCountsPool();
+    final ArrayDeque<Query> recentQueries = new ArrayDeque<>();
+    private Metrics metrics = new Metrics();
     private DirectSpellChecker spellChecker = new DirectSpellChecker();
     LuceneData data = new LuceneData();
 	private JsonQueryConverter queryConverter;
@@ -141,6 +166,39 @@ public class Lucene {
 
     public void initSettings(LuceneSettings settings) throws Exception {
         data.initSettings(stateDir, settings);
+        data.getSearchFactory().setWarmer(this::warm);
+    }
+
+    /**
+     * Loads the key values and facet ordinals used so far for the new
+     * segments of searcher, and replays the most recent queries on it.
+     */
+    void warm(SuperIndexSearcher searcher, List<LeafReaderContext> newLeaves) throws Throwable {
+        List<OrdinalsReader> readers;
+        synchronized (ordinalsReaders) {
+            readers = new ArrayList<>(ordinalsReaders.values());
+        }
+        for (LeafReaderContext leaf : newLeaves) {
+            for (String keyName : KeyValuesCache.keyNames())
+                KeyValuesCache.get(leaf, keyName);
+            for (OrdinalsReader reader : readers)
+                reader.getReader(leaf);
+        }
+        List<Query> queries;
+        synchronized (recentQueries) {
+            queries = new ArrayList<>(recentQueries);
+        }
+        for (Query query : queries)
+            searcher.search(query, new TopScoreDocSuperCollector(10));
+    }
+
+    private void addRecentQuery(Query query, int maxQueries) {
+        synchronized (recentQueries) {
+            recentQueries.remove(query);
+            recentQueries.addLast(query);
+            while (recentQueries.size() > maxQueries)
+                recentQueries.removeFirst();
+        }
     }
 
     public LuceneSettings getSettings() throws Exception {
@@ -152,8 +210,11 @@ public class Lucene {
     }
 
     public synchronized void close() throws IOException {
-        if (commitTimer != null)
-            commitTimer.cancel();
+        if (commitScheduler != null) {
+            commitScheduler.remove(this);
+            if (ownCommitScheduler)
+                commitScheduler.close();
+        }
         this.data.close();
     }
 
@@ -165,6 +226,8 @@ public class Lucene {
 
     public void addDocument(String identifier, Document doc) throws Exception {
         doc.add(new StringField(ID_FIELD, identifier, Store.YES));
+        if (getSettings().idDocValues)
+            doc.add(new SortedDocValuesField(ID_FIELD, new BytesRef(identifier)));
         doc = data.getFacetsConfig().build(data.getTaxoWriter(), doc);
         data.getIndexWriter().updateDocument(new Term(ID_FIELD, identifier), doc);
         maybeCommitAfterUpdate();
@@ -181,36 +244,105 @@ public class Lucene {
     }
 
     public void maybeCommitAfterUpdate() throws Exception {
-        commitCount++;
+        metrics.mark("updates");
         LuceneSettings settings = data.getSettings();
-        if (commitCount >= settings.commitCount) {
+        if (commitCount.incrementAndGet() >= settings.commitCount) {
             commit();
             return;
         }
-        if (commitTimer == null) {
-            TimerTask timerTask = new TimerTask() {
-                @Override
-                public void run() {
-                    try {
-                        commit();
-                    } catch (Exception e) {
-                        throw new RuntimeException();
-                    }
-                }
-            };
-            commitTimer = new Timer();
-            commitTimer.schedule(timerTask, settings.commitTimeout * 1000);
+        if (settings.refreshIntervalMs > 0) {
+            scheduleRefresh(settings.refreshIntervalMs);
+        }
+        getCommitScheduler().scheduleCommit(this, settings.commitTimeout * 1000L);
+    }
+
+    /**
+     * Commits and delayed refreshes run on this scheduler. Cores of one server
+     * share it, so they are group-committed together.
+     */
+    public synchronized void setCommitScheduler(CommitScheduler commitScheduler) {
+        if (this.commitScheduler != null) {
+            this.commitScheduler.remove(this);
+            if (ownCommitScheduler)
+                this.commitScheduler.close();
         }
+        this.commitScheduler = commitScheduler;
+        this.ownCommitScheduler = false;
     }
 
-    public synchronized void commit() throws Exception {
-        commitCount = 0;
-        if (commitTimer != null) {
-            commitTimer.cancel();
-            commitTimer.purge();
-            commitTimer = null;
+    public synchronized CommitScheduler getCommitScheduler() {
+        if (commitScheduler == null) {
+            commitScheduler = new CommitScheduler(1);
+            ownCommitScheduler = true;
         }
+        return commitScheduler;
+    }
+
+    private synchronized void scheduleRefresh(int delayMs) {
+        if (refreshScheduled)
+            return;
+        refreshScheduled = true;
+        getCommitScheduler().schedule(() -> {
+            synchronized (Lucene.this) {
+                refreshScheduled = false;
+            }
+            try {
+                refresh();
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }, delayMs);
+    }
+
+    /**
+     * Makes all updates visible to searches without committing them to disk.
+     */
+    public void refresh() throws Exception {
+        data.refresh();
+    }
+
+    /**
+     * Increases every time a refresh makes new changes visible to searches, and
+     * every time the settings are updated, as these change results too.
+     */
+    public long getGeneration() throws UninitializedException {
+        return data.getGeneration() + data.getSettings().getUpdateCount();
+    }
+
+    public ResponseCache getResponseCache() throws UninitializedException {
+        return data.getResponseCache();
+    }
+
+    public FacetCountsCache getFacetCountsCache() throws UninitializedException {
+        return data.getFacetCountsCache();
+    }
+
+    public LRUQueryCache getFilterCache() throws UninitializedException {
+        return data.getSearchFactory().getQueryCache();
+    }
+
+    public void commit() throws Exception {
+        getCommitScheduler().commit(this);
+    }
+
+    void commitNow() throws Exception {
+        long t0 = System.currentTimeMillis();
+        commitCount.set(0);
         data.commit();
+        metrics.mark("commits");
+        metrics.record("commit", System.currentTimeMillis() - t0);
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public ThreadPoolExecutor getSearchExecutor() throws UninitializedException {
+        return data.getSearchFactory().getExecutor();
+    }
+
+    public ThreadPoolExecutor getIndexingExecutor() throws UninitializedException {
+        return data.getIndexingExecutor();
     }
 
     public LuceneResponse executeQuery(QueryData q) throws Throwable {
@@ -240,12 +372,40 @@ public class Lucene {
 
     public LuceneResponse executeQuery(QueryData q, List<Query> filterQueries, List<String[]> drilldownQueries, List<Query> filters, List<AggregateScoreSuperCollector> scoreCollectors,
             Collection<KeySuperCollector> keyCollectors) throws Throwable {
+        long t0 = System.currentTimeMillis();
+        metrics.mark("queries");
+        LuceneResponse response = executeQueryCached(q, filterQueries, drilldownQueries, filters, scoreCollectors, keyCollectors);
+        metrics.record("query", System.currentTimeMillis() - t0);
+        return response;
+    }
+
+    private LuceneResponse executeQueryCached(QueryData q, List<Query> filterQueries, List<String[]> drilldownQueries, List<Query> filters, List<AggregateScoreSuperCollector> scoreCollectors,
+            Collection<KeySuperCollector> keyCollectors) throws Throwable {
+        long maxBytes = data.getSettings().responseCacheSizeMB * 1024L * 1024L;
+        if (maxBytes == 0 || filters != null || scoreCollectors != null || keyCollectors != null) {
+            // Filters and collectors from other cores depend on more than this index.
+            return executeQueryUncached(q, filterQueries, drilldownQueries, filters, scoreCollectors, keyCollectors);
+        }
+        List<Object> cacheKey = Arrays.asList(q.cacheKey(), filterQueries == null ? null : new ArrayList<>(filterQueries), QueryData.drilldownQueriesKey(drilldownQueries));
+        long generation = getGeneration();
+        LuceneResponse response = data.getResponseCache().get(cacheKey, generation);
+        if (response == null) {
+            response = executeQueryUncached(q, filterQueries, drilldownQueries, filters, scoreCollectors, keyCollectors);
+            if (!response.partialResults)
+                data.getResponseCache().put(cacheKey, generation, response, maxBytes);
+        }
+        return response;
+    }
+
+    private LuceneResponse executeQueryUncached(QueryData q, List<Query> filterQueries, List<String[]> drilldownQueries, List<Query> filters, List<AggregateScoreSuperCollector> scoreCollectors,
+            Collection<KeySuperCollector> keyCollectors) throws Throwable {
         List<LuceneResponse.Hit> hits;
         Collectors collectors;
         Map<String, Long> times = new HashMap<>();
         long t0 = System.currentTimeMillis();
         int topCollectorStop = q.stop;
         int moreRecords = 0;
+        QueryTimeout timeout = q.timeAllowed > 0 ? new QueryTimeoutImpl(q.timeAllowed) : null;
         SearcherAndTaxonomy reference = data.getManager().acquire();
 
         ClusterConfig clusterConfig = null;
@@ -268,22 +428,52 @@ public class Lucene {
         if (drilldownQueries != null) {
             query = createDrilldownQuery(query, drilldownQueries);
         }
+        if (data.getSettings().warmQueries > 0) {
+            // Without the filters from other cores: their KeyFilters hold a bitset
+            // each and differ with every change of those cores.
+            Query recentQuery = query;
+            if (filters != null && !filters.isEmpty()) {
+                recentQuery = mergeQueryAndFilter(q.query, filtersFor(filterQueries));
+                if (drilldownQueries != null)
+                    recentQuery = createDrilldownQuery(recentQuery, drilldownQueries);
+            }
+            addRecentQuery(recentQuery, data.getSettings().warmQueries);
+        }
 
         try {
             long totalHits=0;
             long adjustedTotalHits=0;
+            TotalHits.Relation totalHitsRelation = TotalHits.Relation.EQUAL_TO;
+            boolean partialResults = false;
 
             boolean isFirstLoop = true;
+            boolean needsSearch = true;
+            collectors = null;
+
+            // Collapsing duplicates or clusters may leave too few hits; keep enough
+            // candidates from the first search for the deepest retry below.
+            int maxTopCollectorStop = topCollectorStop;
+            while (moreRecords > 0 && maxTopCollectorStop > 0 && maxTopCollectorStop * 10 <= 10000) {
+                maxTopCollectorStop *= 10;
+            }
 
             while (true) {
-                collectors = createCollectors(q, topCollectorStop + moreRecords, keyCollectors, scoreCollectors, reference);
+                long t1;
+                if (needsSearch) {
+                    collectors = createCollectors(q, topCollectorStop + moreRecords, maxTopCollectorStop + moreRecords, keyCollectors, scoreCollectors, reference);
 
-                long t1 = System.currentTimeMillis();
-                ((SuperIndexSearcher) reference.searcher).search(query, collectors.root);
-                times.put("searchTime", System.currentTimeMillis() - t1);
+                    t1 = System.currentTimeMillis();
+                    if (!((SuperIndexSearcher) reference.searcher).search(query, collectors.root, timeout)) {
+                        partialResults = true;
+                    }
+                    times.put("searchTime", System.currentTimeMillis() - t1);
+                }
 
                 if (isFirstLoop) {
-                    totalHits = collectors.topCollector.getTotalHits();
+                    totalHits = collectors.getTotalHits();
+                    totalHitsRelation = collectors.getTotalHitsRelation();
+                    if (partialResults)
+                        totalHitsRelation = TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO;
                     if (collectors.dedupCollector != null) {
                         adjustedTotalHits = collectors.dedupCollector.adjustTotalHits(totalHits);
                     }
@@ -293,35 +483,43 @@ public class Lucene {
                 }
                 isFirstLoop = false;
 
+                if (collectors.topCollector == null) {
+                    hits = new ArrayList<>();
+                    break;
+                }
                 if (q.clustering) {
                     t1 = System.currentTimeMillis();
                     hits = clusterTopDocsResponse(q, collectors, times, reference.searcher.getIndexReader(), clusterConfig);
                     times.put("totalClusterTime", System.currentTimeMillis() - t1);
                 } else {
                     t1 = System.currentTimeMillis();
-                    hits = topDocsResponse(q, collectors);
+                    hits = topDocsResponse(q, collectors, reference.searcher.getIndexReader());
                     times.put("topDocsTime", System.currentTimeMillis() - t1);
                 }
 
-                if (hits.size() == q.stop - q.start || (topCollectorStop + moreRecords) >= totalHits) {
+                if (partialResults || hits.size() == q.stop - q.start || (topCollectorStop + moreRecords) >= totalHits) {
                     break;
                 }
                 topCollectorStop *= 10;
                 if (topCollectorStop > 10000) {
                     break;
                 }
+                needsSearch = !collectors.topCollector.grow(topCollectorStop + moreRecords);
 
             }
 
             LuceneResponse response = new LuceneResponse(adjustedTotalHits);
+            response.totalHitsRelation = totalHitsRelation;
+            response.partialResults = partialResults;
             if (collectors.dedupCollector != null)
-                response.totalWithDuplicates = collectors.topCollector.getTotalHits();
+                response.totalWithDuplicates = collectors.getTotalHits();
 
             response.hits = hits;
 
             if (collectors.facetCollector != null) {
                 long t1 = System.currentTimeMillis();
                 response.drilldownData = facetResult(collectors.facetCollector, q.facets);
+                collectors.facetCollector.release();
                 times.put("facetTime", System.currentTimeMillis() - t1);
             }
 
@@ -336,12 +534,28 @@ public class Lucene {
             }
             response.times = times;
             response.queryTime = System.currentTimeMillis() - t0;
+            recordPhases(times);
             return response;
         } finally {
             data.getManager().release(reference);
         }
     }
 
+    private static final String[][] PHASES = {
+            {"searchTime", "search"},
+            {"topDocsTime", "topDocs"},
+            {"facetTime", "facets"},
+            {"totalClusterTime", "clustering"},
+            {"suggestionTime", "suggestions"}};
+
+    private void recordPhases(Map<String, Long> times) {
+        for (String[] phase : PHASES) {
+            Long time = times.get(phase[0]);
+            if (time != null)
+                metrics.record(phase[1], time);
+        }
+    }
+
     private Query mergeQueryAndFilter(Query query, Query filter) {
         if (filter == null) {
             return query;
@@ -367,6 +581,7 @@ public class Lucene {
         List<LuceneResponse.Hit> hits = new ArrayList<>();
         int count = q.start;
         HashSet<Integer> seenDocIds = new HashSet<>();
+        List<Integer> docIds = new ArrayList<>();
         t0 = System.currentTimeMillis();
         for (ScoreDoc scoreDoc : topDocs.scoreDocs) {
             if (count >= q.stop)
@@ -388,23 +603,40 @@ public class Lucene {
                 }
             }
 
-            ClusterHit hit = new ClusterHit(getDocument(representative).get(ID_FIELD), scoreDoc.score);
+            ClusterHit hit = new ClusterHit(null, scoreDoc.score);
+            docIds.add(representative);
             if (cluster != null) {
                 hit.topTerms = cluster.topTerms;
                 hit.topDocs = cluster.topDocs;
                 for (DocScore docScore : cluster.topDocs) {
-                    docScore.identifier = getDocument(docScore.docId).get(ID_FIELD);
+                    docIds.add(docScore.docId);
                 }
             }
             hits.add(hit);
             count += 1;
         }
         times.put("collectClusters", System.currentTimeMillis() - t0);
+
+        t0 = System.currentTimeMillis();
+        String[] identifiers = loadIdentifiers(indexReader, docIds);
+        metrics.record("storedFields", System.currentTimeMillis() - t0);
+        int i = 0;
+        for (Hit hit : hits) {
+            hit.id = identifiers[i++];
+            ClusterHit clusterHit = (ClusterHit) hit;
+            if (clusterHit.topDocs != null) {
+                for (DocScore docScore : clusterHit.topDocs) {
+                    docScore.identifier = identifiers[i++];
+                }
+            }
+        }
+        times.put("loadDocuments", System.currentTimeMillis() - t0);
         return hits;
     }
 
-    private List<Hit> topDocsResponse(QueryData q, Collectors collectors) throws Exception {
+    private List<Hit> topDocsResponse(QueryData q, Collectors collectors, IndexReader indexReader) throws Exception {
         List<LuceneResponse.Hit> hits = new ArrayList<>();
+        List<Integer> docIds = new ArrayList<>();
         DeDupFilterSuperCollector dedupCollector = collectors.dedupCollector;
 
         int startAt = q.stop == 0 ? 1 : q.start; // TODO: temp fix for start/stop = 0
@@ -414,12 +646,8 @@ public class Lucene {
                 if (count >= q.stop) {
                     break;
                 }
-                Document document = getDocument(scoreDoc.doc);
-                Hit hit = new Hit(document.get(ID_FIELD), scoreDoc.score);
-                for (String storedField : q.storedFields) {
-                    hit.fields.add(document.getFields(storedField));
-                }
-                hits.add(hit);
+                hits.add(new Hit(null, scoreDoc.score));
+                docIds.add(scoreDoc.doc);
                 count++;
             }
         }
@@ -451,43 +679,160 @@ public class Lucene {
                         newDocId = dedupKey.getDocId();
                     }
 
-                    Document document = getDocument(newDocId);
-                    DedupHit dedupHit = new DedupHit(document.get(ID_FIELD), scoreDoc.score);
+                    DedupHit dedupHit = new DedupHit(null, scoreDoc.score);
                     dedupHit.duplicateField = dedupCollector.getKeyName();
                     dedupHit.duplicateCount = 1;
                     if (dedupKey != null) {
                         dedupHit.duplicateCount = dedupKey.getCount();
                     }
                     dedupHit.score = scoreDoc.score;
-                    Hit hit = dedupHit;
-                    for (String storedField : q.storedFields) {
-                        hit.fields.add(document.getFields(storedField));
-                    }
-                    hits.add(hit);
+                    hits.add(dedupHit);
+                    docIds.add(newDocId);
                 }
                 count++;
             }
         }
+
+        long t0 = System.currentTimeMillis();
+        if (q.storedFields.isEmpty()) {
+            String[] identifiers = loadIdentifiers(indexReader, docIds);
+            for (int i = 0; i < hits.size(); i++)
+                hits.get(i).id = identifiers[i];
+            metrics.record("storedFields", System.currentTimeMillis() - t0);
+            return hits;
+        }
+        Set<String> fieldsToLoad = new HashSet<>(q.storedFields);
+        fieldsToLoad.add(ID_FIELD);
+        Document[] documents = loadDocuments(indexReader, docIds, fieldsToLoad);
+        metrics.record("storedFields", System.currentTimeMillis() - t0);
+        for (int i = 0; i < hits.size(); i++) {
+            Hit hit = hits.get(i);
+            hit.id = documents[i].get(ID_FIELD);
+            for (String storedField : q.storedFields) {
+                hit.fields.add(documents[i].getFields(storedField));
+            }
+        }
         return hits;
     }
 
+    /**
+     * Loads only the given stored fields of all docIds from one reader. The docIds are visited
+     * in index order, segment by segment, so consecutive hits in the same compressed block are
+     * decompressed only once. The documents are returned in the order of docIds.
+     */
+    static Document[] loadDocuments(IndexReader indexReader, List<Integer> docIds, Set<String> fieldsToLoad) throws IOException {
+        Document[] documents = new Document[docIds.size()];
+        List<LeafReaderContext> leaves = indexReader.leaves();
+        int leafIndex = 0;
+        for (int i : indexOrder(docIds)) {
+            int docId = docIds.get(i);
+            LeafReaderContext leaf = leaves.get(leafIndex);
+            while (docId >= leaf.docBase + leaf.reader().maxDoc())
+                leaf = leaves.get(++leafIndex);
+            DocumentStoredFieldVisitor visitor = new DocumentStoredFieldVisitor(fieldsToLoad);
+            leaf.reader().document(docId - leaf.docBase, visitor);
+            documents[i] = visitor.getDocument();
+        }
+        return documents;
+    }
+
+    /**
+     * Resolves the identifiers of all docIds from the SortedDocValues of ID_FIELD, written when
+     * LuceneSettings.idDocValues is set, without touching stored fields. Documents indexed
+     * without these doc values fall back to the stored identifier.
+     */
+    static String[] loadIdentifiers(IndexReader indexReader, List<Integer> docIds) throws IOException {
+        String[] identifiers = new String[docIds.size()];
+        List<LeafReaderContext> leaves = indexReader.leaves();
+        int leafIndex = -1;
+        LeafReaderContext leaf = null;
+        SortedDocValues idValues = null;
+        int previousDocId = -1;
+        String previousIdentifier = null;
+        for (int i : indexOrder(docIds)) {
+            int docId = docIds.get(i);
+            if (docId == previousDocId) {
+                identifiers[i] = previousIdentifier;
+                continue;
+            }
+            while (leaf == null || docId >= leaf.docBase + leaf.reader().maxDoc()) {
+                leaf = leaves.get(++leafIndex);
+                idValues = leaf.reader().getSortedDocValues(ID_FIELD);
+            }
+            int localDocId = docId - leaf.docBase;
+            if (idValues != null && idValues.advanceExact(localDocId)) {
+                identifiers[i] = idValues.binaryValue().utf8ToString();
+            } else {
+                DocumentStoredFieldVisitor visitor = new DocumentStoredFieldVisitor(ID_FIELD);
+                leaf.reader().document(localDocId, visitor);
+                identifiers[i] = visitor.getDocument().get(ID_FIELD);
+            }
+            previousDocId = docId;
+            previousIdentifier = identifiers[i];
+        }
+        return identifiers;
+    }
+
+    private static Integer[] indexOrder(List<Integer> docIds) {
+        Integer[] order = new Integer[docIds.size()];
+        for (int i = 0; i < order.length; i++)
+            order[i] = i;
+        Arrays.sort(order, (a, b) -> Integer.compare(docIds.get(a), docIds.get(b)));
+        return order;
+    }
+
+    /**
+     * Facets over all documents that pass the filters and drilldowns, as asked for
+     * other cores. The counts are cached per filter fingerprint, so other facets or
+     * the same ones again for the same filters take no search.
+     */
     public List<DrilldownData> facets(List<FacetRequest> facets, List<Query> filterQueries, List<String[]> drilldownQueries, Query filter) throws Throwable {
+        long generation = getGeneration();
         SearcherAndTaxonomy reference = data.getManager().acquire();
         try {
             FacetSuperCollector facetCollector = facetCollector(facets, reference.taxonomyReader);
             if (facetCollector == null)
                 return new ArrayList<>();
-            Query filter_ = filtersFor(filterQueries, filter);
-            Query query = new MatchAllDocsQuery();
-            if (drilldownQueries != null)
-                query = createDrilldownQuery(query, drilldownQueries);
-            ((SuperIndexSearcher) reference.searcher).search(mergeQueryAndFilter(query, filter_), facetCollector);
-            return facetResult(facetCollector, facets);
+            long maxBytes = data.getSettings().facetCountsCacheSizeMB * 1024L * 1024L;
+            List<Object> cacheKey = Arrays.asList(
+                    new HashSet<>(Arrays.asList(getIndexFieldNames(facets))),
+                    filterQueries == null ? null : new ArrayList<>(filterQueries),
+                    QueryData.drilldownQueriesKey(drilldownQueries),
+                    filter);
+            long t0 = System.currentTimeMillis();
+            if (maxBytes == 0 || !facetCollector.completeFromCache(data.getFacetCountsCache(), cacheKey, generation)) {
+                Query filter_ = filtersFor(filterQueries, filter);
+                Query query = new MatchAllDocsQuery();
+                if (drilldownQueries != null)
+                    query = createDrilldownQuery(query, drilldownQueries);
+                ((SuperIndexSearcher) reference.searcher).search(mergeQueryAndFilter(query, filter_), facetCollector);
+                if (maxBytes > 0) {
+                    long keyBytes = queryRamBytesUsed(filter);
+                    if (filterQueries != null)
+                        for (Query filterQuery : filterQueries)
+                            keyBytes += queryRamBytesUsed(filterQuery);
+                    facetCollector.cache(data.getFacetCountsCache(), cacheKey, keyBytes, generation, maxBytes);
+                }
+            }
+            List<DrilldownData> result = facetResult(facetCollector, facets);
+            facetCollector.release();
+            metrics.record("otherCoreFacets", System.currentTimeMillis() - t0);
+            return result;
         } finally {
             data.getManager().release(reference);
         }
     }
 
+    /**
+     * What a query held by a cache key takes; like LRUQueryCache, 1KB for queries
+     * that do not tell.
+     */
+    private static long queryRamBytesUsed(Query query) {
+        if (query == null)
+            return 0;
+        return query instanceof Accountable ? ((Accountable) query).ramBytesUsed() : QUERY_DEFAULT_RAM_BYTES_USED;
+    }
+
     private Query filtersFor(List<Query> filterQueries, Query... filter) throws Exception {
         List<Query> filters = new ArrayList<>();
         if (filterQueries != null)
@@ -513,13 +858,25 @@ public class Lucene {
         }
     }
 
-    private Collectors createCollectors(QueryData q, int stop, Collection<KeySuperCollector> keyCollectors, List<AggregateScoreSuperCollector> scoreCollectors, SearcherAndTaxonomy reference)
+    private Collectors createCollectors(QueryData q, int stop, int maxStop, Collection<KeySuperCollector> keyCollectors, List<AggregateScoreSuperCollector> scoreCollectors, SearcherAndTaxonomy reference)
             throws Exception {
         Collectors allCollectors = new Collectors();
-        allCollectors.topCollector = topCollector(q.start, stop, q.sort);
-        SuperCollector<?> resultsCollector = allCollectors.topCollector;
+        int totalHitsThreshold = Integer.MAX_VALUE;
+        if (q.dedupField == null && (q.facets == null || q.facets.isEmpty()) && (keyCollectors == null || keyCollectors.isEmpty()) && (scoreCollectors == null || scoreCollectors.isEmpty())) {
+            // Only skip non-competitive hits when no other collector needs to see every match.
+            totalHitsThreshold = q.totalHitsThreshold;
+        }
+        SuperCollector<?> resultsCollector;
+        if (q.stop <= q.start && !q.clustering) {
+            // No hits wanted; count without scoring.
+            allCollectors.countCollector = new TotalHitCountSuperCollector();
+            resultsCollector = allCollectors.countCollector;
+        } else {
+            allCollectors.topCollector = topCollector(q.start, stop, maxStop, q.sort, totalHitsThreshold);
+            resultsCollector = allCollectors.topCollector;
+        }
         if (q.dedupField != null) {
-            allCollectors.dedupCollector = new DeDupFilterSuperCollector(q.dedupField, q.dedupSortFields, allCollectors.topCollector);
+            allCollectors.dedupCollector = new DeDupFilterSuperCollector(q.dedupField, q.dedupSortFields, resultsCollector);
             resultsCollector = allCollectors.dedupCollector;
         }
         allCollectors.facetCollector = facetCollector(q.facets, reference.taxonomyReader);
@@ -542,13 +899,14 @@ public class Lucene {
         return allCollectors;
     }
 
-    private TopDocSuperCollector topCollector(int start, int stop, Sort sort) {
+    private TopDocSuperCollector topCollector(int start, int stop, int maxStop, Sort sort, int totalHitsThreshold) {
         if (stop <= start)
-            // TODO: temp fix for start/stop = 0; You should use TotalHitCountSuperCollector
+            // Only for clustering; plain counts use a TotalHitCountSuperCollector.
             return new TopScoreDocSuperCollector(stop == 0 ? 1 : stop);
-        // return new TotalHitCountSuperCollector();
+        if (sort == null && maxStop > stop)
+            return new IncrementalTopScoreDocSuperCollector(stop, maxStop);
         if (sort == null)
-            return new TopScoreDocSuperCollector(stop);
+            return new TopScoreDocSuperCollector(stop, totalHitsThreshold);
         return new TopFieldSuperCollector(sort, stop, true, false);
     }
 
@@ -556,7 +914,9 @@ public class Lucene {
         if (facets == null || facets.size() == 0)
             return null;
         String[] indexFieldnames = getIndexFieldNames(facets);
-        FacetSuperCollector collector = new FacetSuperCollector(taxonomyReader, data.getFacetsConfig(), getOrdinalsReader(indexFieldnames[0]));
+        facetCountsPool.setMaxBytes(getSettings().facetCountsPoolSizeMB * 1024L * 1024L);
+        FacetSuperCollector collector = new FacetSuperCollector(taxonomyReader, data.getFacetsConfig(), getOrdinalsReader(indexFieldnames[0]), facetCountsPool);
+        collector.setExecutor(getSearchExecutor(), getSettings().numberOfConcurrentTasks);
         for (int i = 1; i < indexFieldnames.length; i++) {
             collector.addOrdinalsReader(getOrdinalsReader(indexFieldnames[i]));
         }
@@ -570,7 +930,7 @@ public class Lucene {
         return indexFieldnames.toArray(new String[0]);
     }
 
-    private OrdinalsReader getOrdinalsReader(String indexFieldname) throws Exception {
+    OrdinalsReader getOrdinalsReader(String indexFieldname) throws Exception {
         OrdinalsReader reader = ordinalsReaders.get(indexFieldname);
         if (reader == null) {
             reader = indexFieldname == null ? new DocValuesOrdinalsReader() : new DocValuesOrdinalsReader(indexFieldname);
@@ -582,15 +942,19 @@ public class Lucene {
     }
 
     private List<DrilldownData> facetResult(FacetSuperCollector facetCollector, List<FacetRequest> facets) throws Exception {
-        List<DrilldownData> drilldownData = new ArrayList<>();
+        List<Callable<DrilldownData>> tasks = new ArrayList<>(facets.size());
         for (FacetRequest facet : facets) {
-            DrilldownData dd = new DrilldownData(facet.fieldname);
-            dd.path = facet.path;
-            List<DrilldownData.Term> terms = drilldownDataFromFacetResult(facetCollector, facet, facet.path, this.data.getFacetsConfig().getDimConfig(facet.fieldname).hierarchical);
-            if (terms != null) {
-                dd.terms = terms;
+            tasks.add(() -> {
+                DrilldownData dd = new DrilldownData(facet.fieldname);
+                dd.path = facet.path;
+                dd.terms = drilldownDataFromFacetResult(facetCollector, facet, facet.path, this.data.getFacetsConfig().getDimConfig(facet.fieldname).hierarchical);
+                return dd;
+            });
+        }
+        List<DrilldownData> drilldownData = new ArrayList<>();
+        for (DrilldownData dd : ParallelTasks.invokeAll(facetCollector.getExecutor(facets.size()), tasks)) {
+            if (dd.terms != null)
                 drilldownData.add(dd);
-            }
         }
         return drilldownData;
     }
@@ -739,11 +1103,13 @@ public class Lucene {
     }
 
     private FixedBitSet doCollectKeys(Query filterQuery, String keyName, Query query) throws Throwable {
+        long t0 = System.currentTimeMillis();
         KeySuperCollector keyCollector = new KeySuperCollector(keyName);
         if (query == null) {
             query = new MatchAllDocsQuery();
         }
         search(query, filterQuery, keyCollector);
+        metrics.record("keyCollection", System.currentTimeMillis() - t0);
         return keyCollector.getCollectedKeys();
     }
 
@@ -755,6 +1121,8 @@ public class Lucene {
         for (int i = 0; i < drilldownQueries.size(); i += 2) {
             String field = drilldownQueries.get(i)[0];
             String indexFieldName = data.getFacetsConfig().getDimConfig(field).indexFieldName;
+            // MUST, not FILTER: drilldowns add to the scores that rank joins combine. Searches
+            // that need no scores still take these clauses from the filter cache.
             q.add(new TermQuery(DrillDownQuery.term(indexFieldName, field, drilldownQueries.get(i + 1))), Occur.MUST);
         }
         return q.build();
@@ -835,8 +1203,21 @@ public class Lucene {
     public static class Collectors {
         public DeDupFilterSuperCollector dedupCollector;
         public TopDocSuperCollector topCollector;
+        public TotalHitCountSuperCollector countCollector;
         public FacetSuperCollector facetCollector;
         public SuperCollector<?> root;
+
+        public long getTotalHits() throws IOException {
+            if (this.topCollector == null)
+                return this.countCollector.getTotalHits();
+            return this.topCollector.getTotalHits();
+        }
+
+        public TotalHits.Relation getTotalHitsRelation() {
+            if (this.topCollector == null)
+                return TotalHits.Relation.EQUAL_TO;
+            return this.topCollector.getTotalHitsRelation();
+        }
     }
 
     public class TermCount {
@@ -880,22 +1261,34 @@ public class Lucene {
         private LuceneSettings settings;
         private Map<KeyNameQuery, ScoreSuperCollector> scoreCollectorCache;
         private Map<KeyNameQuery, FixedBitSet> keyCollectorCache;
+        private ResponseCache responseCache = new ResponseCache();
+        private FacetCountsCache facetCountsCache = new FacetCountsCache();
+        private MerescoSearchFactory searchFactory;
+        private ThreadPoolExecutor indexingExecutor;
         private SearcherTaxonomyManager manager;
         private LuceneRefreshListener refreshListener = new LuceneRefreshListener();
 
         public void commit() throws Exception {
             this.indexWriter.commit();
             this.taxoWriter.commit();
+            refresh();
+        }
+
+        public void refresh() throws Exception {
             this.manager.maybeRefreshBlocking();
             if (this.refreshListener.isRefreshed()) {
                 this.scoreCollectorCache.clear();
                 this.keyCollectorCache.clear();
+                this.responseCache.clear();
+                this.facetCountsCache.clear();
             }
         }
 
 		public void close() throws IOException {
             if (this.settings == null)
                 return;
+            if (this.indexingExecutor != null)
+                this.indexingExecutor.shutdownNow();
             if (this.manager != null)
                 this.manager.close();
             if (this.taxoWriter != null)
@@ -927,8 +1320,19 @@ public class Lucene {
             this.scoreCollectorCache = Collections.synchronizedMap(new LRUMap<KeyNameQuery, ScoreSuperCollector>(50));
             this.keyCollectorCache = Collections.synchronizedMap(new LRUMap<KeyNameQuery, FixedBitSet>(50));
 
-            this.manager = new SearcherTaxonomyManager(indexDirectory, taxoDirectory, new MerescoSearchFactory(indexDirectory, taxoDirectory, settings));
+            this.searchFactory = new MerescoSearchFactory(indexDirectory, taxoDirectory, settings);
+            this.indexingExecutor = (ThreadPoolExecutor) Executors.newFixedThreadPool(Math.max(1, settings.indexingThreads), CommitScheduler.daemonThreads("indexing"));
+            // Opened from the writers, so refresh() can show updates that are not committed yet.
+            this.manager = new SearcherTaxonomyManager(this.indexWriter, true, this.searchFactory, this.taxoWriter);
             this.manager.addListener(refreshListener);
+
+            // Later taxonomy readers update these arrays while reopening, before they are used.
+            SearcherAndTaxonomy reference = this.manager.acquire();
+            try {
+                reference.taxonomyReader.getParallelTaxonomyArrays();
+            } finally {
+                this.manager.release(reference);
+            }
         }
 
         public IndexWriter getIndexWriter() throws UninitializedException {
@@ -971,6 +1375,40 @@ public class Lucene {
             return keyCollectorCache;
         }
 
+        public ResponseCache getResponseCache() throws UninitializedException {
+            if (this.settings == null)
+                throw new UninitializedException();
+            return responseCache;
+        }
+
+        public FacetCountsCache getFacetCountsCache() throws UninitializedException {
+            if (this.settings == null)
+                throw new UninitializedException();
+            return facetCountsCache;
+        }
+
+        public MerescoSearchFactory getSearchFactory() throws UninitializedException {
+            if (this.settings == null)
+                throw new UninitializedException();
+            return searchFactory;
+        }
+
+        /**
+         * The pool running the workers of bulk updates; it grows when indexingThreads
+         * is raised, but never shrinks.
+         */
+        public ThreadPoolExecutor getIndexingExecutor() throws UninitializedException {
+            if (this.settings == null)
+                throw new UninitializedException();
+            return indexingExecutor;
+        }
+
+        public long getGeneration() throws UninitializedException {
+            if (this.settings == null)
+                throw new UninitializedException();
+            return refreshListener.getGeneration();
+        }
+
         public SearcherTaxonomyManager getManager() throws UninitializedException {
             if (this.settings == null)
                 throw new UninitializedException();
@@ -979,13 +1417,20 @@ public class Lucene {
 
         private class LuceneRefreshListener implements RefreshListener {
             private boolean refreshed;
+            private volatile long generation = 0;
 
             @Override
             public void afterRefresh(boolean didRefresh) throws IOException {
+                if (didRefresh)
+                    generation++;
                 if (!refreshed)
                     refreshed = didRefresh;
             }
 
+            public long getGeneration() {
+                return generation;
+            }
+
             @Override
             public void beforeRefresh() throws IOException {
             }
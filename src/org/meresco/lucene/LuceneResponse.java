@@ -39,6 +39,7 @@ import javax.json.JsonObjectBuilder;
 import javax.json.JsonValue;
 
 import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.search.TotalHits;
 import org.apache.lucene.search.spell.SuggestWord;
 import org.apache.lucene.util.FixedBitSet;
 import org.meresco.lucene.search.MerescoCluster;
@@ -49,6 +50,8 @@ import org.meresco.lucene.search.MerescoCluster.TermScore;
 public class LuceneResponse {
     public long total;
     public Long totalWithDuplicates;
+    public TotalHits.Relation totalHitsRelation = TotalHits.Relation.EQUAL_TO;
+    public boolean partialResults = false;
     public List<Hit> hits = new ArrayList<>();
     public List<DrilldownData> drilldownData = new ArrayList<>();
     public long queryTime = 0;
@@ -220,6 +223,14 @@ public class LuceneResponse {
             jsonBuilder.add("totalWithDuplicates", totalWithDuplicates);
         }
 
+        if (totalHitsRelation != TotalHits.Relation.EQUAL_TO) {
+            jsonBuilder.add("totalHitsRelation", totalHitsRelation.name());
+        }
+
+        if (partialResults) {
+            jsonBuilder.add("partialResults", true);
+        }
+
         if (drilldownData.size() > 0) {
             JsonArrayBuilder ddArray = Json.createArrayBuilder();
             for (DrilldownData dd : drilldownData) {
@@ -53,10 +53,13 @@ public class LuceneSettings {
     public Similarity similarity = new BM25Similarity();
     public Analyzer analyzer = new MerescoStandardAnalyzer();
     private MergePolicy mergePolicy = this.getTieredMergePolicy(8.0, 2);
+    private volatile long updateCount = 0;
     public int lruTaxonomyWriterCacheSize = 4000;
     public int numberOfConcurrentTasks = 6;
+    public int partitionsPerTask = 0;
     public int commitTimeout = 10;
     public int commitCount = 100000;
+    public int refreshIntervalMs = 0;
     public FacetsConfig facetsConfig = new FacetsConfig() {
         @Override
         protected DimConfig getDefaultDimConfig() {
@@ -67,6 +70,16 @@ public class LuceneSettings {
     public ClusterConfig clusterConfig = new ClusterConfig(0.4, 1, 100);
     public InterpolateEpsilon interpolateEpsilon = new InterpolateEpsilon();
     public boolean cacheFacetOrdinals = true;
+    public int responseCacheSizeMB = 0;
+    public int filterCacheSizeMB = 32;
+    public int filterCacheMaxQueries = 1000;
+    public int facetCountsPoolSizeMB = 64;
+    public int facetCountsCacheSizeMB = 32;
+    public boolean idDocValues = false;
+    public boolean warmSearchers = true;
+    public int warmQueries = 0;
+    public int indexingThreads = 4;
+    public int indexingQueueSize = 1000;
 
     public JsonObject asJson() {
         JsonArrayBuilder strategiesJsonBuilder = Json.createArrayBuilder();
@@ -89,9 +102,21 @@ public class LuceneSettings {
                                 .add("mergeFactor", ((LogMergePolicy) this.mergePolicy).getMergeFactor()))
                 .add("lruTaxonomyWriterCacheSize", lruTaxonomyWriterCacheSize)
                 .add("numberOfConcurrentTasks", numberOfConcurrentTasks)
+                .add("partitionsPerTask", partitionsPerTask)
                 .add("commitCount", commitCount)
                 .add("commitTimeout", commitTimeout)
+                .add("refreshIntervalMs", refreshIntervalMs)
                 .add("cacheFacetOrdinals", this.cacheFacetOrdinals)
+                .add("responseCacheSizeMB", responseCacheSizeMB)
+                .add("filterCacheSizeMB", filterCacheSizeMB)
+                .add("filterCacheMaxQueries", filterCacheMaxQueries)
+                .add("facetCountsPoolSizeMB", facetCountsPoolSizeMB)
+                .add("facetCountsCacheSizeMB", facetCountsCacheSizeMB)
+                .add("idDocValues", idDocValues)
+                .add("warmSearchers", warmSearchers)
+                .add("warmQueries", warmQueries)
+                .add("indexingThreads", indexingThreads)
+                .add("indexingQueueSize", indexingQueueSize)
                 .add("clustering", Json.createObjectBuilder()
                         .add("clusterMoreRecords", clusterConfig.clusterMoreRecords)
                         .add("strategies", strategiesJsonBuilder))
@@ -109,6 +134,9 @@ public class LuceneSettings {
             case "commitTimeout":
                 commitTimeout = object.getInt(key);
                 break;
+            case "refreshIntervalMs":
+                refreshIntervalMs = object.getInt(key);
+                break;
             case "lruTaxonomyWriterCacheSize":
                 lruTaxonomyWriterCacheSize = object.getInt(key);
                 break;
@@ -132,9 +160,42 @@ public class LuceneSettings {
             case "numberOfConcurrentTasks":
                 numberOfConcurrentTasks = object.getInt(key);
                 break;
+            case "partitionsPerTask":
+                partitionsPerTask = object.getInt(key);
+                break;
             case "cacheFacetOrdinals":
                 this.cacheFacetOrdinals = object.getBoolean("cacheFacetOrdinals");
                 break;
+            case "responseCacheSizeMB":
+                responseCacheSizeMB = object.getInt(key);
+                break;
+            case "filterCacheSizeMB":
+                filterCacheSizeMB = object.getInt(key);
+                break;
+            case "filterCacheMaxQueries":
+                filterCacheMaxQueries = object.getInt(key);
+                break;
+            case "facetCountsPoolSizeMB":
+                facetCountsPoolSizeMB = object.getInt(key);
+                break;
+            case "facetCountsCacheSizeMB":
+                facetCountsCacheSizeMB = object.getInt(key);
+                break;
+            case "idDocValues":
+                idDocValues = object.getBoolean(key);
+                break;
+            case "warmSearchers":
+                warmSearchers = object.getBoolean(key);
+                break;
+            case "warmQueries":
+                warmQueries = object.getInt(key);
+                break;
+            case "indexingThreads":
+                indexingThreads = object.getInt(key);
+                break;
+            case "indexingQueueSize":
+                indexingQueueSize = object.getInt(key);
+                break;
             case "analyzer":
                 analyzer = getAnalyzer(object.getJsonObject(key));
                 break;
@@ -152,6 +213,14 @@ public class LuceneSettings {
                 break;
             }
         }
+        this.updateCount++;
+    }
+
+    /**
+     * Number of updateSettings calls; results computed before one may be stale.
+     */
+    public long getUpdateCount() {
+        return this.updateCount;
     }
 
     private MergePolicy getTieredMergePolicy(double segmentsPerTier, int maxMergeAtOnce) {
@@ -27,28 +27,111 @@
 package org.meresco.lucene;
 
 import java.io.IOException;
-import java.util.concurrent.ExecutorService;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadPoolExecutor;
 
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.IndexReader.CacheHelper;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LRUQueryCache;
 import org.apache.lucene.search.SearcherFactory;
 import org.apache.lucene.store.Directory;
+import org.meresco.lucene.search.MerescoQueryCachingPolicy;
 import org.meresco.lucene.search.SuperIndexSearcher;
 
 public class MerescoSearchFactory extends SearcherFactory {
-    private ExecutorService executor = null;
+    public interface Warmer {
+        void warm(SuperIndexSearcher searcher, List<LeafReaderContext> newLeaves) throws Throwable;
+    }
+
+    private ThreadPoolExecutor executor = null;
     private LuceneSettings settings;
+    private MerescoQueryCachingPolicy queryCachingPolicy;
+    private LRUQueryCache queryCache;
+    private int queryCacheSizeMB;
+    private int queryCacheMaxQueries;
+    private volatile Warmer warmer;
 
     public MerescoSearchFactory(Directory indexDirectory, Directory taxoDirectory, LuceneSettings settings) throws IOException {
         this.settings = settings;
-        this.executor = Executors.newFixedThreadPool(100);
+        this.executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(100);
+        this.queryCachingPolicy = new MerescoQueryCachingPolicy(settings.facetsConfig);
     }
-    
+
     @Override
     public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) throws IOException {
-        SuperIndexSearcher searcher = new SuperIndexSearcher(reader, this.executor, this.settings.numberOfConcurrentTasks);
+        SuperIndexSearcher searcher = new SuperIndexSearcher(reader, this.executor, this.settings.numberOfConcurrentTasks, this.settings.partitionsPerTask);
         searcher.setSimilarity(this.settings.similarity);
+        searcher.setQueryCache(queryCacheForNewSearcher());
+        // Dim configs only change with a settings update; each new searcher picks that up.
+        this.queryCachingPolicy.facetsConfigChanged();
+        searcher.setQueryCachingPolicy(this.queryCachingPolicy);
+        if (this.warmer != null && this.settings.warmSearchers) {
+            warm(searcher, reader, previousReader);
+        }
         return searcher;
     }
+
+    /**
+     * The warmer is called for every new searcher before it is published,
+     * with the segments that were not in the previous searcher.
+     */
+    public void setWarmer(Warmer warmer) {
+        this.warmer = warmer;
+    }
+
+    private void warm(SuperIndexSearcher searcher, IndexReader reader, IndexReader previousReader) {
+        Set<Object> previousSegments = new HashSet<>();
+        if (previousReader != null) {
+            for (LeafReaderContext leaf : previousReader.leaves()) {
+                CacheHelper cacheHelper = leaf.reader().getCoreCacheHelper();
+                if (cacheHelper != null)
+                    previousSegments.add(cacheHelper.getKey());
+            }
+        }
+        List<LeafReaderContext> newLeaves = new ArrayList<>();
+        for (LeafReaderContext leaf : reader.leaves()) {
+            CacheHelper cacheHelper = leaf.reader().getCoreCacheHelper();
+            if (cacheHelper == null || !previousSegments.contains(cacheHelper.getKey()))
+                newLeaves.add(leaf);
+        }
+        try {
+            this.warmer.warm(searcher, newLeaves);
+        } catch (Throwable e) {
+            // A searcher that could not be warmed is still correct, only slower.
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * The pool running the search tasks of all searchers of this index.
+     */
+    public ThreadPoolExecutor getExecutor() {
+        return this.executor;
+    }
+
+    /**
+     * The filter cache shared by all searchers of this index, or null when
+     * disabled.
+     */
+    public synchronized LRUQueryCache getQueryCache() {
+        return this.queryCache;
+    }
+
+    private synchronized LRUQueryCache queryCacheForNewSearcher() {
+        // A new cache only takes effect for searchers opened after a settings change.
+        if (this.settings.filterCacheSizeMB <= 0 || this.settings.filterCacheMaxQueries <= 0) {
+            this.queryCache = null;
+        } else if (this.queryCache == null || this.queryCacheSizeMB != this.settings.filterCacheSizeMB || this.queryCacheMaxQueries != this.settings.filterCacheMaxQueries) {
+            this.queryCacheSizeMB = this.settings.filterCacheSizeMB;
+            this.queryCacheMaxQueries = this.settings.filterCacheMaxQueries;
+            this.queryCache = new LRUQueryCache(this.queryCacheMaxQueries, this.queryCacheSizeMB * 1024L * 1024L);
+        }
+        return this.queryCache;
+    }
 }
@@ -0,0 +1,206 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+import javax.json.JsonObjectBuilder;
+
+/**
+ * Latency histograms per phase and event rates of one core, aggregated over
+ * all requests since startup.
+ */
+public class Metrics {
+    private final Map<String, Histogram> phases = new ConcurrentHashMap<>();
+    private final Map<String, Rate> rates = new ConcurrentHashMap<>();
+
+    public void record(String phase, long millis) {
+        this.phases.computeIfAbsent(phase, p -> new Histogram()).record(millis);
+    }
+
+    public void mark(String event) {
+        this.rates.computeIfAbsent(event, e -> new Rate()).mark(System.currentTimeMillis());
+    }
+
+    public Histogram histogram(String phase) {
+        return this.phases.get(phase);
+    }
+
+    public Rate rate(String event) {
+        return this.rates.get(event);
+    }
+
+    public JsonObject asJson() {
+        long now = System.currentTimeMillis();
+        JsonObjectBuilder phasesJson = Json.createObjectBuilder();
+        new TreeMap<>(this.phases).forEach((phase, histogram) -> phasesJson.add(phase, histogram.asJson()));
+        JsonObjectBuilder ratesJson = Json.createObjectBuilder();
+        new TreeMap<>(this.rates).forEach((event, rate) -> ratesJson.add(event, rate.asJson(now)));
+        return Json.createObjectBuilder()
+                .add("phases", phasesJson)
+                .add("rates", ratesJson)
+                .build();
+    }
+
+    public static double hitRatio(long hitCount, long missCount) {
+        long total = hitCount + missCount;
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    /**
+     * Counts of latencies in fixed buckets with upper bounds in milliseconds.
+     */
+    public static class Histogram {
+        static final long[] BOUNDS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000, 60000};
+        private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final AtomicLong max = new AtomicLong();
+
+        public Histogram() {
+            for (int i = 0; i < buckets.length; i++)
+                buckets[i] = new LongAdder();
+        }
+
+        public void record(long millis) {
+            int i = 0;
+            while (i < BOUNDS.length && millis > BOUNDS[i])
+                i++;
+            this.buckets[i].increment();
+            this.count.increment();
+            this.sum.add(millis);
+            this.max.accumulateAndGet(millis, Math::max);
+        }
+
+        public long getCount() {
+            return this.count.sum();
+        }
+
+        public long getMax() {
+            return this.max.get();
+        }
+
+        /**
+         * The upper bound of the bucket holding the given quantile, or the
+         * maximum for the last bucket.
+         */
+        public long quantile(double q) {
+            long[] counts = new long[buckets.length];
+            long total = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                counts[i] = buckets[i].sum();
+                total += counts[i];
+            }
+            if (total == 0)
+                return 0;
+            long rank = (long) Math.ceil(q * total);
+            long seen = 0;
+            for (int i = 0; i < BOUNDS.length; i++) {
+                seen += counts[i];
+                if (seen >= rank)
+                    return Math.min(BOUNDS[i], getMax());
+            }
+            return getMax();
+        }
+
+        public JsonObject asJson() {
+            long count = getCount();
+            JsonObjectBuilder bucketsJson = Json.createObjectBuilder();
+            for (int i = 0; i < BOUNDS.length; i++)
+                bucketsJson.add(String.valueOf(BOUNDS[i]), buckets[i].sum());
+            bucketsJson.add("+Inf", buckets[BOUNDS.length].sum());
+            return Json.createObjectBuilder()
+                    .add("count", count)
+                    .add("sum", sum.sum())
+                    .add("max", getMax())
+                    .add("mean", count == 0 ? 0 : (double) sum.sum() / count)
+                    .add("p50", quantile(0.5))
+                    .add("p95", quantile(0.95))
+                    .add("p99", quantile(0.99))
+                    .add("buckets", bucketsJson)
+                    .build();
+        }
+    }
+
+    /**
+     * Counts events in total and per second over the last minute. Each slot holds
+     * its second in the high and its count in the low 32 bits, so moving a slot on
+     * to a new second and counting in it are one compare-and-set.
+     */
+    public static class Rate {
+        private static final int SECONDS = 60;
+        private final LongAdder count = new LongAdder();
+        private final AtomicLongArray slots = new AtomicLongArray(SECONDS);
+
+        public void mark(long now) {
+            this.count.increment();
+            long second = now / 1000;
+            int slot = (int) (second % SECONDS);
+            while (true) {
+                long current = this.slots.get(slot);
+                long slotSecond = current >>> 32;
+                if (slotSecond > second)
+                    return;  // a minute late; not in any rate anymore
+                long next = slotSecond == second ? current + 1 : (second << 32) | 1;
+                if (this.slots.compareAndSet(slot, current, next))
+                    return;
+            }
+        }
+
+        public long getCount() {
+            return this.count.sum();
+        }
+
+        /**
+         * Mean number of events per second in the last minute, not counting
+         * the current second.
+         */
+        public double perSecond(long now) {
+            long second = now / 1000;
+            long events = 0;
+            for (int slot = 0; slot < SECONDS; slot++) {
+                long current = this.slots.get(slot);
+                long slotSecond = current >>> 32;
+                if (slotSecond < second && slotSecond >= second - SECONDS)
+                    events += current & 0xFFFFFFFFL;
+            }
+            return (double) events / SECONDS;
+        }
+
+        public JsonObject asJson(long now) {
+            return Json.createObjectBuilder()
+                    .add("count", getCount())
+                    .add("perSecond", perSecond(now))
+                    .build();
+        }
+    }
+}
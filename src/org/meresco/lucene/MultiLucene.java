@@ -50,6 +50,8 @@ import org.meresco.lucene.search.join.relational.WrappedRelationalQuery;
 
 public class MultiLucene {
     private Map<String, Lucene> lucenes = new HashMap<String, Lucene>();
+    private ResponseCache responseCache = new ResponseCache();
+    private Metrics metrics = new Metrics();
 
     public MultiLucene(List<Lucene> lucenes) {
         for (Lucene lucene : lucenes) {
@@ -66,10 +68,51 @@ public class MultiLucene {
     }
 
     public LuceneResponse executeComposedQuery(ComposedQuery q, String exportKey) throws Throwable {
+        long t0 = System.currentTimeMillis();
+        metrics.mark("queries");
+        LuceneResponse response = this.executeComposedQueryCached(q, exportKey);
+        metrics.record("composedQuery", System.currentTimeMillis() - t0);
+        return response;
+    }
+
+    private LuceneResponse executeComposedQueryCached(ComposedQuery q, String exportKey) throws Throwable {
         if (q.cores.size() <= 1 && exportKey == null && q.relationalFilter == null) {
+            // Cached by the Lucene of the result core.
             return this.singleCoreQuery(q);
         }
-        return this.multipleCoreQuery(q, exportKey);
+        long maxBytes = this.lucenes.get(q.resultsFrom).getSettings().responseCacheSizeMB * 1024L * 1024L;
+        if (maxBytes == 0 || exportKey != null) {
+            return this.multipleCoreQuery(q, exportKey);
+        }
+        List<Object> cacheKey = q.cacheKey();
+        long generation = this.generation();
+        LuceneResponse response = this.responseCache.get(cacheKey, generation);
+        if (response == null) {
+            response = this.multipleCoreQuery(q, exportKey);
+            if (!response.partialResults)
+                this.responseCache.put(cacheKey, generation, response, maxBytes);
+        }
+        return response;
+    }
+
+    /**
+     * Sum of the generations of all cores. Each only increases, so the sum
+     * changes as soon as any of the cores is refreshed.
+     */
+    private long generation() throws Exception {
+        long generation = 0;
+        for (Lucene lucene : this.lucenes.values()) {
+            generation += lucene.getGeneration();
+        }
+        return generation;
+    }
+
+    public ResponseCache getResponseCache() {
+        return this.responseCache;
+    }
+
+    public Metrics getMetrics() {
+        return this.metrics;
     }
 
     public LuceneResponse singleCoreQuery(ComposedQuery query) throws Throwable {
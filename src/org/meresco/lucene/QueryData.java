@@ -28,6 +28,7 @@ package org.meresco.lucene;
 
 import java.io.Reader;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.lucene.search.MatchAllDocsQuery;
@@ -51,6 +52,8 @@ public class QueryData {
     public String dedupSortFields[];
     public boolean clustering;
     public ClusterConfig clusterConfig;
+    public int totalHitsThreshold = Integer.MAX_VALUE;
+    public long timeAllowed = 0;
 
     public QueryData(Reader queryReader, JsonQueryConverter converter) {
         JsonObject object = Json.createReader(queryReader).readObject();
@@ -67,6 +70,9 @@ public class QueryData {
         getDedupSortFieldsFromJson(object, "dedupSortField");
         this.clustering = object.getBoolean("clustering", false);
         this.clusterConfig = ClusterConfig.parseFromJsonObject(object);
+        this.totalHitsThreshold = object.getInt("totalHitsThreshold", Integer.MAX_VALUE);
+        if (object.containsKey("timeAllowed"))
+            this.timeAllowed = object.getJsonNumber("timeAllowed").longValue();
     }
 
     public QueryData() {
@@ -89,4 +95,43 @@ public class QueryData {
             }
         }
     }
+
+    /**
+     * Value-equal snapshot of everything that determines the response, for
+     * use as a cache key. timeAllowed is left out; partial responses are never
+     * cached.
+     */
+    public List<Object> cacheKey() {
+        return Arrays.asList(
+                query,
+                facetsKey(facets),
+                new ArrayList<>(storedFields),
+                start,
+                stop,
+                sort,
+                suggestionRequest == null ? null : Arrays.asList(suggestionRequest.field, suggestionRequest.count, suggestionRequest.mode, new ArrayList<>(suggestionRequest.suggests)),
+                dedupField,
+                dedupSortFields == null ? null : Arrays.asList(dedupSortFields),
+                clustering,
+                clusterConfig == null ? null : clusterConfig.toString(),
+                totalHitsThreshold);
+    }
+
+    static List<Object> facetsKey(List<FacetRequest> facets) {
+        if (facets == null)
+            return null;
+        List<Object> key = new ArrayList<>();
+        for (FacetRequest f : facets)
+            key.add(Arrays.asList(f.fieldname, f.maxTerms, Arrays.asList(f.path)));
+        return key;
+    }
+
+    static List<Object> drilldownQueriesKey(List<String[]> drilldownQueries) {
+        if (drilldownQueries == null)
+            return null;
+        List<Object> key = new ArrayList<>();
+        for (String[] d : drilldownQueries)
+            key.add(Arrays.asList(d));
+        return key;
+    }
 }
@@ -0,0 +1,164 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.search.spell.SuggestWord;
+import org.meresco.lucene.LuceneResponse.ClusterHit;
+import org.meresco.lucene.LuceneResponse.DrilldownData;
+import org.meresco.lucene.LuceneResponse.Hit;
+
+/**
+ * LRU cache of complete LuceneResponses, bounded by an estimate of their
+ * memory use. Every entry remembers the searcher generation it was computed
+ * for; a lookup with another generation is a miss. Cached responses are
+ * shared between requests and must not be modified.
+ */
+public class ResponseCache {
+    private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long ramBytesUsed = 0;
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+
+    public synchronized LuceneResponse get(Object key, long generation) {
+        Entry entry = this.entries.get(key);
+        if (entry != null) {
+            if (entry.generation == generation) {
+                this.hitCount++;
+                return entry.response;
+            }
+            remove(key);
+        }
+        this.missCount++;
+        return null;
+    }
+
+    public synchronized void put(Object key, long generation, LuceneResponse response, long maxBytes) {
+        long bytes = ramBytesUsed(response);
+        if (bytes > maxBytes)
+            return;
+        remove(key);
+        this.entries.put(key, new Entry(generation, response, bytes));
+        this.ramBytesUsed += bytes;
+        Iterator<Entry> eldest = this.entries.values().iterator();
+        while (this.ramBytesUsed > maxBytes) {
+            this.ramBytesUsed -= eldest.next().bytes;
+            eldest.remove();
+            this.evictionCount++;
+        }
+    }
+
+    public synchronized void clear() {
+        this.entries.clear();
+        this.ramBytesUsed = 0;
+    }
+
+    private void remove(Object key) {
+        Entry old = this.entries.remove(key);
+        if (old != null)
+            this.ramBytesUsed -= old.bytes;
+    }
+
+    public synchronized long getHitCount() {
+        return this.hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return this.missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return this.evictionCount;
+    }
+
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    public synchronized long ramBytesUsed() {
+        return this.ramBytesUsed;
+    }
+
+    static long ramBytesUsed(LuceneResponse response) {
+        long bytes = 256;
+        for (Hit hit : response.hits) {
+            bytes += 64 + ramBytesUsed(hit.id);
+            for (IndexableField[] fields : hit.fields) {
+                bytes += 32;
+                for (IndexableField field : fields) {
+                    bytes += 64 + ramBytesUsed(field.stringValue());
+                }
+            }
+            if (hit instanceof ClusterHit) {
+                bytes += 48 * (((ClusterHit) hit).topDocs.length + ((ClusterHit) hit).topTerms.length);
+            }
+        }
+        for (DrilldownData dd : response.drilldownData) {
+            bytes += 64 + ramBytesUsed(dd.fieldname) + ramBytesUsed(dd.terms);
+        }
+        for (Map.Entry<String, SuggestWord[]> suggestion : response.suggestions.entrySet()) {
+            bytes += 64 + ramBytesUsed(suggestion.getKey());
+            for (SuggestWord word : suggestion.getValue()) {
+                bytes += 48 + ramBytesUsed(word.string);
+            }
+        }
+        bytes += 64 * response.times.size();
+        if (response.keys != null)
+            bytes += response.keys.ramBytesUsed();
+        return bytes;
+    }
+
+    private static long ramBytesUsed(List<DrilldownData.Term> terms) {
+        long bytes = 0;
+        if (terms == null)
+            return bytes;
+        for (DrilldownData.Term term : terms) {
+            bytes += 48 + ramBytesUsed(term.label) + ramBytesUsed(term.subTerms);
+        }
+        return bytes;
+    }
+
+    private static long ramBytesUsed(String s) {
+        return s == null ? 0 : 40 + 2L * s.length();
+    }
+
+    private static class Entry {
+        final long generation;
+        final LuceneResponse response;
+        final long bytes;
+
+        Entry(long generation, LuceneResponse response, long bytes) {
+            this.generation = generation;
+            this.response = response;
+            this.bytes = bytes;
+        }
+    }
+}
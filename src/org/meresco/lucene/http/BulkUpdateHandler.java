@@ -0,0 +1,55 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene.http;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Request;
+import org.meresco.lucene.BulkUpdate;
+import org.meresco.lucene.DocumentStreamConverter;
+import org.meresco.lucene.Lucene;
+import org.meresco.lucene.OutOfMemoryShutdown;
+
+public class BulkUpdateHandler extends AbstractMerescoLuceneHandler {
+    private Lucene lucene;
+    private DocumentStreamConverter converter;
+
+    public BulkUpdateHandler(Lucene lucene, DocumentStreamConverter converter, OutOfMemoryShutdown shutdown) {
+        super(shutdown);
+        this.lucene = lucene;
+        this.converter = converter;
+    }
+
+    @Override
+    public void doHandle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws Exception {
+        request.setCharacterEncoding("UTF-8");
+        response.setCharacterEncoding("UTF-8");
+        this.lucene.getSettings();  // uninitialized cores answer 409 before any status is written
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType("application/x-ndjson");
+        new BulkUpdate(this.lucene, this.converter).apply(request.getReader(), response.getWriter());
+    }
+}
@@ -33,6 +33,7 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.eclipse.jetty.server.Handler;
 import org.eclipse.jetty.server.Request;
+import org.meresco.lucene.CommitScheduler;
 import org.meresco.lucene.Lucene;
 import org.meresco.lucene.OutOfMemoryShutdown;
 import org.meresco.lucene.numerate.TermNumerator;
@@ -41,19 +42,19 @@ import org.meresco.lucene.numerate.TermNumerator;
 public class CommitHandler extends AbstractMerescoLuceneHandler implements Handler {
     private TermNumerator termNumerator;
     private List<Lucene> lucenes;
+    private CommitScheduler commitScheduler;
 
-    public CommitHandler(TermNumerator termNumerator, List<Lucene> lucenes, OutOfMemoryShutdown shutdown) {
+    public CommitHandler(TermNumerator termNumerator, List<Lucene> lucenes, CommitScheduler commitScheduler, OutOfMemoryShutdown shutdown) {
         super(shutdown);
         this.termNumerator = termNumerator;
         this.lucenes = lucenes;
+        this.commitScheduler = commitScheduler;
     }
 
     @Override
     public void doHandle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws Exception {
         termNumerator.commit();
-        for (Lucene lucene : lucenes) {
-            lucene.commit();
-        }
+        commitScheduler.commitAll(lucenes);
         response.setStatus(HttpServletResponse.SC_OK);
     }
 }
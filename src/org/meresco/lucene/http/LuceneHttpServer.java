@@ -45,6 +45,8 @@ import org.eclipse.jetty.server.ServerConnector;
 import org.eclipse.jetty.server.handler.ContextHandler;
 import org.eclipse.jetty.server.handler.ContextHandlerCollection;
 import org.eclipse.jetty.util.thread.ExecutorThreadPool;
+import org.meresco.lucene.CommitScheduler;
+import org.meresco.lucene.DocumentStreamConverter;
 import org.meresco.lucene.Lucene;
 import org.meresco.lucene.LuceneShutdown;
 import org.meresco.lucene.MultiLucene;
@@ -74,6 +76,9 @@ public class LuceneHttpServer {
         option.setRequired(true);
         options.addOption(option);
 
+        option = new Option(null, "inMemoryKeys", false, "Keep a map of all keys to their numbers in memory");
+        options.addOption(option);
+
         PosixParser parser = new PosixParser();
         CommandLine commandLine = null;
         try {
@@ -87,35 +92,58 @@ public class LuceneHttpServer {
         Integer port = new Integer(commandLine.getOptionValue("p"));
         String storeLocation = commandLine.getOptionValue("d");
         String[] cores = commandLine.getOptionValues("core");
+        boolean inMemoryKeys = commandLine.hasOption("inMemoryKeys");
 
         if (Charset.defaultCharset() != Charset.forName("UTF-8")) {
         System.err.println("file.encoding must be UTF-8.");
             System.exit(1);
         }
 
-        TermNumerator termNumerator = new TermNumerator(Paths.get(storeLocation, "keys-termnumerator"));
+        LuceneHttpServer luceneHttpServer = new LuceneHttpServer(port, storeLocation, cores, inMemoryKeys);
+        registerShutdownHandler(luceneHttpServer.shutdown);
+        luceneHttpServer.start();
+        luceneHttpServer.join();
+    }
+
+    private Server server;
+    private OutOfMemoryShutdown shutdown;
+
+    public LuceneHttpServer(int port, String storeLocation, String[] cores) throws Exception {
+        this(port, storeLocation, cores, false);
+    }
+
+    public LuceneHttpServer(int port, String storeLocation, String[] cores, boolean inMemoryKeys) throws Exception {
+        TermNumerator termNumerator = new TermNumerator(Paths.get(storeLocation, "keys-termnumerator"), inMemoryKeys);
         ContextHandlerCollection contexts = new ContextHandlerCollection();
         List<Lucene> lucenes = new ArrayList<Lucene>();
+        CommitScheduler commitScheduler = new CommitScheduler(cores.length);
         for (String core : cores) {
             Lucene lucene = new Lucene(core, Paths.get(storeLocation, "lucene-" + core));
+            lucene.setCommitScheduler(commitScheduler);
             lucenes.add(lucene);
         }
         
-        ExecutorThreadPool pool = new ExecutorThreadPool(50, 200, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(1000));
-        Server server = new Server(pool);
+        ArrayBlockingQueue<Runnable> requestQueue = new ArrayBlockingQueue<Runnable>(1000);
+        ExecutorThreadPool pool = new ExecutorThreadPool(50, 200, 60, TimeUnit.SECONDS, requestQueue);
+        server = new Server(pool);
         ServerConnector http = new ServerConnector(server, new HttpConnectionFactory());
         http.setPort(port);
         server.addConnector(http);
         
-        OutOfMemoryShutdown shutdown = new LuceneShutdown(server, lucenes, termNumerator, storeLocation);
+        shutdown = new LuceneShutdown(server, lucenes, termNumerator, storeLocation);
         for (Lucene lucene : lucenes) {
             String core = lucene.name;
+            DocumentStreamConverter converter = new DocumentStreamConverter(termNumerator);
             ContextHandler context = new ContextHandler("/" + core + "/query");
             context.setHandler(new QueryHandler(lucene, shutdown));
             contexts.addHandler(context);
 
             context = new ContextHandler("/" + core + "/update");
-            context.setHandler(new UpdateHandler(lucene, termNumerator, shutdown));
+            context.setHandler(new UpdateHandler(lucene, converter, shutdown));
+            contexts.addHandler(context);
+
+            context = new ContextHandler("/" + core + "/bulkUpdate");
+            context.setHandler(new BulkUpdateHandler(lucene, converter, shutdown));
             contexts.addHandler(context);
 
             context = new ContextHandler("/" + core + "/delete");
@@ -126,6 +154,10 @@ public class LuceneHttpServer {
             context.setHandler(new SettingsHandler(lucene, shutdown));
             contexts.addHandler(context);
 
+            context = new ContextHandler("/" + core + "/cacheStats");
+            context.setHandler(new CacheStatsHandler(lucene, shutdown));
+            contexts.addHandler(context);
+
             context = new ContextHandler("/" + core + "/prefixSearch");
             context.setHandler(new PrefixSearchHandler(lucene, shutdown));
             contexts.addHandler(context);
@@ -134,8 +166,9 @@ public class LuceneHttpServer {
             context.setHandler(new OtherHandler(lucene, shutdown));
             contexts.addHandler(context);
         }
+        MultiLucene multiLucene = new MultiLucene(lucenes);
         ContextHandler composedQueryHandler = new ContextHandler("/query");
-        composedQueryHandler.setHandler(new ComposedQueryHandler(new MultiLucene(lucenes), shutdown));
+        composedQueryHandler.setHandler(new ComposedQueryHandler(multiLucene, shutdown));
         contexts.addHandler(composedQueryHandler);
 
         ContextHandler exportKeysHandler = new ContextHandler("/exportkeys");
@@ -147,16 +180,35 @@ public class LuceneHttpServer {
         contexts.addHandler(numerateHandler);
 
         ContextHandler commitHandler = new ContextHandler("/commit");
-        commitHandler.setHandler(new CommitHandler(termNumerator, lucenes, shutdown));
+        commitHandler.setHandler(new CommitHandler(termNumerator, lucenes, commitScheduler, shutdown));
         contexts.addHandler(commitHandler);       
 
-        registerShutdownHandler(shutdown);
+        ContextHandler metricsHandler = new ContextHandler("/metrics");
+        metricsHandler.setHandler(new MetricsHandler(lucenes, multiLucene, commitScheduler, requestQueue, shutdown));
+        contexts.addHandler(metricsHandler);
 
         server.setHandler(contexts);
+    }
+
+    public void start() throws Exception {
         server.start();
+    }
+
+    public void join() throws InterruptedException {
         server.join();
     }
 
+    public int getPort() {
+        return ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+    }
+
+    /**
+     * Closes all cores and stops the server. Like a TERM signal this ends the JVM.
+     */
+    public void shutdown() {
+        shutdown.shutdown();
+    }
+
     static void registerShutdownHandler(final OutOfMemoryShutdown shutdown) {
         Signal.handle(new Signal("TERM"), new SignalHandler() {
             public void handle(Signal sig) {
@@ -0,0 +1,99 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene.http;
+
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import javax.json.Json;
+import javax.json.JsonObjectBuilder;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.lucene.search.LRUQueryCache;
+import org.eclipse.jetty.server.Request;
+import org.meresco.lucene.CommitScheduler;
+import org.meresco.lucene.Lucene;
+import org.meresco.lucene.Metrics;
+import org.meresco.lucene.MultiLucene;
+import org.meresco.lucene.OutOfMemoryShutdown;
+import org.meresco.lucene.ResponseCache;
+
+
+public class MetricsHandler extends AbstractMerescoLuceneHandler {
+    private List<Lucene> lucenes;
+    private MultiLucene multiLucene;
+    private CommitScheduler commitScheduler;
+    private BlockingQueue<Runnable> requestQueue;
+
+    public MetricsHandler(List<Lucene> lucenes, MultiLucene multiLucene, CommitScheduler commitScheduler, BlockingQueue<Runnable> requestQueue, OutOfMemoryShutdown shutdown) {
+        super(shutdown);
+        this.lucenes = lucenes;
+        this.multiLucene = multiLucene;
+        this.commitScheduler = commitScheduler;
+        this.requestQueue = requestQueue;
+    }
+
+    @Override
+    public void doHandle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws Exception {
+        JsonObjectBuilder cores = Json.createObjectBuilder();
+        for (Lucene lucene : lucenes) {
+            if (!lucene.hasSettings())
+                continue;
+            ThreadPoolExecutor executor = lucene.getSearchExecutor();
+            JsonObjectBuilder filterCache = Json.createObjectBuilder();
+            LRUQueryCache queryCache = lucene.getFilterCache();
+            if (queryCache != null)
+                filterCache.add("hitRatio", Metrics.hitRatio(queryCache.getHitCount(), queryCache.getMissCount()));
+            cores.add(lucene.name, Json.createObjectBuilder()
+                    .add("metrics", lucene.getMetrics().asJson())
+                    .add("searchExecutor", Json.createObjectBuilder()
+                            .add("queueSize", executor.getQueue().size())
+                            .add("activeCount", executor.getActiveCount()))
+                    .add("filterCache", filterCache)
+                    .add("responseCache", responseCacheJson(lucene.getResponseCache())));
+        }
+        response.setContentType("application/json");
+        response.getWriter().write(Json.createObjectBuilder()
+                .add("requestQueueSize", requestQueue.size())
+                .add("commits", Json.createObjectBuilder()
+                        .add("count", commitScheduler.getCommitCount())
+                        .add("totalTime", commitScheduler.getTotalCommitTime())
+                        .add("maxTime", commitScheduler.getMaxCommitTime())
+                        .add("lastTime", commitScheduler.getLastCommitTime()))
+                .add("composedQueries", Json.createObjectBuilder()
+                        .add("metrics", multiLucene.getMetrics().asJson())
+                        .add("responseCache", responseCacheJson(multiLucene.getResponseCache())))
+                .add("cores", cores)
+                .build().toString());
+        response.setStatus(HttpServletResponse.SC_OK);
+    }
+
+    private static JsonObjectBuilder responseCacheJson(ResponseCache responseCache) {
+        return Json.createObjectBuilder()
+                .add("hitRatio", Metrics.hitRatio(responseCache.getHitCount(), responseCache.getMissCount()));
+    }
+}
@@ -31,26 +31,25 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.apache.lucene.document.Document;
 import org.eclipse.jetty.server.Request;
-import org.meresco.lucene.DocumentStringToDocument;
+import org.meresco.lucene.DocumentStreamConverter;
 import org.meresco.lucene.Lucene;
 import org.meresco.lucene.OutOfMemoryShutdown;
-import org.meresco.lucene.numerate.TermNumerator;
 
 public class UpdateHandler extends AbstractMerescoLuceneHandler {
     private Lucene lucene;
-    private TermNumerator termNumerator;
+    private DocumentStreamConverter converter;
 
-    public UpdateHandler(Lucene lucene, TermNumerator termNumerator, OutOfMemoryShutdown shutdown) {
+    public UpdateHandler(Lucene lucene, DocumentStreamConverter converter, OutOfMemoryShutdown shutdown) {
         super(shutdown);
         this.lucene = lucene;
-        this.termNumerator = termNumerator;
+        this.converter = converter;
     }
 
     @Override
     public void doHandle(String target, Request baseRequest, HttpServletRequest request, HttpServletResponse response) throws Exception {
         request.setCharacterEncoding("UTF-8");
         response.setCharacterEncoding("UTF-8");
-        Document document = new DocumentStringToDocument(request.getReader(), termNumerator).convert();
+        Document document = this.converter.convert(request.getReader());
         if (request.getParameterMap().containsKey("identifier"))
             this.lucene.addDocument(request.getParameter("identifier"), document);
         else
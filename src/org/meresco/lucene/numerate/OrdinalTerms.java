@@ -0,0 +1,163 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene.numerate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.apache.lucene.facet.taxonomy.FacetLabel;
+import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyReader;
+import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyWriter;
+
+/**
+ * Reverse of the taxonomy of a TermNumerator: the term of each ordinal, in an
+ * append-only array of addresses into pages of UTF-8 bytes, each term prefixed by
+ * its length as a vInt. Ordinals never change, so what has been appended is never
+ * written again; readers take a snapshot from a volatile field and need no locks.
+ *
+ * New ordinals are appended by refresh, which reads them from the taxonomy writer.
+ * It runs after commit and when a lookup asks for an ordinal not appended yet.
+ */
+class OrdinalTerms {
+    private static final int PAGE_BITS = 16;
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    private final DirectoryTaxonomyWriter taxoWriter;
+    private DirectoryTaxonomyReader taxoReader;
+    private volatile Snapshot snapshot = new Snapshot(new long[1024], new byte[16][], 0);
+    private int pageCount;
+    private int position = PAGE_SIZE;
+
+    OrdinalTerms(DirectoryTaxonomyWriter taxoWriter) {
+        this.taxoWriter = taxoWriter;
+    }
+
+    /**
+     * Returns null for the root ordinal and for ordinals not in the taxonomy.
+     */
+    String get(int ordinal) throws IOException {
+        Snapshot s = snapshot;
+        if (ordinal >= s.size)
+            s = refresh();
+        return s.get(ordinal);
+    }
+
+    String[] get(int[] ordinals) throws IOException {
+        Snapshot s = snapshot;
+        for (int ordinal : ordinals) {
+            if (ordinal >= s.size) {
+                s = refresh();
+                break;
+            }
+        }
+        String[] terms = new String[ordinals.length];
+        for (int i = 0; i < ordinals.length; i++)
+            terms[i] = s.get(ordinals[i]);
+        return terms;
+    }
+
+    int size() {
+        return snapshot.size;
+    }
+
+    synchronized Snapshot refresh() throws IOException {
+        if (taxoReader == null) {
+            taxoReader = new DirectoryTaxonomyReader(taxoWriter);
+        } else {
+            DirectoryTaxonomyReader tr = DirectoryTaxonomyReader.openIfChanged(taxoReader);
+            if (tr != null) {
+                taxoReader.close();
+                taxoReader = tr;
+            }
+        }
+        Snapshot s = snapshot;
+        int size = taxoReader.getSize();
+        if (size <= s.size)
+            return s;
+        long[] addresses = s.addresses.length >= size ? s.addresses : Arrays.copyOf(s.addresses, Math.max(size, s.addresses.length * 2));
+        byte[][] pages = s.pages;
+        for (int ordinal = s.size; ordinal < size; ordinal++) {
+            FacetLabel label = taxoReader.getPath(ordinal);
+            byte[] term = label.length == 0 ? new byte[0] : label.components[0].getBytes(StandardCharsets.UTF_8);
+            int length = 5 + term.length;
+            if (position + length > PAGE_SIZE) {
+                if (pageCount == pages.length)
+                    pages = Arrays.copyOf(pages, pages.length * 2);
+                pages[pageCount++] = new byte[PAGE_SIZE];  // FacetLabel limits terms to 8191 chars
+                position = 0;
+            }
+            int page = pageCount - 1;
+            addresses[ordinal] = ((long) page << 32) | position;
+            position = writeVInt(pages[page], position, term.length);
+            System.arraycopy(term, 0, pages[page], position, term.length);
+            position += term.length;
+        }
+        snapshot = s = new Snapshot(addresses, pages, size);
+        return s;
+    }
+
+    synchronized void close() throws IOException {
+        if (taxoReader != null)
+            taxoReader.close();
+    }
+
+    private static int writeVInt(byte[] bytes, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+        return position;
+    }
+
+    private static class Snapshot {
+        final long[] addresses;
+        final byte[][] pages;
+        final int size;
+
+        Snapshot(long[] addresses, byte[][] pages, int size) {
+            this.addresses = addresses;
+            this.pages = pages;
+            this.size = size;
+        }
+
+        String get(int ordinal) {
+            if (ordinal <= 0 || ordinal >= size)
+                return null;
+            long address = addresses[ordinal];
+            byte[] page = pages[(int) (address >>> 32)];
+            int position = (int) address;
+            int length = 0;
+            for (int shift = 0; ; shift += 7) {
+                byte b = page[position++];
+                length |= (b & 0x7F) << shift;
+                if (b >= 0)
+                    break;
+            }
+            return new String(page, position, length, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -33,43 +33,96 @@ import org.apache.lucene.facet.taxonomy.FacetLabel;
 import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyReader;
 import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyWriter;
 import org.apache.lucene.facet.taxonomy.writercache.LruTaxonomyWriterCache;
+import org.apache.lucene.facet.taxonomy.writercache.TaxonomyWriterCache;
+import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.MMapDirectory;
 
 public class TermNumerator {
+    static final String ORDINALS_FILE = "termnumerator.ordinals";
+
     private DirectoryTaxonomyWriter taxoWriter;
-    private DirectoryTaxonomyReader taxoReader;
+    private OrdinalTerms terms;
+    private TermOrdinalMap ordinals;
+    private Path ordinalsPath;
 
     protected TermNumerator() {};  // for easier mocking by subclass
     
     public TermNumerator(Path path) throws IOException {
+        this(path, false);
+    }
+
+    /**
+     * With inMemory all terms are kept in a TermOrdinalMap, which also serves as the cache
+     * of the taxonomy writer. The map is written next to the taxonomy on close and read
+     * back on open, so known terms are found without the taxonomy right from the start.
+     */
+    public TermNumerator(Path path, boolean inMemory) throws IOException {
         MMapDirectory taxoDirectory = new MMapDirectory(path);
         taxoDirectory.setUseUnmap(false);
-        taxoWriter = new DirectoryTaxonomyWriter(taxoDirectory, IndexWriterConfig.OpenMode.CREATE_OR_APPEND, new LruTaxonomyWriterCache(100));
+        TaxonomyWriterCache cache = new LruTaxonomyWriterCache(100);
+        if (inMemory) {
+            ordinalsPath = path.resolve(ORDINALS_FILE);
+            cache = ordinals = openOrdinals(taxoDirectory, ordinalsPath);
+        }
+        taxoWriter = new DirectoryTaxonomyWriter(taxoDirectory, IndexWriterConfig.OpenMode.CREATE_OR_APPEND, cache);
+        terms = new OrdinalTerms(taxoWriter);
     }
 
     public int numerateTerm(String term) throws IOException {
+        if (ordinals != null) {
+            int ordinal = ordinals.get(term);
+            if (ordinal > 0)
+                return ordinal;
+        }
         return taxoWriter.addCategory(new FacetLabel(term));
     }
 
-    synchronized String getTerm(int nr) throws IOException {
-        if (taxoReader == null) {
-            taxoReader = new DirectoryTaxonomyReader(taxoWriter);
-        }
-        DirectoryTaxonomyReader tr = DirectoryTaxonomyReader.openIfChanged(taxoReader);
-        if (tr != null) {
-            taxoReader.close();
-            taxoReader = tr;
+    private static TermOrdinalMap openOrdinals(Directory taxoDirectory, Path ordinalsPath) throws IOException {
+        if (!DirectoryReader.indexExists(taxoDirectory))
+            return new TermOrdinalMap(0);
+        try (DirectoryTaxonomyReader reader = new DirectoryTaxonomyReader(taxoDirectory)) {
+            int taxonomySize = reader.getSize();
+            TermOrdinalMap map = TermOrdinalMap.read(ordinalsPath, taxonomySize);
+            if (map != null && coversPrefix(map, reader, taxonomySize))
+                return map;
+            return new TermOrdinalMap(taxonomySize);
         }
-        return taxoReader.getPath(nr).components[0];
+    }
+
+    /**
+     * Whether the map was written for this taxonomy, or an earlier state of it. What it
+     * misses is added by the taxonomy writer when it fills its cache.
+     */
+    private static boolean coversPrefix(TermOrdinalMap map, DirectoryTaxonomyReader reader, int taxonomySize) throws IOException {
+        int maxOrdinal = map.maxOrdinal();
+        if (maxOrdinal >= taxonomySize)
+            return false;
+        return maxOrdinal == 0 || map.get(reader.getPath(maxOrdinal).components[0]) == maxOrdinal;
+    }
+
+    public String getTerm(int nr) throws IOException {
+        return terms.get(nr);
+    }
+
+    /**
+     * Terms of many ordinals at once, with null for ordinals that have no term.
+     */
+    public String[] getTerms(int[] nrs) throws IOException {
+        return terms.get(nrs);
     }
 
     public synchronized void commit() throws IOException {
         taxoWriter.commit();
+        terms.refresh();
     }
 
     public void close() throws IOException {
+        terms.close();
         taxoWriter.close();
+        if (ordinals != null)
+            ordinals.write(ordinalsPath);
     }
     
     public int size() { 
@@ -0,0 +1,254 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene.numerate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.lucene.facet.taxonomy.FacetLabel;
+import org.apache.lucene.facet.taxonomy.writercache.TaxonomyWriterCache;
+
+/**
+ * Open addressing hash from term to ordinal, kept in front of the taxonomy of a
+ * TermNumerator. Terms are not stored: a slot holds a 64 bit hash of the term and,
+ * packed with the ordinal, another 32 bit hash, so 16 bytes per slot and no objects
+ * per term. A hit needs all 96 bits to match.
+ *
+ * Lookups take no locks; inserts and growing the table are synchronized. A lookup
+ * that misses, also because it raced with growing, falls back to the taxonomy, which
+ * remains the authority.
+ *
+ * As the cache of the DirectoryTaxonomyWriter it is never full, so the writer fills it
+ * from the taxonomy once and from then on knows a miss is a new term without reading
+ * the index. Only labels of one component, and the root, are supported.
+ */
+class TermOrdinalMap implements TaxonomyWriterCache {
+    private static final int MAGIC = 0x4b4d4150;  // "KMAP"
+    private static final int VERSION = 1;
+    private static final double MAX_LOAD = 0.6;
+
+    private volatile Table table;
+    private int size;
+    private int maxOrdinal;
+
+    TermOrdinalMap(int expectedSize) {
+        this.table = new Table(capacityFor(expectedSize));
+    }
+
+    int get(String term) {
+        long hash = hash(term, 0x9E3779B97F4A7C15L);
+        int check = (int) hash(term, 0xC2B2AE3D27D4EB4FL);
+        return table.get(hash, check);
+    }
+
+    synchronized void put(String term, int ordinal) {
+        put(hash(term, 0x9E3779B97F4A7C15L), (int) hash(term, 0xC2B2AE3D27D4EB4FL), ordinal);
+    }
+
+    private void put(long hash, int check, int ordinal) {
+        if (table.put(hash, check, ordinal)) {
+            size++;
+            if (size > table.capacity() * MAX_LOAD)
+                table = table.grow();
+        }
+        maxOrdinal = Math.max(maxOrdinal, ordinal);
+    }
+
+    @Override
+    public int get(FacetLabel label) {
+        return get(key(label));
+    }
+
+    @Override
+    public boolean put(FacetLabel label, int ordinal) {
+        put(key(label), ordinal);
+        return false;
+    }
+
+    @Override
+    public boolean isFull() {
+        return false;
+    }
+
+    @Override
+    public synchronized void clear() {
+        table = new Table(capacityFor(0));
+        size = 0;
+        maxOrdinal = 0;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public synchronized int size() {
+        return size;
+    }
+
+    private static String key(FacetLabel label) {
+        if (label.length > 1)
+            throw new IllegalArgumentException("Only labels of one component are supported: " + label);
+        return label.length == 0 ? "" : label.components[0];  // components are never empty
+    }
+
+    /**
+     * The highest ordinal put, so a loaded map knows which part of the taxonomy it
+     * already covers.
+     */
+    synchronized int maxOrdinal() {
+        return maxOrdinal;
+    }
+
+    synchronized void write(Path path) throws IOException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(size);
+            out.writeInt(maxOrdinal);
+            Table t = table;
+            for (int i = 0; i < t.capacity(); i++) {
+                long hash = t.hashes.get(i);
+                if (hash != 0) {
+                    out.writeLong(hash);
+                    out.writeLong(t.entries.get(i));
+                }
+            }
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Reads a map written by write, or returns null when there is none or it is unreadable.
+     */
+    static TermOrdinalMap read(Path path, int expectedSize) {
+        if (!Files.exists(path))
+            return null;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION)
+                return null;
+            int count = in.readInt();
+            int maxOrdinal = in.readInt();
+            TermOrdinalMap map = new TermOrdinalMap(Math.max(count, expectedSize));
+            for (int i = 0; i < count; i++) {
+                long hash = in.readLong();
+                long entry = in.readLong();
+                map.put(hash, (int) (entry >>> 32), (int) entry);
+            }
+            map.maxOrdinal = maxOrdinal;
+            return map;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static int capacityFor(int expectedSize) {
+        long capacity = Long.highestOneBit((long) (Math.max(expectedSize, 1024) / MAX_LOAD)) << 1;
+        return (int) Math.min(capacity, 1 << 30);
+    }
+
+    /**
+     * FNV-1a over the chars with a 64 bit prime, seeded, and a MurmurHash3 finalizer.
+     * Never 0, which marks an empty slot.
+     */
+    static long hash(String term, long seed) {
+        long h = seed ^ term.length();
+        for (int i = 0; i < term.length(); i++) {
+            h = (h ^ term.charAt(i)) * 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == 0 ? 1 : h;
+    }
+
+    private static class Table {
+        final AtomicLongArray hashes;
+        final AtomicLongArray entries;  // check << 32 | ordinal
+        final int mask;
+
+        Table(int capacity) {
+            hashes = new AtomicLongArray(capacity);
+            entries = new AtomicLongArray(capacity);
+            mask = capacity - 1;
+        }
+
+        int capacity() {
+            return mask + 1;
+        }
+
+        int get(long hash, int check) {
+            for (int i = (int) hash & mask; ; i = (i + 1) & mask) {
+                long h = hashes.get(i);
+                if (h == 0)
+                    return -1;
+                if (h == hash) {
+                    long entry = entries.get(i);
+                    if ((int) (entry >>> 32) == check)
+                        return (int) entry;
+                }
+            }
+        }
+
+        /**
+         * Writes the entry before the hash, so a lookup that sees the hash sees the entry.
+         */
+        boolean put(long hash, int check, int ordinal) {
+            long entry = ((long) check << 32) | (ordinal & 0xFFFFFFFFL);
+            for (int i = (int) hash & mask; ; i = (i + 1) & mask) {
+                long h = hashes.get(i);
+                if (h == 0) {
+                    entries.set(i, entry);
+                    hashes.set(i, hash);
+                    return true;
+                }
+                if (h == hash && (int) (entries.get(i) >>> 32) == check)
+                    return false;
+            }
+        }
+
+        Table grow() {
+            Table grown = new Table(capacity() << 1);
+            for (int i = 0; i < capacity(); i++) {
+                long hash = hashes.get(i);
+                if (hash != 0) {
+                    long entry = entries.get(i);
+                    grown.put(hash, (int) (entry >>> 32), (int) entry);
+                }
+            }
+            return grown;
+        }
+    }
+}
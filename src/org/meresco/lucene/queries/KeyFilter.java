@@ -28,6 +28,7 @@
 package org.meresco.lucene.queries;
 
 import java.io.IOException;
+import java.util.Objects;
 
 import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.search.ConstantScoreScorer;
@@ -38,15 +39,20 @@ import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Scorer;
 import org.apache.lucene.search.ScoreMode;
 import org.apache.lucene.search.Weight;
+import org.apache.lucene.util.Accountable;
 import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.FixedBitSet;
+import org.apache.lucene.util.RamUsageEstimator;
 import org.meresco.lucene.search.join.KeyValuesCache;
 
 
-public class KeyFilter extends Query {
+public class KeyFilter extends Query implements Accountable {
+    private static final long BASE_RAM_BYTES_USED = RamUsageEstimator.shallowSizeOfInstance(KeyFilter.class);
+
     final private String keyName;
     final private Bits keySet;
     final private boolean inverted;
+    private int hash;
 
     public KeyFilter(Bits keySet, String keyName, boolean inverted) {
         this.keySet = keySet;
@@ -152,11 +158,22 @@ public class KeyFilter extends Query {
             return false;
         }
         KeyFilter other = (KeyFilter) o;
-        return other.keyName == this.keyName && other.keySet.equals(this.keySet) && other.inverted == this.inverted;
+        return Objects.equals(other.keyName, this.keyName) && other.keySet.equals(this.keySet) && other.inverted == this.inverted;
     }
 
     @Override
     public int hashCode() {
-       return classHash();
+        // Computed once, when first asked: for a FixedBitSet this hashes all of its bits.
+        int h = this.hash;
+        if (h == 0) {
+            h = 31 * (31 * (31 * classHash() + Objects.hashCode(keyName)) + Objects.hashCode(keySet)) + Boolean.hashCode(inverted);
+            this.hash = h;
+        }
+        return h;
+    }
+
+    @Override
+    public long ramBytesUsed() {
+        return BASE_RAM_BYTES_USED + (keySet instanceof Accountable ? ((Accountable) keySet).ramBytesUsed() : 0);
     }
 }
@@ -253,6 +253,7 @@ class DeDupFilterSubCollector extends SubCollector {
     }
 
     public ScoreMode scoreMode() {
-        return this.delegate.scoreMode();
+        // Every document must be seen to count duplicates, so never skip.
+        return this.delegate.scoreMode().needsScores() ? ScoreMode.COMPLETE : ScoreMode.COMPLETE_NO_SCORES;
     }
 }
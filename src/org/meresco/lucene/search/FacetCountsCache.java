@@ -0,0 +1,126 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene.search;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+
+/**
+ * LRU cache of the merged and rolled up counts of a FacetSuperCollector, bounded
+ * by their memory use. Like the ResponseCache, every entry remembers the searcher
+ * generation it was computed for and a lookup with another generation is a miss.
+ * Cached counts are shared between requests and only read.
+ */
+public class FacetCountsCache {
+    private final LinkedHashMap<Object, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long ramBytesUsed = 0;
+    private long hitCount = 0;
+    private long missCount = 0;
+    private long evictionCount = 0;
+
+    synchronized OrdinalCounts get(Object key, long generation, int taxonomySize) {
+        Entry entry = this.entries.get(key);
+        if (entry != null) {
+            if (entry.generation == generation && entry.taxonomySize == taxonomySize) {
+                this.hitCount++;
+                return entry.counts;
+            }
+            remove(key);
+        }
+        this.missCount++;
+        return null;
+    }
+
+    synchronized boolean put(Object key, long generation, int taxonomySize, OrdinalCounts counts, long maxBytes) {
+        return put(key, 0, generation, taxonomySize, counts, maxBytes);
+    }
+
+    /**
+     * Keys hold on to what they are made of, such as the bitsets of KeyFilters,
+     * so keyBytes is accounted for along with the counts.
+     *
+     * @return false when key and counts alone take more than maxBytes and are not cached
+     */
+    synchronized boolean put(Object key, long keyBytes, long generation, int taxonomySize, OrdinalCounts counts, long maxBytes) {
+        long bytes = keyBytes + counts.ramBytesUsed();
+        if (bytes > maxBytes)
+            return false;
+        remove(key);
+        this.entries.put(key, new Entry(generation, taxonomySize, counts, bytes));
+        this.ramBytesUsed += bytes;
+        Iterator<Entry> eldest = this.entries.values().iterator();
+        while (this.ramBytesUsed > maxBytes) {
+            this.ramBytesUsed -= eldest.next().bytes;
+            eldest.remove();
+            this.evictionCount++;
+        }
+        return true;
+    }
+
+    public synchronized void clear() {
+        this.entries.clear();
+        this.ramBytesUsed = 0;
+    }
+
+    private void remove(Object key) {
+        Entry old = this.entries.remove(key);
+        if (old != null)
+            this.ramBytesUsed -= old.bytes;
+    }
+
+    public synchronized long getHitCount() {
+        return this.hitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return this.missCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return this.evictionCount;
+    }
+
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    public synchronized long ramBytesUsed() {
+        return this.ramBytesUsed;
+    }
+
+    private static class Entry {
+        final long generation;
+        final int taxonomySize;
+        final OrdinalCounts counts;
+        final long bytes;
+
+        Entry(long generation, int taxonomySize, OrdinalCounts counts, long bytes) {
+            this.generation = generation;
+            this.taxonomySize = taxonomySize;
+            this.counts = counts;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene.search;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * Count arrays of the taxonomy size, reused by the facet collectors of one core
+ * across queries. Arrays are pooled for the current taxonomy size only; when the
+ * taxonomy grows the idle arrays of the previous size are dropped. Each array
+ * remembers which ordinals it counted, so it is cleared by zeroing just those
+ * when it is taken from the pool again, unless there were too many.
+ *
+ * Idle arrays are kept up to maxBytes; what does not fit is left to the GC.
+ */
+public class FacetCountsPool {
+    private final ArrayDeque<CountArray> idle = new ArrayDeque<>();
+    private long maxBytes;
+    private long idleBytes;
+    private int taxonomySize = -1;
+
+    public FacetCountsPool() {
+        this(0);
+    }
+
+    public FacetCountsPool(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public synchronized void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+        while (this.idleBytes > maxBytes) {
+            this.idleBytes -= this.idle.removeLast().bytes();
+        }
+    }
+
+    public synchronized long idleBytes() {
+        return this.idleBytes;
+    }
+
+    CountArray acquire(int taxonomySize) {
+        CountArray array;
+        synchronized (this) {
+            if (taxonomySize != this.taxonomySize) {
+                this.taxonomySize = taxonomySize;
+                this.idle.clear();
+                this.idleBytes = 0;
+            }
+            array = this.idle.pollFirst();
+            if (array != null)
+                this.idleBytes -= array.bytes();
+        }
+        if (array == null)
+            return new CountArray(new int[taxonomySize]);
+        array.clear();
+        return array;
+    }
+
+    synchronized void release(CountArray array) {
+        if (array.values.length != this.taxonomySize || this.idleBytes + array.bytes() > this.maxBytes)
+            return;
+        this.idle.addFirst(array);
+        this.idleBytes += array.bytes();
+    }
+
+    /**
+     * Counts per ordinal and the ordinals that went from zero, until there are more
+     * of those than an eighth of the array; then all of it is cleared instead.
+     */
+    static final class CountArray {
+        final int[] values;
+        private int[] touched;
+        private int touchedCount;
+
+        CountArray(int[] values) {
+            this.values = values;
+            this.touched = new int[Math.min(1024, maxTouched())];
+        }
+
+        /**
+         * Returns whether touched ordinals are still kept.
+         */
+        boolean touch(int ordinal) {
+            if (this.touched == null)
+                return false;
+            if (this.touchedCount == this.touched.length) {
+                if (this.touched.length >= maxTouched()) {
+                    this.touched = null;
+                    return false;
+                }
+                this.touched = Arrays.copyOf(this.touched, Math.min(this.touched.length * 2, maxTouched()));
+            }
+            this.touched[this.touchedCount++] = ordinal;
+            return true;
+        }
+
+        boolean tracking() {
+            return this.touched != null;
+        }
+
+        /**
+         * For changes made to values without touch.
+         */
+        void touchedAll() {
+            this.touched = null;
+        }
+
+        boolean add(int ordinal, int count) {
+            if (count != 0 && this.values[ordinal] == 0)
+                touch(ordinal);
+            this.values[ordinal] += count;
+            return tracking();
+        }
+
+        /**
+         * Adds the counts of other, visiting only its touched ordinals when it knows them.
+         */
+        boolean addAll(CountArray other) {
+            int[] otherValues = other.values;
+            if (other.touched == null) {
+                addRange(other, 0, this.values.length);
+                touchedAll();
+                return false;
+            }
+            for (int i = 0; i < other.touchedCount; i++) {
+                int ordinal = other.touched[i];
+                add(ordinal, otherValues[ordinal]);
+            }
+            return tracking();
+        }
+
+        /**
+         * Adds the counts of other from ordinal from to ordinal to, in a plain loop the
+         * JIT vectorizes; the caller takes care of touchedAll.
+         */
+        void addRange(CountArray other, int from, int to) {
+            int[] values = this.values;
+            int[] otherValues = other.values;
+            for (int i = from; i < to; i++)
+                values[i] += otherValues[i];
+        }
+
+        void clear() {
+            if (this.touched == null) {
+                Arrays.fill(this.values, 0);
+                this.touched = new int[Math.min(1024, maxTouched())];
+            } else {
+                for (int i = 0; i < this.touchedCount; i++)
+                    this.values[this.touched[i]] = 0;
+            }
+            this.touchedCount = 0;
+        }
+
+        long bytes() {
+            return 4L * this.values.length + (this.touched == null ? 0 : 4L * this.touched.length);
+        }
+
+        private int maxTouched() {
+            return Math.max(1, this.values.length >>> 3);
+        }
+    }
+}
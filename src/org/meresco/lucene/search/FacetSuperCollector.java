@@ -30,25 +30,43 @@ package org.meresco.lucene.search;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Queue;
 import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.LinkedBlockingDeque;
 
 import org.apache.lucene.facet.FacetResult;
-import org.apache.lucene.facet.FacetsCollector;
 import org.apache.lucene.facet.FacetsConfig;
 import org.apache.lucene.facet.taxonomy.OrdinalsReader;
 import org.apache.lucene.facet.taxonomy.TaxonomyReader;
+import org.apache.lucene.index.LeafReaderContext;
 import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.util.IntsRef;
 
 public class FacetSuperCollector extends SuperCollector<FacetSubCollector> {
+    static final int MIN_MERGE_RANGE = 1 << 16;
+    public static final int MIN_PARALLEL_DIMENSIONS = 8;
+
     final TaxonomyReader taxoReader;
     final FacetsConfig facetConfig;
     final List<OrdinalsReader> ordinalsReaders;
-    final BlockingDeque<int[]> arrayPool = new LinkedBlockingDeque<int[]>();
-    private int[] mergeValues;
+    final BlockingDeque<OrdinalCounts> countsPool = new LinkedBlockingDeque<OrdinalCounts>();
+    final Queue<OrdinalCounts> denseCounts = new ConcurrentLinkedQueue<OrdinalCounts>();
+    final FacetCountsPool arrayPool;
+    private OrdinalCounts mergeCounts;
+    private OrdinalCounts cachedCounts;
+    private ExecutorService executor;
+    private int tasks = 1;
 
     public FacetSuperCollector(TaxonomyReader taxoReader, FacetsConfig facetConfig, OrdinalsReader ordinalsReader) {
+        this(taxoReader, facetConfig, ordinalsReader, new FacetCountsPool());
+    }
+
+    public FacetSuperCollector(TaxonomyReader taxoReader, FacetsConfig facetConfig, OrdinalsReader ordinalsReader, FacetCountsPool arrayPool) {
         super();
+        this.arrayPool = arrayPool;
         this.taxoReader = taxoReader;
         this.facetConfig = facetConfig;
         this.ordinalsReaders = new ArrayList<OrdinalsReader>();
@@ -59,57 +77,205 @@ public class FacetSuperCollector extends SuperCollector<FacetSubCollector> {
         this.ordinalsReaders.add(ordinalsReader);
     }
 
+    /**
+     * Lets complete merge the dense counts of the sub collectors in up to tasks
+     * ordinal ranges at once on executor, instead of one after the other as they
+     * finish. Only taxonomies of at least two ranges of MIN_MERGE_RANGE ordinals
+     * are merged this way.
+     */
+    public void setExecutor(ExecutorService executor, int tasks) {
+        this.executor = executor;
+        this.tasks = tasks;
+    }
+
+    /**
+     * The executor to take the top children of many dimensions in parallel on, when
+     * at least MIN_PARALLEL_DIMENSIONS are requested; null otherwise.
+     */
+    public ExecutorService getExecutor(int dimensions) {
+        return dimensions >= MIN_PARALLEL_DIMENSIONS ? this.executor : null;
+    }
+
+    int mergeRanges(int taxonomySize) {
+        if (this.executor == null)
+            return 1;
+        return Math.max(1, Math.min(this.tasks, taxonomySize / MIN_MERGE_RANGE));
+    }
+
     @Override
     protected FacetSubCollector createSubCollector() throws IOException {
-        return new FacetSubCollector(new FacetsCollector(), this);
+        return new FacetSubCollector(this);
     }
 
     public FacetResult getTopChildren(int topN, String dim, String... path) throws IOException {
         // This will not really need a ordinalsReader. but will call getIndexFieldName()
-        return new MerescoTaxonomyFacetCounts(this.ordinalsReaders, this.taxoReader, this.facetConfig, null,
-                this.mergeValues).getTopChildren(topN, dim, path);
+        return new MerescoTaxonomyFacetCounts(this.ordinalsReaders, this.taxoReader, this.facetConfig,
+                this.mergeCounts).getTopChildren(topN, dim, path);
     }
 
     @Override
-    public void complete() {
-        this.mergeValues = this.arrayPool.poll();
-        mergePool(this.mergeValues);
+    public void complete() throws IOException {
+        List<OrdinalCounts> dense = new ArrayList<OrdinalCounts>();
+        OrdinalCounts counts;
+        while ((counts = this.denseCounts.poll()) != null) {
+            dense.add(counts);
+        }
+        if (!dense.isEmpty()) {
+            OrdinalCounts target = dense.get(0);
+            mergeRanges(target, dense.subList(1, dense.size()));
+            mergePool(target);
+        }
+        this.mergeCounts = this.countsPool.poll();
+        mergePool(this.mergeCounts);
+        new MerescoTaxonomyFacetCounts(this.ordinalsReaders, this.taxoReader, this.facetConfig,
+                this.mergeCounts).rollup();
+    }
+
+    /**
+     * Adds others to target, each task a range of ordinals over all of them.
+     */
+    private void mergeRanges(OrdinalCounts target, List<OrdinalCounts> others) throws IOException {
+        if (others.isEmpty())
+            return;
+        int size = target.toArray().length;
+        int ranges = mergeRanges(size);
+        List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(ranges);
+        for (int r = 0; r < ranges; r++) {
+            int from = (int) ((long) size * r / ranges);
+            int to = (int) ((long) size * (r + 1) / ranges);
+            tasks.add(() -> {
+                for (OrdinalCounts other : others) {
+                    target.addRange(other, from, to);
+                }
+                return null;
+            });
+        }
+        ParallelTasks.invokeAll(ranges > 1 ? this.executor : null, tasks);
+        target.touchedAll();
+        for (OrdinalCounts other : others) {
+            other.release();
+        }
     }
 
     public void mergePool(int[] values) {
+        mergePool(OrdinalCounts.dense(values));
+    }
+
+    void mergePool(OrdinalCounts counts) {
         int count = 0;
-        int[] values1 = this.arrayPool.poll();
-        while (values1 != null) {
+        OrdinalCounts counts1 = this.countsPool.poll();
+        while (counts1 != null) {
             count++;
-            for (int i = 0; i < values.length; i++)
-                values[i] += values1[i];
-            values1 = this.arrayPool.poll();
+            if (counts1.isDense() && !counts.isDense()) {
+                OrdinalCounts sparse = counts;
+                counts = counts1;
+                counts1 = sparse;
+            }
+            counts.addAll(counts1);
+            counts1.release();
+            counts1 = this.countsPool.poll();
             if (count > 10000) {
                 System.out.println("More than 10000 tries in FacetSuperCollector.mergePool.");
                 System.out.flush();
                 throw new RuntimeException("More than 10000 tries in FacetSuperCollector.mergePool.");
             }
         }
-        this.arrayPool.push(values);
+        this.countsPool.push(counts);
+    }
+
+    /**
+     * Takes the counts cached for key and generation instead of collecting and
+     * completing; false when cache has none.
+     */
+    public boolean completeFromCache(FacetCountsCache cache, Object key, long generation) {
+        OrdinalCounts counts = cache.get(key, generation, this.taxoReader.getSize());
+        if (counts == null)
+            return false;
+        this.mergeCounts = counts;
+        this.cachedCounts = counts;
+        return true;
+    }
+
+    /**
+     * Puts the counts from complete in cache under key, which takes keyBytes, and
+     * generation. Once cached they belong to the cache and are not returned to the
+     * FacetCountsPool.
+     */
+    public void cache(FacetCountsCache cache, Object key, long keyBytes, long generation, long maxBytes) {
+        if (cache.put(key, keyBytes, generation, this.taxoReader.getSize(), this.mergeCounts, maxBytes))
+            this.cachedCounts = this.mergeCounts;
+    }
+
+    /**
+     * Returns the count arrays to the FacetCountsPool, after which no more
+     * results can be taken from this collector.
+     */
+    public void release() {
+        OrdinalCounts counts;
+        while ((counts = this.countsPool.poll()) != null) {
+            if (counts != this.cachedCounts)
+                counts.release();
+        }
+        while ((counts = this.denseCounts.poll()) != null) {
+            counts.release();
+        }
+        this.mergeCounts = null;
+        this.cachedCounts = null;
     }
 
     public int[] getFirstArray() {
-        return this.arrayPool.peek();
+        OrdinalCounts counts = this.countsPool.peek();
+        return counts == null ? null : counts.toArray();
     }
 }
 
-class FacetSubCollector extends DelegatingSubCollector<FacetsCollector, FacetSuperCollector> {
-    public FacetSubCollector(FacetsCollector delegate, FacetSuperCollector parent) throws IOException {
-        super(delegate, parent);
+/**
+ * Counts the ordinals of each collected document right away, in its own
+ * OrdinalCounts, which are merged into the pool of the FacetSuperCollector on
+ * complete. Dense counts that the FacetSuperCollector merges in ordinal ranges
+ * are left for its complete.
+ */
+class FacetSubCollector extends SubCollector {
+    private final FacetSuperCollector parent;
+    private final OrdinalCounts counts;
+    private final boolean mergeInRanges;
+    private final OrdinalsReader.OrdinalsSegmentReader[] ordsReaders;
+    private final IntsRef scratch = new IntsRef();
+
+    public FacetSubCollector(FacetSuperCollector parent) throws IOException {
+        super();
+        this.parent = parent;
+        int taxonomySize = parent.taxoReader.getSize();
+        this.counts = new OrdinalCounts(taxonomySize, parent.arrayPool);
+        this.mergeInRanges = parent.mergeRanges(taxonomySize) > 1;
+        this.ordsReaders = new OrdinalsReader.OrdinalsSegmentReader[parent.ordinalsReaders.size()];
+    }
+
+    @Override
+    protected void doSetNextReader(LeafReaderContext context) throws IOException {
+        for (int i = 0; i < this.ordsReaders.length; i++) {
+            this.ordsReaders[i] = this.parent.ordinalsReaders.get(i).getReader(context);
+        }
+    }
+
+    @Override
+    public void collect(int doc) throws IOException {
+        for (OrdinalsReader.OrdinalsSegmentReader ords : this.ordsReaders) {
+            ords.get(doc, this.scratch);
+            int[] ordinals = this.scratch.ints;
+            int end = this.scratch.offset + this.scratch.length;
+            for (int i = this.scratch.offset; i < end; i++) {
+                this.counts.increment(ordinals[i]);
+            }
+        }
     }
 
     @Override
     public void complete() throws IOException {
-        int[] values = new int[this.parent.taxoReader.getSize()];
-        MerescoTaxonomyFacetCounts counts = new MerescoTaxonomyFacetCounts(this.parent.ordinalsReaders,
-                this.parent.taxoReader, this.parent.facetConfig, this.delegate, values);
-        counts.doCount();
-        this.parent.mergePool(values);
+        if (this.mergeInRanges && this.counts.isDense())
+            this.parent.denseCounts.add(this.counts);
+        else
+            this.parent.mergePool(this.counts);
     }
 
     @Override
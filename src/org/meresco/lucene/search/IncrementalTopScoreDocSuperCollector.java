@@ -0,0 +1,226 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene.search;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.Scorable;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopDocsCollector;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.util.ArrayUtil;
+import org.apache.lucene.util.IntroSelector;
+import org.apache.lucene.util.IntroSorter;
+
+/**
+ * Collects the top documents by score like TopScoreDocSuperCollector, but
+ * keeps candidates up to maxHits. After the search, topDocs can be extended
+ * with grow(numHits) up to maxHits without running the query again; only the
+ * extra part of the candidates is selected and sorted.
+ */
+public class IncrementalTopScoreDocSuperCollector extends TopDocSuperCollector {
+    private final int maxHits;
+
+    public IncrementalTopScoreDocSuperCollector(int numHits, int maxHits) {
+        super(null, numHits);
+        this.maxHits = Math.max(numHits, maxHits);
+    }
+
+    @Override
+    protected TopDocSubCollector<IncrementalTopScoreDocSuperCollector> createSubCollector() throws IOException {
+        return new TopDocSubCollector<IncrementalTopScoreDocSuperCollector>(new ScoreDocCandidatesCollector(super.numHits, this.maxHits), this);
+    }
+
+    @Override
+    public void complete() {
+    }
+
+    @Override
+    public boolean grow(int numHits) throws IOException {
+        if (numHits > this.maxHits)
+            return false;
+        if (numHits > super.numHits) {
+            for (TopDocSubCollector<?> sub : this.subs) {
+                sub.topdocs = sub.delegate.topDocs(0, numHits);
+            }
+            super.numHits = numHits;
+        }
+        return true;
+    }
+}
+
+class ScoreDocCandidatesCollector extends TopDocsCollector<ScoreDoc> {
+    private final int numHits;
+    private final int bufferLimit;
+    private final int maxHits;
+    private int[] docs;
+    private float[] scores;
+    private int size = 0;
+    private int sorted = 0;
+
+    ScoreDocCandidatesCollector(int numHits, int maxHits) {
+        super(null);
+        this.numHits = numHits;
+        this.maxHits = maxHits;
+        this.bufferLimit = (int) Math.min(2L * maxHits, ArrayUtil.MAX_ARRAY_LENGTH);
+        int initialLength = Math.max(1, Math.min(numHits, this.bufferLimit));
+        this.docs = new int[initialLength];
+        this.scores = new float[initialLength];
+    }
+
+    @Override
+    public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
+        final int docBase = context.docBase;
+        return new LeafCollector() {
+            private Scorable scorer;
+
+            @Override
+            public void setScorer(Scorable scorer) throws IOException {
+                this.scorer = scorer;
+            }
+
+            @Override
+            public void collect(int doc) throws IOException {
+                totalHits++;
+                add(docBase + doc, this.scorer.score());
+            }
+        };
+    }
+
+    @Override
+    public ScoreMode scoreMode() {
+        return ScoreMode.COMPLETE;
+    }
+
+    private void add(int doc, float score) {
+        if (this.size == this.docs.length) {
+            if (this.size >= this.bufferLimit) {
+                // Keep only the best maxHits; the rest can never be asked for.
+                new CandidateSelector().select(0, this.size, this.maxHits);
+                this.size = this.maxHits;
+            } else {
+                int newLength = Math.min(ArrayUtil.oversize(this.size + 1, Integer.BYTES), this.bufferLimit);
+                this.docs = Arrays.copyOf(this.docs, newLength);
+                this.scores = Arrays.copyOf(this.scores, newLength);
+            }
+        }
+        this.docs[this.size] = doc;
+        this.scores[this.size] = score;
+        this.size++;
+    }
+
+    @Override
+    protected int topDocsSize() {
+        return Math.min(this.size, this.numHits);
+    }
+
+    @Override
+    public TopDocs topDocs(int start) {
+        return topDocs(start, topDocsSize());
+    }
+
+    @Override
+    public TopDocs topDocs(int start, int howMany) {
+        int n = (int) Math.min(this.size, (long) start + howMany);
+        ScoreDoc[] results = new ScoreDoc[Math.max(0, n - start)];
+        if (results.length > 0) {
+            sortTop(n);
+            for (int i = 0; i < results.length; i++) {
+                results[i] = new ScoreDoc(this.docs[start + i], this.scores[start + i]);
+            }
+        }
+        return new TopDocs(new TotalHits(this.totalHits, TotalHits.Relation.EQUAL_TO), results);
+    }
+
+    private void sortTop(int n) {
+        if (n <= this.sorted)
+            return;
+        if (n < this.size)
+            new CandidateSelector().select(this.sorted, this.size, n);
+        new CandidateSorter().sort(this.sorted, n);
+        this.sorted = n;
+    }
+
+    private int compareCandidates(int doc1, float score1, int doc2, float score2) {
+        int c = Float.compare(score2, score1);
+        return c != 0 ? c : Integer.compare(doc1, doc2);
+    }
+
+    private void swap(int i, int j) {
+        int doc = this.docs[i];
+        this.docs[i] = this.docs[j];
+        this.docs[j] = doc;
+        float score = this.scores[i];
+        this.scores[i] = this.scores[j];
+        this.scores[j] = score;
+    }
+
+    private class CandidateSelector extends IntroSelector {
+        private int pivotDoc;
+        private float pivotScore;
+
+        @Override
+        protected void setPivot(int i) {
+            this.pivotDoc = docs[i];
+            this.pivotScore = scores[i];
+        }
+
+        @Override
+        protected int comparePivot(int j) {
+            return compareCandidates(this.pivotDoc, this.pivotScore, docs[j], scores[j]);
+        }
+
+        @Override
+        protected void swap(int i, int j) {
+            ScoreDocCandidatesCollector.this.swap(i, j);
+        }
+    }
+
+    private class CandidateSorter extends IntroSorter {
+        private int pivotDoc;
+        private float pivotScore;
+
+        @Override
+        protected void setPivot(int i) {
+            this.pivotDoc = docs[i];
+            this.pivotScore = scores[i];
+        }
+
+        @Override
+        protected int comparePivot(int j) {
+            return compareCandidates(this.pivotDoc, this.pivotScore, docs[j], scores[j]);
+        }
+
+        @Override
+        protected void swap(int i, int j) {
+            ScoreDocCandidatesCollector.this.swap(i, j);
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene.search;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.DisjunctionMaxQuery;
+import org.apache.lucene.search.DocValuesFieldExistsQuery;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.MatchNoDocsQuery;
+import org.apache.lucene.search.MultiTermQuery;
+import org.apache.lucene.search.PointInSetQuery;
+import org.apache.lucene.search.PointRangeQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.QueryCachingPolicy;
+import org.apache.lucene.search.TermInSetQuery;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.util.FrequencyTrackingRingBuffer;
+import org.meresco.lucene.queries.KeyFilter;
+
+/**
+ * Decides which filters go into the query cache, based on how often they were
+ * used recently. Unlike UsageTrackingQueryCachingPolicy it does cache term
+ * queries on the facet index fields: drilldowns on popular facet values
+ * repeat a lot and usually match many documents.
+ * KeyFilters are never cached; they are already bit sets and change with
+ * every join.
+ */
+public class MerescoQueryCachingPolicy implements QueryCachingPolicy {
+    private static final int HISTORY_SIZE = 256;
+    private static final int COSTLY_MIN_FREQUENCY = 2;
+    private static final int DRILLDOWN_MIN_FREQUENCY = 3;
+    private static final int COMPOUND_MIN_FREQUENCY = 4;
+    private static final int DEFAULT_MIN_FREQUENCY = 5;
+
+    private final FacetsConfig facetsConfig;
+    private volatile Set<String> facetIndexFieldNames;
+    private final FrequencyTrackingRingBuffer recentlyUsedFilters = new FrequencyTrackingRingBuffer(HISTORY_SIZE, Integer.MIN_VALUE);
+
+    public MerescoQueryCachingPolicy(FacetsConfig facetsConfig) {
+        this.facetsConfig = facetsConfig;
+        facetsConfigChanged();
+    }
+
+    /**
+     * Takes the facet index fields from the dim configs again; until then the
+     * policy goes by those at construction or the previous call.
+     */
+    public void facetsConfigChanged() {
+        Set<String> names = new HashSet<>();
+        names.add(FacetsConfig.DEFAULT_INDEX_FIELD_NAME);
+        for (FacetsConfig.DimConfig dimConfig : this.facetsConfig.getDimConfigs().values())
+            names.add(dimConfig.indexFieldName);
+        this.facetIndexFieldNames = names;
+    }
+
+    @Override
+    public void onUse(Query query) {
+        if (shouldNeverCache(query))
+            return;
+        int hashCode = query.hashCode();
+        synchronized (this) {
+            this.recentlyUsedFilters.add(hashCode);
+        }
+    }
+
+    @Override
+    public boolean shouldCache(Query query) throws IOException {
+        if (shouldNeverCache(query))
+            return false;
+        int frequency;
+        synchronized (this) {
+            frequency = this.recentlyUsedFilters.frequency(query.hashCode());
+        }
+        return frequency >= minFrequencyToCache(query);
+    }
+
+    int minFrequencyToCache(Query query) {
+        if (query instanceof MultiTermQuery || query instanceof TermInSetQuery || query instanceof PointRangeQuery || query instanceof PointInSetQuery)
+            return COSTLY_MIN_FREQUENCY;
+        if (query instanceof TermQuery)
+            return DRILLDOWN_MIN_FREQUENCY;
+        if (query instanceof BooleanQuery || query instanceof DisjunctionMaxQuery)
+            return COMPOUND_MIN_FREQUENCY;
+        return DEFAULT_MIN_FREQUENCY;
+    }
+
+    boolean shouldNeverCache(Query query) {
+        if (query instanceof TermQuery)
+            // Other term queries are cheap enough to run every time.
+            return !this.facetIndexFieldNames.contains(((TermQuery) query).getTerm().field());
+        if (query instanceof MatchAllDocsQuery || query instanceof MatchNoDocsQuery || query instanceof DocValuesFieldExistsQuery || query instanceof KeyFilter)
+            return true;
+        if (query instanceof BooleanQuery)
+            return ((BooleanQuery) query).clauses().isEmpty();
+        if (query instanceof DisjunctionMaxQuery)
+            return ((DisjunctionMaxQuery) query).getDisjuncts().isEmpty();
+        return false;
+    }
+}
@@ -26,12 +26,13 @@
 package org.meresco.lucene.search;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.lucene.facet.FacetResult;
-import org.apache.lucene.facet.FacetsCollector;
-import org.apache.lucene.facet.FacetsCollector.MatchingDocs;
 import org.apache.lucene.facet.FacetsConfig;
 import org.apache.lucene.facet.FacetsConfig.DimConfig;
 import org.apache.lucene.facet.LabelAndValue;
@@ -40,47 +41,17 @@ import org.apache.lucene.facet.taxonomy.FacetLabel;
 import org.apache.lucene.facet.taxonomy.OrdinalsReader;
 import org.apache.lucene.facet.taxonomy.TaxonomyFacets;
 import org.apache.lucene.facet.taxonomy.TaxonomyReader;
-import org.apache.lucene.search.DocIdSetIterator;
-import org.apache.lucene.util.IntsRef;
 
 
 public class MerescoTaxonomyFacetCounts extends TaxonomyFacets {
-    private final List<OrdinalsReader> ordinalsReaders;
-    private FacetsCollector fc;
+    private OrdinalCounts counts;
     private int[] values;
 
-    public MerescoTaxonomyFacetCounts(List<OrdinalsReader> ordinalsReaders, TaxonomyReader taxoReader, FacetsConfig config,
-            FacetsCollector fc, int[] valuesArray) throws IOException {
+    MerescoTaxonomyFacetCounts(List<OrdinalsReader> ordinalsReaders, TaxonomyReader taxoReader, FacetsConfig config,
+            OrdinalCounts counts) throws IOException {
         super(ordinalsReaders.get(0).getIndexFieldName(), taxoReader, config);
-        this.values = valuesArray;
-        this.ordinalsReaders = ordinalsReaders;
-        this.fc = fc;
-    }
-
-    final void doCount() throws IOException {
-        count(this.fc.getMatchingDocs());
-    }
-
-    private final void count(List<MatchingDocs> matchingDocs) throws IOException {
-        IntsRef scratch = new IntsRef();
-        OrdinalsReader.OrdinalsSegmentReader[] ordsReaders = new OrdinalsReader.OrdinalsSegmentReader[this.ordinalsReaders.size()];
-        for (MatchingDocs hits : matchingDocs) {
-            for (int i = 0; i < ordsReaders.length; i++) {
-                ordsReaders[i] = this.ordinalsReaders.get(i).getReader(hits.context);
-            }
-            DocIdSetIterator docs = hits.bits.iterator();
-            int doc;
-            while ((doc = docs.nextDoc()) != DocIdSetIterator.NO_MORE_DOCS) {
-                for (OrdinalsReader.OrdinalsSegmentReader ords : ordsReaders) {
-                    ords.get(doc, scratch);
-                    for (int i = 0; i < scratch.length; i++) {
-                        values[scratch.ints[scratch.offset + i]]++;
-                    }
-                }
-            }
-        }
-
-        rollup();
+        this.counts = counts;
+        this.values = counts.isDense() ? counts.toArray() : null;
     }
 
     @Override
@@ -91,6 +62,10 @@ public class MerescoTaxonomyFacetCounts extends TaxonomyFacets {
 
     /** Rolls up any single-valued hierarchical dimensions. */
     protected void rollup() throws IOException {
+      if (values == null) {
+        rollupSparse();
+        return;
+      }
       int[] children = getChildren();
       // Rollup any necessary dims:
       for (Map.Entry<String,DimConfig> ent : config.getDimConfigs().entrySet()) {
@@ -102,9 +77,51 @@ public class MerescoTaxonomyFacetCounts extends TaxonomyFacets {
           // config but never indexed:
           if (dimRootOrd > 0) {
             values[dimRootOrd] += rollup(children[dimRootOrd]);
+            counts.touchedAll();
+          }
+        }
+      }
+    }
+
+    /**
+     * Same as rollup, but adds the count of each counted ordinal to its ancestors
+     * instead of walking all children of the dimension.
+     */
+    private void rollupSparse() throws IOException {
+      Set<Integer> dimRootOrds = new HashSet<>();
+      for (Map.Entry<String,DimConfig> ent : config.getDimConfigs().entrySet()) {
+        DimConfig ft = ent.getValue();
+        if (ft.hierarchical && ft.multiValued == false) {
+          int dimRootOrd = taxoReader.getOrdinal(new FacetLabel(ent.getKey()));
+          if (dimRootOrd > 0) {
+            dimRootOrds.add(dimRootOrd);
           }
         }
       }
+      if (dimRootOrds.isEmpty()) {
+        return;
+      }
+      int[] parents = taxoReader.getParallelTaxonomyArrays().parents();
+      int[] ords = counts.ordinals();
+      int[] ordCounts = new int[ords.length];
+      for (int i = 0; i < ords.length; i++) {
+        ordCounts[i] = counts.get(ords[i]);
+      }
+      for (int i = 0; i < ords.length; i++) {
+        int dimOrd = ords[i];
+        while (dimOrd > 0 && parents[dimOrd] != TaxonomyReader.ROOT_ORDINAL) {
+          dimOrd = parents[dimOrd];
+        }
+        if (dimOrd == ords[i] || !dimRootOrds.contains(dimOrd)) {
+          continue;
+        }
+        for (int ord = parents[ords[i]]; ord != TaxonomyReader.ROOT_ORDINAL; ord = parents[ord]) {
+          counts.add(ord, ordCounts[i]);
+        }
+      }
+      if (counts.isDense()) {
+        values = counts.toArray();
+      }
     }
 
     private int rollup(int ord) {
@@ -140,7 +157,7 @@ public class MerescoTaxonomyFacetCounts extends TaxonomyFacets {
       if (ord < 0) {
         return -1;
       }
-      return values[ord];
+      return counts.get(ord);
     }
 
     @Override
@@ -159,23 +176,28 @@ public class MerescoTaxonomyFacetCounts extends TaxonomyFacets {
 
       int bottomValue = 0;
 
-      int ord = getChildren()[dimOrd];
-      int[] siblings = getSiblings();
-
       int totValue = 0;
       int childCount = 0;
 
       TopOrdAndIntQueue.OrdAndValue reuse = null;
+      int[] childOrds = values == null ? sparseChildren(dimOrd) : null;
+      int[] siblings = values == null ? null : getSiblings();
+      int ord = values == null ? TaxonomyReader.INVALID_ORDINAL : getChildren()[dimOrd];
+      int next = 0;
+      if (childOrds != null && childOrds.length > 0) {
+        ord = childOrds[next++];
+      }
       while (ord != TaxonomyReader.INVALID_ORDINAL) {
-        if (values[ord] > 0) {
-          totValue += values[ord];
+        int value = values == null ? counts.get(ord) : values[ord];
+        if (value > 0) {
+          totValue += value;
           childCount++;
-          if (values[ord] > bottomValue) {
+          if (value > bottomValue) {
             if (reuse == null) {
               reuse = new TopOrdAndIntQueue.OrdAndValue();
             }
             reuse.ord = ord;
-            reuse.value = values[ord];
+            reuse.value = value;
             reuse = q.insertWithOverflow(reuse);
             if (q.size() == topN) {
               bottomValue = q.top().value;
@@ -183,7 +205,11 @@ public class MerescoTaxonomyFacetCounts extends TaxonomyFacets {
           }
         }
 
-        ord = siblings[ord];
+        if (childOrds == null) {
+          ord = siblings[ord];
+        } else {
+          ord = next < childOrds.length ? childOrds[next++] : TaxonomyReader.INVALID_ORDINAL;
+        }
       }
 
       if (totValue == 0) {
@@ -192,7 +218,7 @@ public class MerescoTaxonomyFacetCounts extends TaxonomyFacets {
 
       if (dimConfig.multiValued) {
         if (dimConfig.requireDimCount) {
-          totValue = values[dimOrd];
+          totValue = counts.get(dimOrd);
         } else {
           // Our sum'd value is not correct, in general:
           totValue = -1;
@@ -210,4 +236,25 @@ public class MerescoTaxonomyFacetCounts extends TaxonomyFacets {
 
       return new FacetResult(dim, path, totValue, labelValues, childCount);
     }
+
+    /**
+     * Counted children of dimOrd, from the highest ordinal down like the siblings
+     * walk, so ties in the top children are broken the same way.
+     */
+    private int[] sparseChildren(int dimOrd) throws IOException {
+      int[] parents = taxoReader.getParallelTaxonomyArrays().parents();
+      int[] ords = counts.ordinals();
+      int n = 0;
+      for (int ord : ords) {
+        if (parents[ord] == dimOrd) {
+          ords[n++] = ord;
+        }
+      }
+      Arrays.sort(ords, 0, n);
+      int[] children = new int[n];
+      for (int i = 0; i < n; i++) {
+        children[i] = ords[n - 1 - i];
+      }
+      return children;
+    }
 }
@@ -103,8 +103,21 @@ class MultiSubCollector extends SubCollector {
         }
     }
 
+    @Override
+    public boolean countOnly() {
+        return this.subCollectors.length == 1 && this.subCollectors[0].countOnly();
+    }
+
+    @Override
+    public boolean addCount(int count) {
+        return this.countOnly() && this.subCollectors[0].addCount(count);
+    }
+
     @Override
     public ScoreMode scoreMode() {
+        if (this.subCollectors.length == 1) {
+            return this.subCollectors[0].scoreMode();
+        }
         if (Stream.of(this.subCollectors).anyMatch(c -> (ScoreMode.COMPLETE_NO_SCORES != c.scoreMode()))) {
             return ScoreMode.COMPLETE;
         }
@@ -0,0 +1,268 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene.search;
+
+/**
+ * Counts per taxonomy ordinal. For a small taxonomy this is an int[] of its size
+ * from the start. For a large one counting starts in an open addressing map from
+ * ordinal to count and switches to the int[] when the map holds more than a
+ * sixteenth of the ordinals, so queries with few hits neither allocate nor merge
+ * arrays of the full taxonomy size. The arrays come from a FacetCountsPool and go
+ * back to it on release.
+ */
+final class OrdinalCounts {
+    static final int DENSE_TAXONOMY_SIZE = 1 << 16;
+    private static final int INITIAL_CAPACITY = 64;
+    private static final FacetCountsPool NO_POOL = new FacetCountsPool();
+
+    private final int taxonomySize;
+    private final FacetCountsPool pool;
+    private FacetCountsPool.CountArray array;
+    private int[] dense;  // the values of array once it no longer keeps touched ordinals
+    private int[] keys;  // ordinal + 1, so 0 marks an empty slot
+    private int[] values;
+    private int entries;
+    private int maxEntries;
+    private int shift;
+
+    OrdinalCounts(int taxonomySize) {
+        this(taxonomySize, NO_POOL);
+    }
+
+    OrdinalCounts(int taxonomySize, FacetCountsPool pool) {
+        this(taxonomySize, DENSE_TAXONOMY_SIZE, pool);
+    }
+
+    OrdinalCounts(int taxonomySize, int denseTaxonomySize) {
+        this(taxonomySize, denseTaxonomySize, NO_POOL);
+    }
+
+    OrdinalCounts(int taxonomySize, int denseTaxonomySize, FacetCountsPool pool) {
+        this.taxonomySize = taxonomySize;
+        this.pool = pool;
+        if (taxonomySize <= denseTaxonomySize) {
+            setArray(pool.acquire(taxonomySize));
+            touchedAll();
+        } else {
+            this.maxEntries = Math.max(taxonomySize >>> 4, INITIAL_CAPACITY >>> 1);
+            allocate(INITIAL_CAPACITY);
+        }
+    }
+
+    private OrdinalCounts(int[] dense) {
+        this.taxonomySize = dense.length;
+        this.pool = NO_POOL;
+        setArray(new FacetCountsPool.CountArray(dense));
+        touchedAll();
+    }
+
+    static OrdinalCounts dense(int[] values) {
+        return new OrdinalCounts(values);
+    }
+
+    void increment(int ordinal) {
+        if (this.dense != null)
+            this.dense[ordinal]++;
+        else
+            incrementSlow(ordinal);
+    }
+
+    private void incrementSlow(int ordinal) {
+        if (this.array != null) {
+            touchedAll();
+            this.dense[ordinal]++;
+        } else
+            addSparse(ordinal, 1);
+    }
+
+    void add(int ordinal, int count) {
+        if (this.array != null)
+            track(this.array.add(ordinal, count));
+        else
+            addSparse(ordinal, count);
+    }
+
+    int get(int ordinal) {
+        if (this.array != null)
+            return this.array.values[ordinal];
+        int key = ordinal + 1;
+        for (int i = slot(ordinal); ; i = (i + 1) & (this.keys.length - 1)) {
+            int k = this.keys[i];
+            if (k == key)
+                return this.values[i];
+            if (k == 0)
+                return 0;
+        }
+    }
+
+    boolean isDense() {
+        return this.array != null;
+    }
+
+    /**
+     * The counts as an array of the taxonomy size; switches to it when sparse.
+     */
+    int[] toArray() {
+        if (this.array == null)
+            densify();
+        return this.array.values;
+    }
+
+    /**
+     * For changes made to the array from toArray.
+     */
+    void touchedAll() {
+        if (this.array != null) {
+            this.array.touchedAll();
+            track(false);
+        }
+    }
+
+    /**
+     * Returns the array to the pool; these counts are not to be used anymore.
+     */
+    void release() {
+        if (this.array != null)
+            this.pool.release(this.array);
+        this.array = null;
+        this.dense = null;
+    }
+
+    /**
+     * Adds the counts of other to these; either may be dense or sparse.
+     */
+    void addAll(OrdinalCounts other) {
+        if (other.array != null) {
+            toArray();
+            track(this.array.addAll(other.array));
+            return;
+        }
+        int[] otherKeys = other.keys;
+        for (int i = 0; i < otherKeys.length; i++) {
+            if (otherKeys[i] != 0)
+                add(otherKeys[i] - 1, other.values[i]);
+        }
+    }
+
+    /**
+     * Adds the counts of other from ordinal from to ordinal to; both must be dense
+     * and touchedAll is up to the caller. Disjoint ranges can be added concurrently.
+     */
+    void addRange(OrdinalCounts other, int from, int to) {
+        this.array.addRange(other.array, from, to);
+    }
+
+    long ramBytesUsed() {
+        if (this.array != null)
+            return 64 + this.array.bytes();
+        return 64 + 8L * this.keys.length;
+    }
+
+    /**
+     * Ordinals with a count, in no particular order; only for sparse counts.
+     */
+    int[] ordinals() {
+        int[] ordinals = new int[this.entries];
+        int n = 0;
+        for (int key : this.keys) {
+            if (key != 0)
+                ordinals[n++] = key - 1;
+        }
+        return ordinals;
+    }
+
+    private void addSparse(int ordinal, int count) {
+        int key = ordinal + 1;
+        int mask = this.keys.length - 1;
+        for (int i = slot(ordinal); ; i = (i + 1) & mask) {
+            int k = this.keys[i];
+            if (k == key) {
+                this.values[i] += count;
+                return;
+            }
+            if (k == 0) {
+                this.keys[i] = key;
+                this.values[i] = count;
+                if (++this.entries > this.maxEntries)
+                    densify();
+                else if (this.entries << 1 > this.keys.length)
+                    rehash(this.keys.length << 1);
+                return;
+            }
+        }
+    }
+
+    private int slot(int ordinal) {
+        return (ordinal * 0x9E3779B9) >>> this.shift;
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new int[capacity];
+        this.values = new int[capacity];
+        this.shift = Integer.numberOfLeadingZeros(capacity - 1);
+    }
+
+    private void rehash(int capacity) {
+        int[] oldKeys = this.keys;
+        int[] oldValues = this.values;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            int key = oldKeys[j];
+            if (key == 0)
+                continue;
+            int i = slot(key - 1);
+            while (this.keys[i] != 0)
+                i = (i + 1) & mask;
+            this.keys[i] = key;
+            this.values[i] = oldValues[j];
+        }
+    }
+
+    private void densify() {
+        FacetCountsPool.CountArray array = this.pool.acquire(this.taxonomySize);
+        for (int i = 0; i < this.keys.length; i++) {
+            if (this.keys[i] != 0)
+                array.add(this.keys[i] - 1, this.values[i]);
+        }
+        setArray(array);
+        this.keys = null;
+        this.values = null;
+    }
+
+    private void setArray(FacetCountsPool.CountArray array) {
+        this.array = array;
+        track(array.tracking());
+    }
+
+    /**
+     * Adding goes through the array, which keeps the ordinals it touches, until it
+     * stops doing so. Incrementing does not keep them: it is the hot loop and by the
+     * time it runs on an array most ordinals are touched anyway.
+     */
+    private void track(boolean tracking) {
+        this.dense = tracking ? null : this.array.values;
+    }
+}
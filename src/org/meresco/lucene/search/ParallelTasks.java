@@ -0,0 +1,104 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene.search;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs tasks on an executor with the calling thread taking part, like the
+ * SearchTasks of SuperIndexSearcher: the caller runs whatever the executor has
+ * not started yet, so a busy executor never leaves it waiting.
+ */
+public final class ParallelTasks {
+    private ParallelTasks() {
+    }
+
+    /**
+     * Results in the order of tasks. Without executor all tasks run on the
+     * calling thread.
+     */
+    public static <T> List<T> invokeAll(ExecutorService executor, List<? extends Callable<T>> tasks) throws IOException {
+        List<Task<T>> claimable = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks)
+            claimable.add(new Task<T>(task));
+        List<Future<?>> futures = new ArrayList<>();
+        if (executor != null) {
+            for (Task<T> task : claimable.subList(1, claimable.size()))
+                futures.add(executor.submit(task));
+        }
+        try {
+            for (Task<T> task : claimable)
+                task.run();
+            List<T> results = new ArrayList<>(claimable.size());
+            for (Task<T> task : claimable)
+                results.add(task.done.get());
+            return results;
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error)
+                throw (Error) cause;
+            throw new RuntimeException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } finally {
+            for (Future<?> future : futures)
+                future.cancel(true);
+        }
+    }
+
+    private static class Task<T> implements Runnable {
+        private final Callable<T> callable;
+        private final AtomicBoolean claimed = new AtomicBoolean(false);
+        final CompletableFuture<T> done = new CompletableFuture<T>();
+
+        Task(Callable<T> callable) {
+            this.callable = callable;
+        }
+
+        @Override
+        public void run() {
+            if (!this.claimed.compareAndSet(false, true))
+                return;
+            try {
+                this.done.complete(this.callable.call());
+            } catch (Throwable e) {
+                this.done.completeExceptionally(e);
+            }
+        }
+    }
+}
@@ -56,4 +56,23 @@ public abstract class SubCollector extends SimpleCollector {
         return ScoreMode.COMPLETE;
     }
 
+    /**
+     * Whether this SubCollector only needs the number of matching documents.
+     * The searcher may then skip collecting a segment and call
+     * {@link #addCount(int)} with a count it knows from index statistics.
+     */
+    public boolean countOnly() {
+        return false;
+    }
+
+    /**
+     * Takes count matching documents instead of collecting them.
+     *
+     * @return false when this SubCollector does not take counts, in which
+     *         case the segment is collected as usual
+     */
+    public boolean addCount(int count) {
+        return false;
+    }
+
 }
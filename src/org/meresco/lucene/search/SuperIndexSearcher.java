@@ -30,34 +30,55 @@ package org.meresco.lucene.search;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.QueryTimeout;
+import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.BulkScorer;
+import org.apache.lucene.search.CollectionTerminatedException;
+import org.apache.lucene.search.ConstantScoreQuery;
 import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
+import org.apache.lucene.search.Scorable;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.Weight;
 
 public class SuperIndexSearcher extends IndexSearcher {
+    public static final int MIN_PARTITION_SIZE = 1024;
 
     private ExecutorService executor;
-    private List<List<LeafReaderContext>> grouped_leaves;
+    private List<List<LeafPartition>> slices;
 
     public SuperIndexSearcher(IndexReader reader, ExecutorService executor, int tasks) {
+        this(reader, executor, tasks, 0);
+    }
+
+    /**
+     * @param partitionsPerTask
+     *            when > 0, segments larger than a fair share of one task are
+     *            split into docID-range partitions, aiming at this many
+     *            partitions per concurrent task. Each slice gets its own
+     *            SubCollector and idle threads pick up slices that have not
+     *            been started yet. When 0, whole segments are grouped into
+     *            at most 'tasks' slices.
+     */
+    public SuperIndexSearcher(IndexReader reader, ExecutorService executor, int tasks, int partitionsPerTask) {
         super(reader);
         this.executor = executor;
-        this.grouped_leaves = this.group_leaves(reader.leaves(), tasks);
-//        for (List<LeafReaderContext> l : this.grouped_leaves) {
-//            int t = 0;
-//            for (LeafReaderContext ctx : l)
-//                t += ctx.reader().numDocs();
-//             System.out.print(" " + t + " ");
-//        }
-//        System.out.println();
+        if (partitionsPerTask > 0)
+            this.slices = this.partition_leaves(reader.leaves(), tasks, partitionsPerTask, MIN_PARTITION_SIZE);
+        else
+            this.slices = this.asPartitions(this.group_leaves(reader.leaves(), tasks));
     }
 
     private List<List<LeafReaderContext>> group_leaves(List<LeafReaderContext> leaves, int tasks) {
@@ -87,47 +108,211 @@ public class SuperIndexSearcher extends IndexSearcher {
         return smallest_i;
     }
 
+    private List<List<LeafPartition>> asPartitions(List<List<LeafReaderContext>> grouped_leaves) {
+        List<List<LeafPartition>> slices = new ArrayList<List<LeafPartition>>(grouped_leaves.size());
+        for (List<LeafReaderContext> leaf_group : grouped_leaves) {
+            List<LeafPartition> slice = new ArrayList<LeafPartition>(leaf_group.size());
+            for (LeafReaderContext context : leaf_group)
+                slice.add(new LeafPartition(context, 0, context.reader().maxDoc()));
+            slices.add(slice);
+        }
+        return slices;
+    }
+
+    private List<List<LeafPartition>> partition_leaves(List<LeafReaderContext> leaves, int tasks, int partitionsPerTask, int minPartitionSize) {
+        long totalDocs = 0;
+        for (LeafReaderContext context : leaves)
+            totalDocs += context.reader().maxDoc();
+        int partitionSize = (int) Math.max(minPartitionSize, (totalDocs + tasks * partitionsPerTask - 1) / (tasks * partitionsPerTask));
+
+        List<List<LeafPartition>> slices = new ArrayList<List<LeafPartition>>();
+        List<LeafPartition> smallSlice = new ArrayList<LeafPartition>();
+        int smallSliceSize = 0;
+        for (LeafReaderContext context : leaves) {
+            int maxDoc = context.reader().maxDoc();
+            if (maxDoc > partitionSize) {
+                int parts = (maxDoc + partitionSize - 1) / partitionSize;
+                int step = (maxDoc + parts - 1) / parts;
+                for (int min = 0; min < maxDoc; min += step) {
+                    List<LeafPartition> slice = new ArrayList<LeafPartition>(1);
+                    slice.add(new LeafPartition(context, min, Math.min(maxDoc, min + step)));
+                    slices.add(slice);
+                }
+                continue;
+            }
+            if (smallSliceSize + maxDoc > partitionSize && smallSlice.size() > 0) {
+                slices.add(smallSlice);
+                smallSlice = new ArrayList<LeafPartition>();
+                smallSliceSize = 0;
+            }
+            smallSlice.add(new LeafPartition(context, 0, maxDoc));
+            smallSliceSize += maxDoc;
+        }
+        if (smallSlice.size() > 0 || slices.size() == 0)
+            slices.add(smallSlice);
+        return slices;
+    }
+
     public void search(Query q, SuperCollector<?> c) throws Throwable {
+        search(q, c, null);
+    }
+
+    /**
+     * Like {@link #search(Query, SuperCollector)}, but every SearchTask stops
+     * collecting as soon as the timeout says so. The SubCollectors and the
+     * SuperCollector are completed as usual, so the results collected so far
+     * remain available.
+     *
+     * @return false when collection was cut short by the timeout
+     */
+    public boolean search(Query q, SuperCollector<?> c, QueryTimeout timeout) throws Throwable {
+        AtomicBoolean timedOut = new AtomicBoolean(false);
         SubCollector subCollector = c.subCollector();
         float boost = 1.0f;
         q = rewrite(q);
         Weight weight = super.createWeight(q, subCollector.scoreMode(), boost);
-        ExecutorCompletionService<String> ecs = new ExecutorCompletionService<String>(this.executor);
-        List<Future<String>> futures = new ArrayList<Future<String>>();
-        for (List<LeafReaderContext> leaf_group : this.grouped_leaves.subList(1, this.grouped_leaves.size()))
-            futures.add(ecs.submit(new SearchTask(leaf_group, weight, c.subCollector()), "Done"));
-        new SearchTask(this.grouped_leaves.get(0), weight, subCollector).run();
+        List<SearchTask> tasks = new ArrayList<SearchTask>(this.slices.size());
+        tasks.add(new SearchTask(this.slices.get(0), weight, subCollector, timeout, timedOut));
+        for (List<LeafPartition> slice : this.slices.subList(1, this.slices.size()))
+            tasks.add(new SearchTask(slice, weight, c.subCollector(), timeout, timedOut));
+        List<Future<?>> futures = new ArrayList<Future<?>>();
+        for (SearchTask task : tasks.subList(1, tasks.size()))
+            futures.add(this.executor.submit(task));
         try {
-            for (int i = 0; i < this.grouped_leaves.size() - 1; i++) {
-                ecs.take().get();
-            }
+            // Work on whatever the pool has not picked up yet instead of just waiting.
+            for (SearchTask task : tasks)
+                task.run();
+            for (SearchTask task : tasks)
+                task.done.get();
         } catch (ExecutionException e) {
             throw e.getCause();
         } finally {
-            for (Future<String> future : futures)
+            for (Future<?> future : futures)
                 future.cancel(true);
         }
         c.complete();
+        return !timedOut.get();
+    }
+
+    private void search(List<LeafPartition> partitions, Weight weight, SubCollector subCollector, QueryTimeout timeout, AtomicBoolean timedOut) throws IOException {
+        boolean countOnly = subCollector.countOnly();
+        for (LeafPartition partition : partitions) {
+            if (timeout != null && timeout.shouldExit()) {
+                timedOut.set(true);
+                return;
+            }
+            if (countOnly) {
+                int count = count(weight.getQuery(), partition);
+                if (count >= 0 && subCollector.addCount(count))
+                    continue;
+            }
+            LeafCollector leafCollector;
+            try {
+                leafCollector = subCollector.getLeafCollector(partition.context);
+            } catch (CollectionTerminatedException e) {
+                continue;
+            }
+            if (timeout != null)
+                leafCollector = new TimeLimitedLeafCollector(leafCollector, timeout, timedOut);
+            BulkScorer scorer = weight.bulkScorer(partition.context);
+            if (scorer == null)
+                continue;
+            try {
+                scorer.score(leafCollector, partition.context.reader().getLiveDocs(), partition.minDoc, partition.maxDoc);
+            } catch (CollectionTerminatedException e) {
+            }
+        }
+    }
+
+    /**
+     * Number of matches of query in partition from index statistics, or -1
+     * when that requires collecting. Like IndexSearcher.count, this only
+     * knows about match-all and term queries.
+     */
+    static int count(Query query, LeafPartition partition) throws IOException {
+        while (query instanceof ConstantScoreQuery || query instanceof BoostQuery) {
+            query = query instanceof BoostQuery ? ((BoostQuery) query).getQuery() : ((ConstantScoreQuery) query).getQuery();
+        }
+        LeafReader reader = partition.context.reader();
+        boolean wholeLeaf = partition.minDoc == 0 && partition.maxDoc >= reader.maxDoc();
+        if (query instanceof MatchAllDocsQuery) {
+            if (wholeLeaf)
+                return reader.numDocs();
+            if (!reader.hasDeletions())
+                return Math.min(partition.maxDoc, reader.maxDoc()) - partition.minDoc;
+        } else if (query instanceof TermQuery && wholeLeaf && !reader.hasDeletions()) {
+            return reader.docFreq(((TermQuery) query).getTerm());
+        }
+        return -1;
+    }
+
+    public static class LeafPartition {
+        public final LeafReaderContext context;
+        public final int minDoc;
+        public final int maxDoc;
+
+        public LeafPartition(LeafReaderContext context, int minDoc, int maxDoc) {
+            this.context = context;
+            this.minDoc = minDoc;
+            this.maxDoc = maxDoc;
+        }
+    }
+
+    private static class TimeLimitedLeafCollector implements LeafCollector {
+        private static final int CHECK_INTERVAL_MASK = 0x3ff;
+        private final LeafCollector delegate;
+        private final QueryTimeout timeout;
+        private final AtomicBoolean timedOut;
+        private int count = 0;
+
+        TimeLimitedLeafCollector(LeafCollector delegate, QueryTimeout timeout, AtomicBoolean timedOut) {
+            this.delegate = delegate;
+            this.timeout = timeout;
+            this.timedOut = timedOut;
+        }
+
+        @Override
+        public void setScorer(Scorable scorer) throws IOException {
+            this.delegate.setScorer(scorer);
+        }
+
+        @Override
+        public void collect(int doc) throws IOException {
+            if ((++this.count & CHECK_INTERVAL_MASK) == 0 && this.timeout.shouldExit()) {
+                this.timedOut.set(true);
+                throw new CollectionTerminatedException();
+            }
+            this.delegate.collect(doc);
+        }
     }
 
     public class SearchTask implements Runnable {
-        private List<LeafReaderContext> contexts;
+        private List<LeafPartition> partitions;
         private Weight weight;
         private SubCollector subCollector;
+        private QueryTimeout timeout;
+        private AtomicBoolean timedOut;
+        private final AtomicBoolean claimed = new AtomicBoolean(false);
+        final CompletableFuture<Void> done = new CompletableFuture<Void>();
 
-        public SearchTask(List<LeafReaderContext> contexts, Weight weight, SubCollector subCollector) {
-            this.contexts = contexts;
+        public SearchTask(List<LeafPartition> partitions, Weight weight, SubCollector subCollector, QueryTimeout timeout, AtomicBoolean timedOut) {
+            this.partitions = partitions;
             this.weight = weight;
             this.subCollector = subCollector;
+            this.timeout = timeout;
+            this.timedOut = timedOut;
         }
 
         @Override
         public void run() {
+            if (!this.claimed.compareAndSet(false, true))
+                return;
             try {
-                SuperIndexSearcher.this.search(this.contexts, this.weight, this.subCollector);
+                SuperIndexSearcher.this.search(this.partitions, this.weight, this.subCollector, this.timeout, this.timedOut);
                 this.subCollector.complete();
-            } catch (IOException e) {
-                throw new RuntimeException(e);
+                this.done.complete(null);
+            } catch (Throwable e) {
+                this.done.completeExceptionally(e);
             }
         }
     }
@@ -143,4 +328,12 @@ public class SuperIndexSearcher extends IndexSearcher {
     public List<List<LeafReaderContext>> group_leaves_test(List<LeafReaderContext> leaves, int tasks) {
         return group_leaves(leaves, tasks);
     }
+
+    public List<List<LeafPartition>> partition_leaves_test(List<LeafReaderContext> leaves, int tasks, int partitionsPerTask, int minPartitionSize) {
+        return partition_leaves(leaves, tasks, partitionsPerTask, minPartitionSize);
+    }
+
+    public int numberOfSlices() {
+        return this.slices.size();
+    }
 }
@@ -31,11 +31,12 @@ import java.io.IOException;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.TopDocs;
 import org.apache.lucene.search.TopFieldDocs;
+import org.apache.lucene.search.TotalHits;
 
 
 public abstract class TopDocSuperCollector extends SuperCollector<TopDocSubCollector<?>> {
     protected final Sort sort;
-    protected final int numHits;
+    protected int numHits;
 
     public TopDocSuperCollector(Sort sort, int numHits) {
         super();
@@ -43,6 +44,13 @@ public abstract class TopDocSuperCollector extends SuperCollector<TopDocSubColle
         this.numHits = numHits;
     }
 
+    /**
+     * Whether topDocs can be extended to numHits without searching again.
+     */
+    public boolean grow(int numHits) throws IOException {
+        return false;
+    }
+
     public TopDocs topDocs(int start) throws IOException {
         TopDocs[] topdocs;
         if (this.sort==null) {
@@ -68,4 +76,12 @@ public abstract class TopDocSuperCollector extends SuperCollector<TopDocSubColle
         }
         return totalHits;
     }
+
+    public TotalHits.Relation getTotalHitsRelation() {
+        for (TopDocSubCollector<?> sub : this.subs) {
+            if (sub.topdocs.totalHits.relation == TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO)
+                return TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO;
+        }
+        return TotalHits.Relation.EQUAL_TO;
+    }
 }
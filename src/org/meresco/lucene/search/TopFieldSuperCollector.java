@@ -47,7 +47,7 @@ public class TopFieldSuperCollector extends TopDocSuperCollector {
     protected TopDocSubCollector<TopFieldSuperCollector> createSubCollector() throws IOException {
         // Needs some TLC: create on TopFieldCollector changed
         return new TopDocSubCollector<TopFieldSuperCollector>(TopFieldCollector.create(this.sort,
-                this.numHits, this.numHits), this);
+                this.numHits, Integer.MAX_VALUE), this);
     }
 
     @Override
@@ -28,13 +28,39 @@
 package org.meresco.lucene.search;
 
 import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.Scorable;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.TopDocsCollector;
 import org.apache.lucene.search.TopScoreDocCollector;
+import org.apache.lucene.search.TotalHits;
+import org.apache.lucene.util.PriorityQueue;
 
 public class TopScoreDocSuperCollector extends TopDocSuperCollector {
+    private final MinCompetitiveScore minCompetitiveScore;
 
     public TopScoreDocSuperCollector(int numHits) {
+        this(numHits, Integer.MAX_VALUE);
+    }
+
+    /**
+     * With a totalHitsThreshold below Integer.MAX_VALUE, all SubCollectors
+     * share one minimum competitive score as soon as that many hits have been
+     * counted over all slices together. Scorers can then skip blocks that
+     * cannot make it into the top numHits of any slice; the total hit count
+     * becomes a lower bound.
+     */
+    public TopScoreDocSuperCollector(int numHits, int totalHitsThreshold) {
         super(null, numHits);
+        if (totalHitsThreshold == Integer.MAX_VALUE)
+            this.minCompetitiveScore = null;
+        else
+            this.minCompetitiveScore = new MinCompetitiveScore(Math.max(numHits, totalHitsThreshold));
     }
 
     @Override
@@ -43,6 +69,117 @@ public class TopScoreDocSuperCollector extends TopDocSuperCollector {
 
     @Override
     protected TopDocSubCollector<TopScoreDocSuperCollector> createSubCollector() throws IOException {
-        return new TopDocSubCollector<TopScoreDocSuperCollector>(TopScoreDocCollector.create(super.numHits, super.numHits), this);
+        if (this.minCompetitiveScore != null)
+            return new TopDocSubCollector<TopScoreDocSuperCollector>(new SharedTopScoreDocCollector(super.numHits, this.minCompetitiveScore), this);
+        return new TopDocSubCollector<TopScoreDocSuperCollector>(TopScoreDocCollector.create(super.numHits, Integer.MAX_VALUE), this);
+    }
+}
+
+class MinCompetitiveScore {
+    private final long totalHitsThreshold;
+    private final AtomicLong hitCount = new AtomicLong();
+    // Scores are non-negative, so their int bits sort like the floats themselves.
+    private final AtomicInteger minScoreBits = new AtomicInteger(Float.floatToIntBits(0f));
+
+    MinCompetitiveScore(long totalHitsThreshold) {
+        this.totalHitsThreshold = totalHitsThreshold;
+    }
+
+    boolean thresholdReached(long unreportedHits) {
+        return this.hitCount.get() + unreportedHits > this.totalHitsThreshold;
+    }
+
+    void addHits(long hits) {
+        this.hitCount.addAndGet(hits);
+    }
+
+    float accumulate(float score) {
+        return Float.intBitsToFloat(this.minScoreBits.accumulateAndGet(Float.floatToIntBits(score), Math::max));
+    }
+
+    float get() {
+        return Float.intBitsToFloat(this.minScoreBits.get());
+    }
+}
+
+class SharedTopScoreDocCollector extends TopDocsCollector<ScoreDoc> {
+    private static final int REPORT_INTERVAL = 256;
+    private final MinCompetitiveScore shared;
+    private ScoreDoc pqTop;
+    private int unreportedHits = 0;
+    private boolean thresholdReached = false;
+
+    SharedTopScoreDocCollector(int numHits, MinCompetitiveScore shared) {
+        super(new ScoreDocQueue(numHits));
+        this.shared = shared;
+        this.pqTop = this.pq.top();
+    }
+
+    @Override
+    public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
+        final int docBase = context.docBase;
+        return new LeafCollector() {
+            private Scorable scorer;
+            private float minScore;
+
+            @Override
+            public void setScorer(Scorable scorer) throws IOException {
+                this.scorer = scorer;
+                this.minScore = 0;
+                updateMinCompetitiveScore(false);
+            }
+
+            @Override
+            public void collect(int doc) throws IOException {
+                float score = this.scorer.score();
+                totalHits++;
+                if (++unreportedHits == REPORT_INTERVAL) {
+                    shared.addHits(unreportedHits);
+                    unreportedHits = 0;
+                }
+                if (score <= pqTop.score) {
+                    updateMinCompetitiveScore(false);
+                    return;
+                }
+                pqTop.doc = doc + docBase;
+                pqTop.score = score;
+                pqTop = pq.updateTop();
+                updateMinCompetitiveScore(true);
+            }
+
+            private void updateMinCompetitiveScore(boolean topChanged) throws IOException {
+                if (!thresholdReached) {
+                    if (!shared.thresholdReached(unreportedHits))
+                        return;
+                    thresholdReached = true;
+                    topChanged = true;
+                }
+                float globalMin = topChanged && pqTop.score != Float.NEGATIVE_INFINITY ? shared.accumulate(pqTop.score) : shared.get();
+                if (globalMin > this.minScore) {
+                    this.scorer.setMinCompetitiveScore(globalMin);
+                    this.minScore = globalMin;
+                    totalHitsRelation = TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO;
+                }
+            }
+        };
+    }
+
+    @Override
+    public ScoreMode scoreMode() {
+        return ScoreMode.TOP_SCORES;
+    }
+
+    /** Same ordering as Lucene's (package private) HitQueue, pre-filled with sentinels. */
+    static class ScoreDocQueue extends PriorityQueue<ScoreDoc> {
+        ScoreDocQueue(int size) {
+            super(size, () -> new ScoreDoc(Integer.MAX_VALUE, Float.NEGATIVE_INFINITY));
+        }
+
+        @Override
+        protected boolean lessThan(ScoreDoc hitA, ScoreDoc hitB) {
+            if (hitA.score == hitB.score)
+                return hitA.doc > hitB.doc;
+            return hitA.score < hitB.score;
+        }
     }
 }
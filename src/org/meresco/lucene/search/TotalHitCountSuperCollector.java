@@ -62,6 +62,17 @@ class TotalHitCountSubCollector extends SubCollector {
         return totalHits;
     }
 
+    @Override
+    public boolean countOnly() {
+        return true;
+    }
+
+    @Override
+    public boolean addCount(int count) {
+        this.totalHits += count;
+        return true;
+    }
+
     @Override
     public void complete() {
     }
@@ -30,7 +30,9 @@ package org.meresco.lucene.search.join;
 import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
 import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.lucene.index.IndexReader.CacheKey;
 import org.apache.lucene.index.LeafReader;
@@ -40,6 +42,7 @@ import org.apache.lucene.index.NumericDocValues;
 
 public class KeyValuesCache {
     private static Map<Object, Map<String, CacheValue>> cache = new WeakHashMap<>();
+    private static Set<String> keyNames = ConcurrentHashMap.newKeySet();
 
     public static int[] get(LeafReaderContext context, String keyName) throws IOException {
         LeafReader reader = context.reader();
@@ -47,6 +50,7 @@ public class KeyValuesCache {
         if (ndv == null) {
             return null;
         }
+        keyNames.add(keyName);
 
         CacheValue cacheValue = safeGet(reader, keyName);
         int[] keyValues = cacheValue.keyValues;
@@ -61,6 +65,14 @@ public class KeyValuesCache {
         return keyValues;
     }
 
+    /**
+     * The names of all keys that have been requested, which are the keys
+     * worth loading for new segments.
+     */
+    public static Set<String> keyNames() {
+        return keyNames;
+    }
+
     private static synchronized CacheValue safeGet(LeafReader reader, String keyName) {
         CacheKey cacheKey = reader.getCoreCacheHelper().getKey();
         Map<String, CacheValue> fieldCache = cache.get(cacheKey);
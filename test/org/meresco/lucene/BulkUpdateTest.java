@@ -0,0 +1,224 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import javax.json.Json;
+import javax.json.JsonObject;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.TermQuery;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.meresco.lucene.numerate.TermNumerator;
+
+public class BulkUpdateTest extends SeecrTestCase {
+    private Lucene lucene;
+    private TermNumerator termNumerator;
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        lucene = new Lucene(this.tmpDir.resolve("lucene"), new LuceneSettings());
+        termNumerator = new TermNumerator(this.tmpDir.resolve("keys"));
+    }
+
+    @Override
+    @After
+    public void tearDown() throws Exception {
+        lucene.close();
+        termNumerator.close();
+        super.tearDown();
+    }
+
+    @Test
+    public void testAddAndDelete() throws Throwable {
+        String updates =
+            "{\"identifier\": \"id1\", \"document\": [{\"type\": \"StringField\", \"name\": \"field\", \"value\": \"value1\"}]}\n" +
+            "{\"identifier\": \"id2\", \"document\": [{\"type\": \"StringField\", \"name\": \"field\", \"value\": \"value2\"}]}\n" +
+            "\n" +
+            "{\"document\": [{\"type\": \"StringField\", \"name\": \"field\", \"value\": \"value3\"}]}\n" +
+            "{\"identifier\": \"id1\", \"delete\": true}\n";
+        BulkUpdate bulkUpdate = new BulkUpdate(lucene, new DocumentStreamConverter(termNumerator));
+        StringWriter statuses = new StringWriter();
+        bulkUpdate.apply(new BufferedReader(new StringReader(updates)), statuses);
+        lucene.commit();
+
+        assertEquals(4, bulkUpdate.getUpdates());
+        assertEquals(0, bulkUpdate.getFailures());
+        assertEquals(2, lucene.executeQuery(new MatchAllDocsQuery()).total);
+        assertEquals(0, lucene.executeQuery(new TermQuery(new Term("field", "value1"))).total);
+        assertEquals("{\"updates\":4,\"failures\":0}\n", statuses.toString());
+    }
+
+    @Test
+    public void testFailuresDoNotStopTheBulk() throws Throwable {
+        String updates =
+            "{\"identifier\": \"id1\", \"document\": [{\"type\": \"StringField\", \"name\": \"field\"}]}\n" +
+            "not json\n" +
+            "{\"delete\": true}\n" +
+            "{\"identifier\": \"id2\"}\n" +
+            "{\"identifier\": \"id3\", \"document\": [{\"type\": \"KeyField\", \"name\": \"key\", \"value\": \"a\"}]}\n";
+        BulkUpdate bulkUpdate = new BulkUpdate(lucene, new DocumentStreamConverter(termNumerator));
+        StringWriter statuses = new StringWriter();
+        bulkUpdate.apply(new BufferedReader(new StringReader(updates)), statuses);
+        lucene.commit();
+
+        assertEquals(5, bulkUpdate.getUpdates());
+        assertEquals(4, bulkUpdate.getFailures());
+        assertEquals(1, lucene.executeQuery(new MatchAllDocsQuery()).total);
+        String[] lines = statuses.toString().split("\n");
+        assertEquals(5, lines.length);
+        JsonObject first = Json.createReader(new StringReader(lines[0])).readObject();
+        assertEquals(1, first.getInt("line"));
+        assertEquals("id1", first.getString("identifier"));
+        assertEquals("error", first.getString("status"));
+        assertEquals("error", Json.createReader(new StringReader(lines[1])).readObject().getString("status"));
+        assertEquals("java.lang.IllegalArgumentException: delete requires an identifier", Json.createReader(new StringReader(lines[2])).readObject().getString("error"));
+        assertEquals("java.lang.IllegalArgumentException: update requires a document or delete", Json.createReader(new StringReader(lines[3])).readObject().getString("error"));
+        assertEquals("{\"updates\":5,\"failures\":4}", lines[4]);
+    }
+
+    @Test
+    public void testFirstFailuresReportedInLineOrder() throws Throwable {
+        lucene.getSettings().indexingThreads = 4;
+        StringBuilder updates = new StringBuilder();
+        int count = BulkUpdate.MAX_REPORTED_FAILURES + 50;
+        for (int i = 0; i < count; i++) {
+            updates.append("{\"identifier\": \"id" + i + "\"}\n");
+        }
+        StringWriter statuses = new StringWriter();
+        new BulkUpdate(lucene, new DocumentStreamConverter(termNumerator)).apply(new BufferedReader(new StringReader(updates.toString())), statuses);
+
+        String[] lines = statuses.toString().split("\n");
+        assertEquals(BulkUpdate.MAX_REPORTED_FAILURES + 1, lines.length);
+        for (int i = 0; i < BulkUpdate.MAX_REPORTED_FAILURES; i++) {
+            JsonObject status = Json.createReader(new StringReader(lines[i])).readObject();
+            assertEquals(i + 1, status.getInt("line"));
+            assertEquals("id" + i, status.getString("identifier"));
+        }
+        assertEquals("{\"updates\":" + count + ",\"failures\":" + count + "}", lines[lines.length - 1]);
+    }
+
+    @Test
+    public void testParallelUpdatesOfOneIdentifierKeepTheirOrder() throws Throwable {
+        lucene.getSettings().indexingThreads = 4;
+        lucene.getSettings().indexingQueueSize = 10;
+        StringBuilder updates = new StringBuilder();
+        for (int version = 0; version < 20; version++) {
+            for (int i = 0; i < 100; i++) {
+                updates.append("{\"identifier\": \"id" + i + "\", \"document\": [" +
+                    "{\"type\": \"StringField\", \"name\": \"version\", \"value\": \"v" + version + "\"}, " +
+                    "{\"type\": \"FacetField\", \"name\": \"facet\", \"path\": [\"f" + (i % 7) + "\"]}]}\n");
+            }
+        }
+        for (int i = 0; i < 100; i += 10) {
+            updates.append("{\"identifier\": \"id" + i + "\", \"delete\": true}\n");
+        }
+        BulkUpdate bulkUpdate = new BulkUpdate(lucene, new DocumentStreamConverter(termNumerator));
+        StringWriter statuses = new StringWriter();
+        bulkUpdate.apply(new BufferedReader(new StringReader(updates.toString())), statuses);
+        lucene.commit();
+
+        assertEquals(2010, bulkUpdate.getUpdates());
+        assertEquals(0, bulkUpdate.getFailures());
+        assertEquals("{\"updates\":2010,\"failures\":0}\n", statuses.toString());
+        assertEquals(90, lucene.executeQuery(new MatchAllDocsQuery()).total);
+        assertEquals(90, lucene.executeQuery(new TermQuery(new Term("version", "v19"))).total);
+    }
+
+    @Test(timeout=60000)
+    public void testWorkersShareTheExecutorOfTheCore() throws Throwable {
+        lucene.getSettings().indexingThreads = 4;
+        lucene.getSettings().indexingQueueSize = 10;
+        StringBuilder updates = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            updates.append("{\"identifier\": \"id" + i + "\", \"document\": []}\n");
+        }
+        List<Thread> threads = new ArrayList<>();
+        List<String> summaries = Collections.synchronizedList(new ArrayList<>());
+        for (int i = 0; i < 3; i++) {
+            threads.add(new Thread(() -> {
+                try {
+                    StringWriter statuses = new StringWriter();
+                    new BulkUpdate(lucene, new DocumentStreamConverter(termNumerator)).apply(new BufferedReader(new StringReader(updates.toString())), statuses);
+                    summaries.add(statuses.toString());
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads)
+            thread.join();
+        assertEquals(Arrays.asList("{\"updates\":500,\"failures\":0}\n", "{\"updates\":500,\"failures\":0}\n", "{\"updates\":500,\"failures\":0}\n"), summaries);
+        assertEquals(4, lucene.getIndexingExecutor().getPoolSize());
+    }
+
+    @Test(timeout=60000)
+    public void testWorkersEndWhenReadingFails() throws Throwable {
+        lucene.getSettings().indexingThreads = 4;
+        lucene.getSettings().indexingQueueSize = 10;
+        StringBuilder updates = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            updates.append("{\"identifier\": \"id" + i + "\", \"document\": []}\n");
+        }
+        BufferedReader failingReader = new BufferedReader(new StringReader(updates.toString())) {
+            int lines = 0;
+
+            @Override
+            public String readLine() throws IOException {
+                if (++lines > 50)
+                    throw new IOException("connection reset");
+                return super.readLine();
+            }
+        };
+        try {
+            new BulkUpdate(lucene, new DocumentStreamConverter(termNumerator)).apply(failingReader, new StringWriter());
+            fail();
+        } catch (IOException e) {
+            assertEquals("connection reset", e.getMessage());
+        }
+        ThreadPoolExecutor executor = lucene.getIndexingExecutor();
+        while (executor.getActiveCount() > 0)
+            Thread.sleep(10);
+        assertEquals(0, executor.getQueue().size());
+    }
+}
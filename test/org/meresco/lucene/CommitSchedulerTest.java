@@ -0,0 +1,151 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CommitSchedulerTest extends SeecrTestCase {
+    private CommitScheduler scheduler;
+    private Lucene lucene1;
+    private Lucene lucene2;
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        scheduler = new CommitScheduler(2);
+        lucene1 = createLucene("core1");
+        lucene2 = createLucene("core2");
+    }
+
+    @Override
+    @After
+    public void tearDown() throws Exception {
+        lucene1.close();
+        lucene2.close();
+        scheduler.close();
+        super.tearDown();
+    }
+
+    private Lucene createLucene(String name) throws Exception {
+        LuceneSettings settings = new LuceneSettings();
+        settings.commitTimeout = 60;
+        Lucene lucene = new Lucene(name, tmpDir.resolve(name), settings);
+        lucene.setCommitScheduler(scheduler);
+        return lucene;
+    }
+
+    @Test
+    public void testCommitAll() throws Throwable {
+        lucene1.addDocument("id1", new Document());
+        lucene2.addDocument("id2", new Document());
+        assertEquals(0, lucene1.executeQuery(new MatchAllDocsQuery()).total);
+        scheduler.commitAll(Arrays.asList(lucene1, lucene2));
+        assertEquals(1, lucene1.executeQuery(new MatchAllDocsQuery()).total);
+        assertEquals(1, lucene2.executeQuery(new MatchAllDocsQuery()).total);
+        assertEquals(2, scheduler.getCommitCount());
+        assertTrue(scheduler.getMaxCommitTime() >= scheduler.getLastCommitTime());
+    }
+
+    @Test
+    public void testConcurrentCommitsAreCoalesced() throws Throwable {
+        lucene1.addDocument("id1", new Document());
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            threads.add(new Thread(() -> {
+                try {
+                    lucene1.commit();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads)
+            thread.join();
+        assertEquals(1, lucene1.executeQuery(new MatchAllDocsQuery()).total);
+        assertTrue(scheduler.getCommitCount() < 20);
+    }
+
+    @Test
+    public void testScheduledCommit() throws Throwable {
+        scheduler.scheduleCommit(lucene1, 50);
+        lucene1.addDocument("id1", new Document());
+        Thread.sleep(500);
+        assertEquals(1, lucene1.executeQuery(new MatchAllDocsQuery()).total);
+        assertEquals(1, scheduler.getCommitCount());
+    }
+
+    @Test
+    public void testFailingScheduledCommitIsReported() throws Throwable {
+        List<Throwable> errors = new ArrayList<>();
+        CommitScheduler reporting = new CommitScheduler(1) {
+            @Override
+            protected void reportError(Throwable e) {
+                synchronized (errors) {
+                    errors.add(e);
+                }
+            }
+        };
+        Lucene failing = new Lucene("failing", tmpDir.resolve("failing"), new LuceneSettings()) {
+            @Override
+            void commitNow() throws Exception {
+                throw new IOException("disk full");
+            }
+        };
+        failing.setCommitScheduler(reporting);
+        try {
+            reporting.scheduleCommit(failing, 10);
+            reporting.schedule(() -> {
+                throw new RuntimeException("refresh failed");
+            }, 10);
+            Thread.sleep(500);
+            synchronized (errors) {
+                assertEquals(2, errors.size());
+                List<String> messages = new ArrayList<>();
+                for (Throwable e : errors)
+                    messages.add(e.getMessage());
+                assertTrue(messages.contains("disk full"));
+                assertTrue(messages.contains("refresh failed"));
+            }
+        } finally {
+            reporting.remove(failing);
+            failing.close();
+            reporting.close();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import javax.json.Json;
+import javax.json.JsonArray;
+import javax.json.JsonObjectBuilder;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.facet.FacetField;
+import org.apache.lucene.index.DocValuesType;
+import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.IndexableFieldType;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.meresco.lucene.numerate.TermNumerator;
+
+public class DocumentStreamConverterTest extends SeecrTestCase {
+    private TermNumerator termNumerator;
+    private DocumentStreamConverter converter;
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        termNumerator = new TermNumerator(this.tmpDir);
+        converter = new DocumentStreamConverter(termNumerator);
+    }
+
+    @Override
+    @After
+    public void tearDown() throws Exception {
+        termNumerator.close();
+        super.tearDown();
+    }
+
+    @Test
+    public void testSameFieldsAsDocumentStringToDocument() throws IOException {
+        JsonArray json = Json.createArrayBuilder()
+            .add(field("StringField", "string").add("value", "value"))
+            .add(field("StringField", "stored").add("value", "value").add("stored", true))
+            .add(field("StringField", "sorted").add("value", "value").add("sort", true))
+            .add(field("StringField", "vectors").add("value", "value").add("termVectors", true))
+            .add(field("TextField", "text").add("value", "some text").add("termVectors", true))
+            .add(field("NoTermsFrequencyField", "nofreq").add("value", "some text"))
+            .add(field("IntField", "int").add("value", 3).add("stored", true))
+            .add(field("IntPoint", "sortInt").add("value", 4).add("sort", true))
+            .add(field("DoubleField", "double").add("value", 1.5).add("stored", true))
+            .add(field("DoublePoint", "sortDouble").add("value", -2.5).add("sort", true))
+            .add(field("LongField", "long").add("value", 1L << 40).add("stored", true))
+            .add(field("LongPoint", "sortLong").add("value", 7).add("sort", true))
+            .add(field("NumericField", "numeric").add("value", 8))
+            .add(field("KeyField", "key").add("value", "keyValue"))
+            .add(field("KeyField", "intKey").add("value", 9))
+            .add(field("FacetField", "facet").add("path", Json.createArrayBuilder().add("a").add("b")))
+            .add(field("UnknownField", "unknown").add("value", "ignored").add("extra", Json.createObjectBuilder().add("a", Json.createArrayBuilder().add(1))))
+            .build();
+        List<IndexableField> expected = new DocumentStringToDocument(json, termNumerator).convert().getFields();
+        List<IndexableField> fields = converter.convert(new StringReader(json.toString())).getFields();
+        assertEquals(expected.size(), fields.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertSameField(expected.get(i), fields.get(i));
+        }
+    }
+
+    @Test
+    public void testFieldsAreReusedPerThread() throws IOException {
+        String json = Json.createArrayBuilder()
+            .add(field("StringField", "field").add("value", "value1"))
+            .add(field("StringField", "field").add("value", "value2"))
+            .add(field("IntField", "int").add("value", 1))
+            .build().toString();
+        Document first = converter.convert(new StringReader(json));
+        assertNotSame(first.getFields().get(0), first.getFields().get(1));
+
+        Document second = converter.convert(new StringReader(json.replace("value1", "value3")));
+        assertSame(first.getFields().get(0), second.getFields().get(0));
+        assertSame(first.getFields().get(2), second.getFields().get(2));
+        assertEquals("value3", second.getFields().get(0).stringValue());
+        assertEquals("value2", second.getFields().get(1).stringValue());
+    }
+
+    @Test
+    public void testAlternatingOptionsReuseFields() throws IOException {
+        String stored = Json.createArrayBuilder()
+            .add(field("StringField", "field").add("value", "value").add("stored", true))
+            .build().toString();
+        String sorted = Json.createArrayBuilder()
+            .add(field("StringField", "field").add("value", "value").add("sort", true))
+            .build().toString();
+        IndexableField storedField = converter.convert(new StringReader(stored)).getFields().get(0);
+        IndexableField sortedField = converter.convert(new StringReader(sorted)).getFields().get(0);
+        assertTrue(storedField.fieldType().stored());
+        assertEquals(DocValuesType.SORTED, sortedField.fieldType().docValuesType());
+        for (int i = 0; i < 10; i++) {
+            assertSame(storedField, converter.convert(new StringReader(stored)).getFields().get(0));
+            assertSame(sortedField, converter.convert(new StringReader(sorted)).getFields().get(0));
+        }
+    }
+
+    @Test
+    public void testFieldChangesType() throws IOException {
+        Document doc = converter.convert(new StringReader(Json.createArrayBuilder()
+            .add(field("StringField", "field").add("value", "value"))
+            .build().toString()));
+        assertEquals("value", doc.getField("field").stringValue());
+
+        doc = converter.convert(new StringReader(Json.createArrayBuilder()
+            .add(field("NumericField", "field").add("value", 42))
+            .build().toString()));
+        assertEquals(42L, doc.getField("field").numericValue());
+    }
+
+    @Test(expected=IllegalArgumentException.class)
+    public void testMissingValue() throws IOException {
+        converter.convert(new StringReader(Json.createArrayBuilder()
+            .add(field("StringField", "field"))
+            .build().toString()));
+    }
+
+    private static void assertSameField(IndexableField expected, IndexableField field) {
+        assertEquals(expected.getClass(), field.getClass());
+        assertEquals(expected.name(), field.name());
+        if (expected instanceof FacetField) {
+            assertEquals(((FacetField) expected).dim, ((FacetField) field).dim);
+            assertArrayEquals(((FacetField) expected).path, ((FacetField) field).path);
+            return;
+        }
+        IndexableFieldType expectedType = expected.fieldType();
+        IndexableFieldType type = field.fieldType();
+        assertEquals(expected.name(), expectedType.stored(), type.stored());
+        assertEquals(expected.name(), expectedType.tokenized(), type.tokenized());
+        assertEquals(expected.name(), expectedType.storeTermVectors(), type.storeTermVectors());
+        assertEquals(expected.name(), expectedType.omitNorms(), type.omitNorms());
+        assertEquals(expected.name(), expectedType.indexOptions(), type.indexOptions());
+        assertEquals(expected.name(), expectedType.docValuesType(), type.docValuesType());
+        assertEquals(expected.name(), expectedType.pointDataDimensionCount(), type.pointDataDimensionCount());
+        assertEquals(expected.name(), expected.stringValue(), field.stringValue());
+        assertEquals(expected.name(), expected.numericValue(), field.numericValue());
+        assertEquals(expected.name(), expected.binaryValue(), field.binaryValue());
+    }
+
+    private static JsonObjectBuilder field(String type, String name) {
+        return Json.createObjectBuilder().add("type", type).add("name", name);
+    }
+}
@@ -41,6 +41,7 @@ import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.document.StoredField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.search.TotalHits;
 import org.apache.lucene.search.spell.SuggestWord;
 import org.junit.Test;
 import org.meresco.lucene.LuceneResponse.ClusterHit;
@@ -110,6 +111,22 @@ public class LuceneResponseToJsonTest {
         assertEquals("value", suggestionsValeu.getString(0));
     }
 
+    @Test
+    public void testTotalHitsRelation() {
+        LuceneResponse response = new LuceneResponse(2);
+        assertEquals(null, response.toJson().get("totalHitsRelation"));
+        response.totalHitsRelation = TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO;
+        assertEquals("GREATER_THAN_OR_EQUAL_TO", response.toJson().getString("totalHitsRelation"));
+    }
+
+    @Test
+    public void testPartialResults() {
+        LuceneResponse response = new LuceneResponse(2);
+        assertEquals(null, response.toJson().get("partialResults"));
+        response.partialResults = true;
+        assertEquals(true, response.toJson().getBoolean("partialResults"));
+    }
+
     @Test
     public void testHierarchicalDrilldown() {
         LuceneResponse response = new LuceneResponse(2);
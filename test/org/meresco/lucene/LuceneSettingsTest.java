@@ -54,9 +54,21 @@ public class LuceneSettingsTest {
                     .add("maxMergeAtOnce", 2))
             .add("lruTaxonomyWriterCacheSize", 4000)
             .add("numberOfConcurrentTasks", 6)
+            .add("partitionsPerTask", 0)
             .add("commitCount", 100000)
             .add("commitTimeout", 10)
+            .add("refreshIntervalMs", 0)
             .add("cacheFacetOrdinals", true)
+            .add("responseCacheSizeMB", 0)
+            .add("filterCacheSizeMB", 32)
+            .add("filterCacheMaxQueries", 1000)
+            .add("facetCountsPoolSizeMB", 64)
+            .add("facetCountsCacheSizeMB", 32)
+            .add("idDocValues", false)
+            .add("warmSearchers", true)
+            .add("warmQueries", 0)
+            .add("indexingThreads", 4)
+            .add("indexingQueueSize", 1000)
             .add("clustering", Json.createObjectBuilder()
                     .add("clusterMoreRecords", 100)
                     .add("strategies", Json.createArrayBuilder()
@@ -75,12 +87,24 @@ public class LuceneSettingsTest {
     @Test
     public void testSimpleSettingsFromJson() throws Exception {
         LuceneSettings settings = new LuceneSettings();
-        String json = "{\"commitCount\": 1, \"commitTimeout\": 1, \"lruTaxonomyWriterCacheSize\": 1, \"maxMergeAtOnce\": 1, \"segmentsPerTier\": 1.0, \"numberOfConcurrentTasks\": 1}";
+        String json = "{\"commitCount\": 1, \"commitTimeout\": 1, \"refreshIntervalMs\": 200, \"lruTaxonomyWriterCacheSize\": 1, \"maxMergeAtOnce\": 1, \"segmentsPerTier\": 1.0, \"numberOfConcurrentTasks\": 1, \"partitionsPerTask\": 4, \"responseCacheSizeMB\": 16, \"filterCacheSizeMB\": 8, \"filterCacheMaxQueries\": 100, \"facetCountsPoolSizeMB\": 128, \"facetCountsCacheSizeMB\": 4, \"idDocValues\": true, \"warmSearchers\": false, \"warmQueries\": 20, \"indexingThreads\": 8, \"indexingQueueSize\": 50}";
         settings.updateSettings(new StringReader(json));
         assertEquals(1, settings.commitCount);
+        assertEquals(200, settings.refreshIntervalMs);
         assertEquals(1, settings.commitTimeout);
         assertEquals(1, settings.lruTaxonomyWriterCacheSize);
         assertEquals(1, settings.commitTimeout);
+        assertEquals(4, settings.partitionsPerTask);
+        assertEquals(16, settings.responseCacheSizeMB);
+        assertEquals(8, settings.filterCacheSizeMB);
+        assertEquals(100, settings.filterCacheMaxQueries);
+        assertEquals(128, settings.facetCountsPoolSizeMB);
+        assertEquals(4, settings.facetCountsCacheSizeMB);
+        assertTrue(settings.idDocValues);
+        assertFalse(settings.warmSearchers);
+        assertEquals(20, settings.warmQueries);
+        assertEquals(8, settings.indexingThreads);
+        assertEquals(50, settings.indexingQueueSize);
     }
 
     @Test
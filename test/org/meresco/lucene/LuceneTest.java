@@ -33,6 +33,7 @@ import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -41,6 +42,7 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
 
 import org.apache.lucene.document.Document;
 import org.apache.lucene.document.Field;
@@ -52,19 +54,27 @@ import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StoredField;
 import org.apache.lucene.document.StringField;
 import org.apache.lucene.document.TextField;
+import org.apache.lucene.facet.DrillDownQuery;
 import org.apache.lucene.facet.FacetField;
 import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.facet.taxonomy.CachedOrdinalsReader;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.search.BooleanClause.Occur;
 import org.apache.lucene.search.BooleanQuery;
 import org.apache.lucene.search.BooleanQuery.Builder;
 import org.apache.lucene.search.BoostQuery;
+import org.apache.lucene.search.LRUQueryCache;
 import org.apache.lucene.search.MatchAllDocsQuery;
 import org.apache.lucene.search.Query;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
 import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.TotalHits;
 import org.apache.lucene.search.spell.SuggestMode;
+import org.apache.lucene.store.FSDirectory;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.FixedBitSet;
 import org.junit.After;
@@ -74,7 +84,10 @@ import org.meresco.lucene.JsonQueryConverter.FacetRequest;
 import org.meresco.lucene.Lucene.TermCount;
 import org.meresco.lucene.LuceneResponse.ClusterHit;
 import org.meresco.lucene.LuceneResponse.DedupHit;
+import org.meresco.lucene.LuceneResponse.DrilldownData;
 import org.meresco.lucene.LuceneResponse.Hit;
+import org.meresco.lucene.analysis.MerescoStandardAnalyzer;
+import org.meresco.lucene.queries.KeyFilter;
 import org.meresco.lucene.search.InterpolateEpsilon;
 import org.meresco.lucene.search.MerescoCluster.DocScore;
 import org.meresco.lucene.search.MerescoCluster.TermScore;
@@ -113,6 +126,36 @@ public class LuceneTest extends SeecrTestCase {
         assertEquals("id1", response.hits.get(0).id);
     }
 
+    @Test
+    public void testTotalHitsThreshold() throws Throwable {
+        lucene.getSettings().commitCount = 100000;
+        for (int i = 0; i < 5000; i++) {
+            Document doc = new Document();
+            doc.add(new TextField("text", String.join(" ", Collections.nCopies(i % 500 == 0 ? 20 : 1, "aap")), Store.NO));
+            doc.add(new FacetField("cat", "value" + (i % 2)));
+            lucene.addDocument("id" + i, doc);
+        }
+        lucene.commit();
+        QueryData q = new QueryData();
+        q.query = new TermQuery(new Term("text", "aap"));
+        LuceneResponse exact = lucene.executeQuery(q);
+        assertEquals(5000, exact.total);
+        assertEquals(TotalHits.Relation.EQUAL_TO, exact.totalHitsRelation);
+
+        q.totalHitsThreshold = 10;
+        LuceneResponse response = lucene.executeQuery(q);
+        assertTrue(response.total < 5000);
+        assertEquals(TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO, response.totalHitsRelation);
+        assertEquals(10, response.hits.size());
+        for (int i = 0; i < 10; i++)
+            assertEquals(exact.hits.get(i).score, response.hits.get(i).score, 0);
+
+        q.facets = Arrays.asList(new FacetRequest("cat", 10));
+        response = lucene.executeQuery(q);
+        assertEquals(5000, response.total);
+        assertEquals(TotalHits.Relation.EQUAL_TO, response.totalHitsRelation);
+    }
+
     @Test
     public void testAddDocumentWithoutIdentifier() throws Throwable {
         Document doc = new Document();
@@ -359,6 +402,82 @@ public class LuceneTest extends SeecrTestCase {
         assertEquals(3, lucene.executeQuery(new MatchAllDocsQuery()).total);
     }
 
+    @Test
+    public void testRefreshWithoutCommit() throws Throwable {
+        lucene.close();
+        LuceneSettings settings = new LuceneSettings();
+        settings.commitTimeout = 60;
+        settings.commitCount = 1000;
+        settings.refreshIntervalMs = 300;
+        lucene = new Lucene(this.tmpDir, settings);
+        lucene.addDocument("id1", new Document());
+        assertEquals(0, lucene.executeQuery(new MatchAllDocsQuery()).total);
+        Thread.sleep(1000);
+        assertEquals(1, lucene.executeQuery(new MatchAllDocsQuery()).total);
+        assertTrue(lucene.data.getIndexWriter().hasUncommittedChanges());
+
+        settings.refreshIntervalMs = 0;
+        lucene.addDocument("id2", new Document());
+        Thread.sleep(200);
+        assertEquals(1, lucene.executeQuery(new MatchAllDocsQuery()).total);
+        lucene.refresh();
+        assertEquals(2, lucene.executeQuery(new MatchAllDocsQuery()).total);
+    }
+
+    @Test
+    public void testWarmNewSegmentsBeforeSearch() throws Throwable {
+        List<Integer> warmedLeaves = new ArrayList<>();
+        lucene.data.getSearchFactory().setWarmer((searcher, newLeaves) -> {
+            warmedLeaves.add(newLeaves.size());
+            lucene.warm(searcher, newLeaves);
+        });
+        Document doc = new Document();
+        doc.add(new FacetField("cat", "value0"));
+        lucene.addDocument("id0", doc);
+        assertEquals(1, lucene.executeQuery(new MatchAllDocsQuery(), Arrays.asList(new FacetRequest("cat", 10))).total);
+        CachedOrdinalsReader ordinalsReader = (CachedOrdinalsReader) lucene.getOrdinalsReader(FacetsConfig.DEFAULT_INDEX_FIELD_NAME);
+        long ramBytesUsed = ordinalsReader.ramBytesUsed();
+
+        doc = new Document();
+        doc.add(new FacetField("cat", "value1"));
+        lucene.addDocument("id1", doc);
+        assertEquals(Arrays.asList(1, 1), warmedLeaves);
+        assertTrue(ordinalsReader.ramBytesUsed() > ramBytesUsed);
+
+        lucene.getSettings().warmSearchers = false;
+        lucene.addDocument("id2", new Document());
+        assertEquals(Arrays.asList(1, 1), warmedLeaves);
+    }
+
+    @Test
+    public void testRecentQueriesLeaveOutOtherCoreFilters() throws Throwable {
+        lucene.getSettings().warmQueries = 10;
+        Query filterQuery = new TermQuery(new Term("field", "value"));
+        Query otherCoreFilter = new TermQuery(new Term("key", "1"));
+        lucene.executeQuery(new QueryData(), Arrays.asList(filterQuery), null, Arrays.asList(otherCoreFilter), null, null);
+        Builder expected = new BooleanQuery.Builder();
+        expected.add(new MatchAllDocsQuery(), Occur.MUST);
+        expected.add(new BooleanQuery.Builder().add(filterQuery, Occur.FILTER).build(), Occur.FILTER);
+        assertEquals(Arrays.asList(expected.build()), new ArrayList<>(lucene.recentQueries));
+    }
+
+    @Test
+    public void testMetrics() throws Throwable {
+        Document doc = new Document();
+        doc.add(new FacetField("cat", "value0"));
+        lucene.addDocument("id0", doc);
+        lucene.executeQuery(new MatchAllDocsQuery(), Arrays.asList(new FacetRequest("cat", 10)));
+        lucene.collectKeys(null, "key", null, false);
+
+        Metrics metrics = lucene.getMetrics();
+        assertEquals(1, metrics.rate("updates").getCount());
+        assertEquals(1, metrics.rate("commits").getCount());
+        assertEquals(1, metrics.rate("queries").getCount());
+        for (String phase : Arrays.asList("commit", "query", "search", "topDocs", "storedFields", "facets", "keyCollection"))
+            assertEquals(phase, 1, metrics.histogram(phase).getCount());
+        assertEquals(null, metrics.histogram("clustering"));
+    }
+
     @Test
     public void testStartStop() throws Throwable {
         Document doc1 = new Document();
@@ -628,6 +747,222 @@ public class LuceneTest extends SeecrTestCase {
         assertEquals(4, result.drilldownData.get(0).terms.get(0).count);
     }
 
+    @Test
+    public void testCountOnly() throws Throwable {
+        lucene.getSettings().commitCount = 100000;
+        for (int i = 0; i < 100; i++) {
+            Document doc = new Document();
+            doc.add(new StringField("field", i % 4 == 0 ? "four" : "other", Store.NO));
+            doc.add(new FacetField("cat", "value" + (i % 2)));
+            if (i % 10 == 0)
+                doc.add(new NumericDocValuesField("__key__", 42));
+            lucene.addDocument("id" + i, doc);
+        }
+        lucene.commit();
+        QueryData q = new QueryData();
+        q.query = new TermQuery(new Term("field", "four"));
+        q.stop = 0;
+        LuceneResponse response = lucene.executeQuery(q);
+        assertEquals(25, response.total);
+        assertEquals(0, response.hits.size());
+
+        q.facets = Arrays.asList(new FacetRequest("cat", 10));
+        response = lucene.executeQuery(q);
+        assertEquals(25, response.total);
+        assertEquals(0, response.hits.size());
+        assertEquals("value0", response.drilldownData.get(0).terms.get(0).label);
+        assertEquals(25, response.drilldownData.get(0).terms.get(0).count);
+
+        q.query = new MatchAllDocsQuery();
+        q.facets = null;
+        q.dedupField = "__key__";
+        response = lucene.executeQuery(q);
+        assertEquals(91, response.total);
+        assertEquals(Long.valueOf(100), response.totalWithDuplicates);
+        assertEquals(0, response.hits.size());
+    }
+
+    @Test
+    public void testDrilldownQueriesAddToScore() throws Throwable {
+        for (int i = 0; i < 10; i++) {
+            Document doc = new Document();
+            doc.add(new TextField("field", i % 2 == 0 ? "value" : "value value", Store.NO));
+            doc.add(new FacetField("cat", "cat" + (i % 3)));
+            lucene.addDocument("id" + i, doc);
+        }
+        lucene.commit();
+        QueryData q = new QueryData();
+        q.query = new TermQuery(new Term("field", "value"));
+        List<String[]> drilldownQueries = Arrays.asList(new String[] {"cat"}, new String[] {"cat1"});
+        LuceneResponse response = lucene.executeQuery(q, null, drilldownQueries, null, null, null);
+
+        QueryData expected = new QueryData();
+        expected.query = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term("field", "value")), Occur.MUST)
+                .add(new TermQuery(DrillDownQuery.term(FacetsConfig.DEFAULT_INDEX_FIELD_NAME, "cat", "cat1")), Occur.MUST)
+                .build();
+        LuceneResponse expectedResponse = lucene.executeQuery(expected);
+        assertEquals(3, response.total);
+        for (int i = 0; i < 3; i++) {
+            assertEquals(expectedResponse.hits.get(i).id, response.hits.get(i).id);
+            assertEquals(expectedResponse.hits.get(i).score, response.hits.get(i).score, 0);
+        }
+        assertTrue(response.hits.get(0).score > lucene.executeQuery(q).hits.get(0).score);
+    }
+
+    @Test
+    public void testFilterCacheForDrilldowns() throws Throwable {
+        lucene.getSettings().commitCount = 100000;
+        for (int i = 0; i < 20000; i++) {
+            Document doc = new Document();
+            doc.add(new StringField("field", "value" + (i % 10), Store.NO));
+            doc.add(new FacetField("cat", "cat" + (i % 3)));
+            lucene.addDocument("id" + i, doc);
+        }
+        lucene.commit();
+        LRUQueryCache filterCache = lucene.getFilterCache();
+        assertEquals(0, filterCache.getCacheCount());
+        QueryData q = new QueryData();
+        q.query = new TermQuery(new Term("field", "value1"));
+        // Drilldowns score, so only searches without scores take them from the filter cache.
+        q.stop = 0;
+        List<String[]> drilldownQueries = Arrays.asList(new String[] {"cat"}, new String[] {"cat1"});
+        long total = lucene.executeQuery(q, null, drilldownQueries, null, null, null).total;
+        for (int i = 0; i < 4; i++)
+            assertEquals(total, lucene.executeQuery(q, null, drilldownQueries, null, null, null).total);
+        // The drilldown, and the whole query as it is not scored either.
+        assertEquals(2, filterCache.getCacheCount());
+        assertTrue(filterCache.getHitCount() > 0);
+
+        lucene.getSettings().filterCacheSizeMB = 0;
+        lucene.addDocument("id0", new Document());
+        lucene.commit();
+        assertEquals(null, lucene.getFilterCache());
+    }
+
+    @Test
+    public void testResponseCache() throws Throwable {
+        Document doc = new Document();
+        doc.add(new StringField("field", "value", Store.NO));
+        lucene.addDocument("id0", doc);
+        lucene.commit();
+        QueryData q = new QueryData();
+        q.query = new TermQuery(new Term("field", "value"));
+        LuceneResponse response = lucene.executeQuery(q);
+        assertNotSame(response, lucene.executeQuery(q));
+        assertEquals(0, lucene.getResponseCache().getMissCount());
+
+        lucene.getSettings().responseCacheSizeMB = 1;
+        response = lucene.executeQuery(q);
+        assertEquals(1, response.total);
+        QueryData sameQuery = new QueryData();
+        sameQuery.query = new TermQuery(new Term("field", "value"));
+        assertSame(response, lucene.executeQuery(sameQuery));
+        sameQuery.stop = 5;
+        assertNotSame(response, lucene.executeQuery(sameQuery));
+        assertEquals(1, lucene.getResponseCache().getHitCount());
+        assertEquals(2, lucene.getResponseCache().getMissCount());
+
+        doc = new Document();
+        doc.add(new StringField("field", "value", Store.NO));
+        lucene.addDocument("id1", doc);
+        lucene.commit();
+        assertEquals(2, lucene.executeQuery(q).total);
+        assertEquals(3, lucene.getResponseCache().getMissCount());
+    }
+
+    @Test
+    public void testResponseCacheAfterSettingsUpdate() throws Throwable {
+        lucene.getSettings().responseCacheSizeMB = 1;
+        Document doc = new Document();
+        doc.add(new StringField("field", "value", Store.NO));
+        lucene.addDocument("id0", doc);
+        lucene.commit();
+        QueryData q = new QueryData();
+        q.query = new TermQuery(new Term("field", "value"));
+        LuceneResponse response = lucene.executeQuery(q);
+        assertSame(response, lucene.executeQuery(q));
+
+        lucene.getSettings().updateSettings(new StringReader("{\"clustering\": {\"clusterMoreRecords\": 50, \"strategies\": [{\"clusteringEps\": 0.2, \"clusteringMinPoints\": 1}]}}"));
+        assertNotSame(response, lucene.executeQuery(q));
+        assertEquals(2, lucene.getResponseCache().getMissCount());
+    }
+
+    @Test
+    public void testFacetCountsCache() throws Throwable {
+        for (int i = 0; i < 3; i++) {
+            Document doc = new Document();
+            doc.add(new StringField("field", i < 2 ? "value" : "other", Store.NO));
+            doc.add(new FacetField("facet-field1", "first" + i % 2));
+            doc.add(new FacetField("facet-field2", "second"));
+            lucene.addDocument("id" + i, doc);
+        }
+        lucene.commit();
+        List<Query> filterQueries = Arrays.asList(new TermQuery(new Term("field", "value")));
+        List<DrilldownData> result = lucene.facets(Arrays.asList(new FacetRequest("facet-field1", 10)), filterQueries, null, null);
+        assertEquals(2, result.get(0).terms.size());
+        assertEquals(0, lucene.getFacetCountsCache().getHitCount());
+        assertEquals(1, lucene.getFacetCountsCache().getMissCount());
+
+        result = lucene.facets(Arrays.asList(new FacetRequest("facet-field2", 10)), Arrays.asList(new TermQuery(new Term("field", "value"))), null, null);
+        assertEquals(2, result.get(0).terms.get(0).count);
+        assertEquals(1, lucene.getFacetCountsCache().getHitCount());
+
+        lucene.facets(Arrays.asList(new FacetRequest("facet-field2", 10)), filterQueries, Arrays.asList(new String[] {"facet-field1"}, new String[] {"first0"}), null);
+        assertEquals(2, lucene.getFacetCountsCache().getMissCount());
+
+        Document doc = new Document();
+        doc.add(new StringField("field", "value", Store.NO));
+        doc.add(new FacetField("facet-field2", "second"));
+        lucene.addDocument("id3", doc);
+        lucene.commit();
+        result = lucene.facets(Arrays.asList(new FacetRequest("facet-field2", 10)), filterQueries, null, null);
+        assertEquals(3, result.get(0).terms.get(0).count);
+        assertEquals(1, lucene.getFacetCountsCache().getHitCount());
+
+        lucene.getSettings().facetCountsCacheSizeMB = 0;
+        lucene.facets(Arrays.asList(new FacetRequest("facet-field2", 10)), filterQueries, null, null);
+        assertEquals(1, lucene.getFacetCountsCache().getHitCount());
+        assertEquals(3, lucene.getFacetCountsCache().getMissCount());
+
+        lucene.getSettings().facetCountsCacheSizeMB = 1;
+        FixedBitSet keys = new FixedBitSet(1 << 20);
+        KeyFilter keyFilter = new KeyFilter(keys, "key");
+        assertEquals(keyFilter.hashCode(), new KeyFilter(keys.clone(), "key").hashCode());
+        lucene.facets(Arrays.asList(new FacetRequest("facet-field2", 10)), filterQueries, null, keyFilter);
+        assertTrue(lucene.getFacetCountsCache().ramBytesUsed() > keys.ramBytesUsed());
+    }
+
+    @Test
+    public void testDedupWithManyDuplicates() throws Throwable {
+        lucene.getSettings().commitCount = 100000;
+        for (int i = 0; i < 2000; i++) {
+            Document doc = new Document();
+            doc.add(new NumericDocValuesField("__key__", i / 100 + 1));
+            lucene.addDocument("id" + i, doc);
+        }
+        lucene.commit();
+        QueryData q = new QueryData();
+        q.query = new MatchAllDocsQuery();
+        q.dedupField = "__key__";
+        LuceneResponse result = lucene.executeQuery(q);
+        assertEquals(20, result.total);
+        assertEquals(Long.valueOf(2000), result.totalWithDuplicates);
+        assertEquals(10, result.hits.size());
+        Set<String> ids = new HashSet<>();
+        for (Hit hit : result.hits) {
+            ids.add(hit.id);
+            assertEquals(100, ((DedupHit) hit).duplicateCount);
+        }
+        assertEquals(10, ids.size());
+
+        q.start = 5;
+        LuceneResponse page = lucene.executeQuery(q);
+        assertEquals(5, page.hits.size());
+        for (int i = 0; i < 5; i++)
+            assertEquals(result.hits.get(i + 5).id, page.hits.get(i).id);
+    }
+
     @Test
     public void testClusteringOnVectors() throws Throwable {
         LuceneSettings settings = lucene.getSettings();
@@ -1117,6 +1452,70 @@ public class LuceneTest extends SeecrTestCase {
         assertEquals(10, response.hits.get(0).getFields("intField")[0].numericValue().intValue());
     }
 
+    @Test
+    public void testLoadStoredFieldsFromSeveralSegments() throws Throwable {
+        for (int i = 0; i < 30; i++) {
+            Document doc = new Document();
+            doc.add(new StoredField("fieldA", "a" + i));
+            doc.add(new StoredField("fieldB", "b" + i));
+            doc.add(new SortedDocValuesField("sort", new BytesRef(String.format("%02d", 30 - i))));
+            lucene.addDocument("id:" + i, doc);
+            if (i % 10 == 9)
+                lucene.commit();
+        }
+
+        QueryData q = new QueryData();
+        q.query = new MatchAllDocsQuery();
+        q.start = 5;
+        q.stop = 25;
+        q.sort = new Sort(new SortField("sort", SortField.Type.STRING));
+        q.storedFields = Arrays.asList("fieldA");
+        LuceneResponse response = lucene.executeQuery(q);
+        assertEquals(20, response.hits.size());
+        for (int i = 0; i < 20; i++) {
+            Hit hit = response.hits.get(i);
+            assertEquals("id:" + (24 - i), hit.id);
+            assertEquals(1, hit.fields.size());
+            assertEquals("a" + (24 - i), hit.getFields("fieldA")[0].stringValue());
+            assertEquals(null, hit.getFields("fieldB"));
+        }
+    }
+
+    @Test
+    public void testIdentifiersFromDocValues() throws Throwable {
+        lucene.addDocument("id:0", new Document());
+        lucene.getSettings().idDocValues = true;
+        lucene.addDocument("id:1", new Document());
+        lucene.addDocument("id:2", new Document());
+        LuceneResponse response = lucene.executeQuery(new MatchAllDocsQuery());
+        assertEquals(3, response.hits.size());
+        assertEquals(new HashSet<>(Arrays.asList("id:0", "id:1", "id:2")), response.hits.stream().map(h -> h.id).collect(Collectors.toSet()));
+    }
+
+    @Test
+    public void testLoadIdentifiersPrefersDocValues() throws Throwable {
+        try (FSDirectory directory = FSDirectory.open(tmpDir.resolve("plain"));
+                IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new MerescoStandardAnalyzer()))) {
+            Document doc = new Document();
+            doc.add(new StoredField(Lucene.ID_FIELD, "stored0"));
+            doc.add(new SortedDocValuesField(Lucene.ID_FIELD, new BytesRef("docValues0")));
+            writer.addDocument(doc);
+            doc = new Document();
+            doc.add(new StoredField(Lucene.ID_FIELD, "stored1"));
+            writer.addDocument(doc);
+            writer.commit();
+            doc = new Document();
+            doc.add(new StoredField(Lucene.ID_FIELD, "stored2"));
+            doc.add(new SortedDocValuesField(Lucene.ID_FIELD, new BytesRef("docValues2")));
+            writer.addDocument(doc);
+            try (DirectoryReader reader = DirectoryReader.open(writer)) {
+                assertEquals(2, reader.leaves().size());
+                String[] identifiers = Lucene.loadIdentifiers(reader, Arrays.asList(2, 0, 1, 0));
+                assertArrayEquals(new String[] {"docValues2", "docValues0", "stored1", "docValues0"}, identifiers);
+            }
+        }
+    }
+
     @Test
     public void testBoostQuery() throws Throwable {
         Document doc1 = new Document();
@@ -0,0 +1,109 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.json.JsonObject;
+
+import org.junit.Test;
+import org.meresco.lucene.Metrics.Histogram;
+import org.meresco.lucene.Metrics.Rate;
+
+public class MetricsTest {
+
+    @Test
+    public void testHistogram() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 100; i++)
+            histogram.record(i);
+        assertEquals(100, histogram.getCount());
+        assertEquals(100, histogram.getMax());
+        assertEquals(50, histogram.quantile(0.5));
+        assertEquals(100, histogram.quantile(0.95));
+        assertEquals(100, histogram.quantile(1.0));
+
+        JsonObject json = histogram.asJson();
+        assertEquals(5050, json.getInt("sum"));
+        assertEquals(1, json.getJsonObject("buckets").getInt("1"));
+        assertEquals(1, json.getJsonObject("buckets").getInt("2"));
+        assertEquals(3, json.getJsonObject("buckets").getInt("5"));
+        assertEquals(0, json.getJsonObject("buckets").getInt("+Inf"));
+    }
+
+    @Test
+    public void testHistogramBeyondLastBucket() {
+        Histogram histogram = new Histogram();
+        histogram.record(100000);
+        assertEquals(100000, histogram.quantile(0.5));
+        assertEquals(1, histogram.asJson().getJsonObject("buckets").getInt("+Inf"));
+    }
+
+    @Test
+    public void testRate() {
+        Rate rate = new Rate();
+        long now = 1000000;
+        for (int i = 0; i < 120; i++)
+            rate.mark(now + i * 5);
+        rate.mark(now + 1000);
+        assertEquals(121, rate.getCount());
+        assertEquals(120 / 60.0, rate.perSecond(now + 1500), 0);
+        assertEquals(121 / 60.0, rate.perSecond(now + 2000), 0);
+        assertEquals(0, rate.perSecond(now + 120000), 0);
+    }
+
+    @Test
+    public void testRateCountsAllMarksAcrossSecondRollovers() throws InterruptedException {
+        Rate rate = new Rate();
+        for (int second = 0; second < 60; second++)
+            rate.mark(second * 1000);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(new Thread(() -> {
+                for (int second = 60; second < 120; second++)
+                    for (int i = 0; i < 1000; i++)
+                        rate.mark(second * 1000 + i);
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads)
+            thread.join();
+        assertEquals(60 + 4 * 60 * 1000, rate.getCount());
+        assertEquals(4 * 1000, rate.perSecond(120000), 0);
+    }
+
+    @Test
+    public void testMetricsAsJson() {
+        Metrics metrics = new Metrics();
+        metrics.record("search", 3);
+        metrics.mark("queries");
+        JsonObject json = metrics.asJson();
+        assertEquals(1, json.getJsonObject("phases").getJsonObject("search").getInt("count"));
+        assertEquals(1, json.getJsonObject("rates").getJsonObject("queries").getInt("count"));
+    }
+}
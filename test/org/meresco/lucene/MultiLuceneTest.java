@@ -27,8 +27,11 @@
 package org.meresco.lucene;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -149,6 +152,50 @@ public class MultiLuceneTest extends SeecrTestCase {
         LuceneTest.compareHits(result, "A-M", "A-MU", "A-MQ", "A-MQU");
     }
 
+    @SuppressWarnings({ "unchecked", "serial", "rawtypes" })
+    @Test
+    public void testResponseCache() throws Throwable {
+        this.luceneA.getSettings().responseCacheSizeMB = 1;
+        ComposedQuery q = new ComposedQuery("coreA", new MatchAllDocsQuery());
+        q.setCoreQuery("coreB", new TermQuery(new Term("N", "true")));
+        q.addMatch("coreA", "coreB", "A", "B");
+        LuceneResponse result = this.multiLucene.executeComposedQuery(q);
+        assertEquals(4, result.total);
+        assertEquals(0, this.multiLucene.getResponseCache().getHitCount());
+        assertEquals(1, this.multiLucene.getResponseCache().getMissCount());
+
+        q = new ComposedQuery("coreA", new MatchAllDocsQuery());
+        q.setCoreQuery("coreB", new TermQuery(new Term("N", "true")));
+        q.addMatch("coreA", "coreB", "A", "B");
+        assertSame(result, this.multiLucene.executeComposedQuery(q));
+        assertEquals(1, this.multiLucene.getResponseCache().getHitCount());
+
+        LuceneTest.addDocument(this.luceneB, "B-N>A", new HashMap() {{this.put("B", 1);}}, new HashMap() {{this.put("N", "true");}});
+        q = new ComposedQuery("coreA", new MatchAllDocsQuery());
+        q.setCoreQuery("coreB", new TermQuery(new Term("N", "true")));
+        q.addMatch("coreA", "coreB", "A", "B");
+        assertEquals(5, this.multiLucene.executeComposedQuery(q).total);
+        assertEquals(2, this.multiLucene.getResponseCache().getMissCount());
+    }
+
+    @Test
+    public void testResponseCacheAfterSettingsUpdate() throws Throwable {
+        this.luceneA.getSettings().responseCacheSizeMB = 1;
+        LuceneResponse result = this.multiLucene.executeComposedQuery(joinQuery());
+        assertSame(result, this.multiLucene.executeComposedQuery(joinQuery()));
+
+        this.luceneB.getSettings().updateSettings(new StringReader("{\"commitCount\": 10}"));
+        assertNotSame(result, this.multiLucene.executeComposedQuery(joinQuery()));
+        assertEquals(2, this.multiLucene.getResponseCache().getMissCount());
+    }
+
+    private static ComposedQuery joinQuery() {
+        ComposedQuery q = new ComposedQuery("coreA", new MatchAllDocsQuery());
+        q.setCoreQuery("coreB", new TermQuery(new Term("N", "true")));
+        q.addMatch("coreA", "coreB", "A", "B");
+        return q;
+    }
+
     //    testMultipleJoinQueriesKeepsCachesWithinMaxSize
     @Test
     public void testJoinQueryWithFilters() throws Throwable {
@@ -196,6 +243,33 @@ public class MultiLuceneTest extends SeecrTestCase {
         assertEquals(1, result.drilldownData.get(1).terms.get(1).count);
     }
 
+    @Test
+    public void testJoinFacetCountsCache() throws Throwable {
+        ComposedQuery q = new ComposedQuery("coreA", new TermQuery(new Term("Q", "true")));
+        q.addFacet("coreB", new JsonQueryConverter.FacetRequest("cat_N", 10));
+        q.addMatch("coreA", "coreB", "A", "B");
+        LuceneResponse result = this.multiLucene.executeComposedQuery(q);
+        assertEquals(0, this.luceneB.getFacetCountsCache().getHitCount());
+        assertEquals(1, this.luceneB.getFacetCountsCache().getMissCount());
+
+        q = new ComposedQuery("coreA", new TermQuery(new Term("Q", "true")));
+        q.addFacet("coreB", new JsonQueryConverter.FacetRequest("cat_O", 10));
+        q.addMatch("coreA", "coreB", "A", "B");
+        LuceneResponse otherFacet = this.multiLucene.executeComposedQuery(q);
+        assertEquals(1, this.luceneB.getFacetCountsCache().getHitCount());
+        assertEquals("cat_N", result.drilldownData.get(0).fieldname);
+        assertEquals(2, result.drilldownData.get(0).terms.get(0).count);
+        assertEquals("cat_O", otherFacet.drilldownData.get(0).fieldname);
+        assertEquals(3, otherFacet.drilldownData.get(0).terms.get(0).count);
+
+        q = new ComposedQuery("coreA", new TermQuery(new Term("M", "true")));
+        q.addFacet("coreB", new JsonQueryConverter.FacetRequest("cat_O", 10));
+        q.addMatch("coreA", "coreB", "A", "B");
+        this.multiLucene.executeComposedQuery(q);
+        assertEquals(1, this.luceneB.getFacetCountsCache().getHitCount());
+        assertEquals(2, this.luceneB.getFacetCountsCache().getMissCount());
+    }
+
     @Test
     public void testJoinFacetWithDrilldownQueryFilters() throws Throwable {
         ComposedQuery q = new ComposedQuery("coreA");
@@ -0,0 +1,75 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+import org.meresco.lucene.LuceneResponse.Hit;
+
+public class ResponseCacheTest {
+
+    @Test
+    public void testGeneration() {
+        ResponseCache cache = new ResponseCache();
+        LuceneResponse response = new LuceneResponse(1);
+        assertNull(cache.get("key", 1));
+        cache.put("key", 1, response, 1024 * 1024);
+        assertSame(response, cache.get("key", 1));
+        assertNull(cache.get("key", 2));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.ramBytesUsed());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testBoundedByMemory() {
+        ResponseCache cache = new ResponseCache();
+        LuceneResponse response = new LuceneResponse(100);
+        for (int i = 0; i < 100; i++)
+            response.addHit(new Hit("identifier" + i, 1.0f));
+        long bytes = ResponseCache.ramBytesUsed(response);
+        assertTrue(bytes > 100 * 64);
+
+        cache.put("a", 1, response, 3 * bytes);
+        cache.put("b", 1, response, 3 * bytes);
+        cache.put("c", 1, response, 3 * bytes);
+        assertEquals(3, cache.size());
+        cache.get("a", 1);
+        cache.put("d", 1, response, 3 * bytes);
+        assertEquals(3, cache.size());
+        assertEquals(3 * bytes, cache.ramBytesUsed());
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.get("b", 1));
+        assertSame(response, cache.get("a", 1));
+
+        cache.put("e", 1, response, bytes - 1);
+        assertNull(cache.get("e", 1));
+    }
+}
@@ -28,8 +28,11 @@ package org.meresco.lucene;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -39,17 +42,23 @@ import org.apache.lucene.document.Field.Store;
 import org.apache.lucene.document.NumericDocValuesField;
 import org.apache.lucene.document.SortedDocValuesField;
 import org.apache.lucene.document.StringField;
+import org.apache.lucene.document.TextField;
 import org.apache.lucene.facet.FacetField;
 import org.apache.lucene.facet.FacetResult;
 import org.apache.lucene.facet.LabelAndValue;
 import org.apache.lucene.facet.taxonomy.DocValuesOrdinalsReader;
+import org.apache.lucene.index.Term;
 import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.ScoreDoc;
 import org.apache.lucene.search.Sort;
 import org.apache.lucene.search.SortField;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TotalHits;
 import org.apache.lucene.util.BytesRef;
 import org.junit.Test;
 import org.meresco.lucene.search.FacetSuperCollector;
+import org.meresco.lucene.search.IncrementalTopScoreDocSuperCollector;
 import org.meresco.lucene.search.MultiSuperCollector;
 import org.meresco.lucene.search.SuperCollector;
 import org.meresco.lucene.search.TopFieldSuperCollector;
@@ -226,6 +235,74 @@ public class SuperCollectorTest extends SeecrTestCase {
         assertEquals(0, C.score(2), 0);
     }
 
+    @Test
+    public void testSearchTopDocsWithSharedMinCompetitiveScore() throws Throwable {
+        LuceneSettings settings = new LuceneSettings();
+        settings.commitCount = 100000;
+        Lucene I = new Lucene(this.tmpDir, settings);
+        for (int i = 0; i < 20000; i++) {
+            Document doc = new Document();
+            doc.add(new TextField("text", String.join(" ", Collections.nCopies(i % 500 == 0 ? 50 : 1, "aap")) + " noot", Store.NO));
+            I.addDocument("id" + i, doc);
+            if (i % 5000 == 4999)
+                I.commit();
+        }
+        TermQuery Q = new TermQuery(new Term("text", "aap"));
+
+        TopScoreDocSuperCollector exact = new TopScoreDocSuperCollector(5);
+        I.search(Q, null, exact);
+        TopScoreDocSuperCollector shared = new TopScoreDocSuperCollector(5, 100);
+        I.search(Q, null, shared);
+
+        assertEquals(20000, exact.getTotalHits());
+        assertEquals(TotalHits.Relation.EQUAL_TO, exact.getTotalHitsRelation());
+        assertTrue(shared.getTotalHits() < 20000);
+        assertEquals(TotalHits.Relation.GREATER_THAN_OR_EQUAL_TO, shared.getTotalHitsRelation());
+        TopDocs exactTopDocs = exact.topDocs(0);
+        TopDocs sharedTopDocs = shared.topDocs(0);
+        assertEquals(5, sharedTopDocs.scoreDocs.length);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(exactTopDocs.scoreDocs[i].score, sharedTopDocs.scoreDocs[i].score, 0);
+        }
+        I.close();
+    }
+
+    @Test
+    public void testIncrementalTopDocs() throws Throwable {
+        LuceneSettings settings = new LuceneSettings();
+        settings.commitCount = 100000;
+        Lucene I = new Lucene(this.tmpDir, settings);
+        for (int i = 0; i < 10000; i++) {
+            Document doc = new Document();
+            doc.add(new TextField("text", String.join(" ", Collections.nCopies(i % 7 + 1, "aap")) + " noot", Store.NO));
+            I.addDocument("id" + i, doc);
+            if (i % 2500 == 2499)
+                I.commit();
+        }
+        TermQuery Q = new TermQuery(new Term("text", "aap"));
+
+        TopScoreDocSuperCollector exact = new TopScoreDocSuperCollector(50);
+        I.search(Q, null, exact);
+        IncrementalTopScoreDocSuperCollector incremental = new IncrementalTopScoreDocSuperCollector(5, 50);
+        I.search(Q, null, incremental);
+
+        assertEquals(10000, incremental.getTotalHits());
+        ScoreDoc[] expected = exact.topDocs(0).scoreDocs;
+        assertEquals(5, incremental.topDocs(0).scoreDocs.length);
+        for (int depth : new int[] {5, 20, 50}) {
+            assertTrue(incremental.grow(depth));
+            ScoreDoc[] scoreDocs = incremental.topDocs(0).scoreDocs;
+            assertEquals(depth, scoreDocs.length);
+            for (int i = 0; i < depth; i++) {
+                assertEquals(expected[i].doc, scoreDocs[i].doc);
+                assertEquals(expected[i].score, scoreDocs[i].score, 0);
+            }
+        }
+        assertEquals(40, incremental.topDocs(10).scoreDocs.length);
+        assertFalse(incremental.grow(51));
+        I.close();
+    }
+
     private Document document(String name, String price) {
         Document doc = new Document();
         doc.add(new StringField("name", name, Store.NO));
@@ -27,23 +27,39 @@
 package org.meresco.lucene;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.StringField;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexWriterConfig;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.MatchAllDocsQuery;
+import org.apache.lucene.search.ScoreMode;
+import org.apache.lucene.search.TermQuery;
 import org.apache.lucene.store.Directory;
 import org.apache.lucene.store.SimpleFSDirectory;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.meresco.lucene.analysis.MerescoStandardAnalyzer;
+import org.meresco.lucene.search.MultiSuperCollector;
+import org.meresco.lucene.search.SubCollector;
+import org.meresco.lucene.search.SuperCollector;
 import org.meresco.lucene.search.SuperIndexSearcher;
+import org.meresco.lucene.search.SuperIndexSearcher.LeafPartition;
+import org.meresco.lucene.search.TopScoreDocSuperCollector;
+import org.meresco.lucene.search.TotalHitCountSuperCollector;
 import org.meresco.lucene.test.DummyIndexReader;
 
 public class SuperIndexSearcherTest extends SeecrTestCase {
@@ -149,4 +165,202 @@ public class SuperIndexSearcherTest extends SeecrTestCase {
         assertEquals(0, this.sis.find_smallest_slice_test(new int[] {1, 1, 1, 1, 1}));
         assertEquals(4, this.sis.find_smallest_slice_test(new int[] {2, 1, 1, 1, 0}));
     }
+
+    @Test
+    public void testPartitionLeavesSplitsLargeSegment() {
+        List<LeafReaderContext> contexts = new ArrayList<LeafReaderContext>();
+        contexts.add(DummyIndexReader.dummyIndexReader(100).getContext());
+        List<List<LeafPartition>> result = this.sis.partition_leaves_test(contexts, 5, 2, 1);
+        assertEquals(10, result.size());
+        int expectedMin = 0;
+        for (List<LeafPartition> slice : result) {
+            assertEquals(1, slice.size());
+            assertEquals(expectedMin, slice.get(0).minDoc);
+            assertEquals(expectedMin + 10, slice.get(0).maxDoc);
+            expectedMin += 10;
+        }
+    }
+
+    @Test
+    public void testPartitionLeavesGroupsSmallSegments() {
+        List<LeafReaderContext> contexts = new ArrayList<LeafReaderContext>();
+        contexts.add(DummyIndexReader.dummyIndexReader(70).getContext());
+        contexts.add(DummyIndexReader.dummyIndexReader(10).getContext());
+        contexts.add(DummyIndexReader.dummyIndexReader(10).getContext());
+        contexts.add(DummyIndexReader.dummyIndexReader(10).getContext());
+        List<List<LeafPartition>> result = this.sis.partition_leaves_test(contexts, 2, 2, 1);
+        assertEquals(5, result.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals(1, result.get(i).size());
+            assertEquals(i * 24, result.get(i).get(0).minDoc);
+            assertEquals(Math.min(70, (i + 1) * 24), result.get(i).get(0).maxDoc);
+        }
+        assertEquals(2, result.get(3).size());
+        assertEquals(1, result.get(4).size());
+    }
+
+    @Test
+    public void testPartitionLeavesRespectsMinimumSize() {
+        List<LeafReaderContext> contexts = new ArrayList<LeafReaderContext>();
+        contexts.add(DummyIndexReader.dummyIndexReader(100).getContext());
+        List<List<LeafPartition>> result = this.sis.partition_leaves_test(contexts, 5, 2, 1000);
+        assertEquals(1, result.size());
+        assertEquals(0, result.get(0).get(0).minDoc);
+        assertEquals(100, result.get(0).get(0).maxDoc);
+    }
+
+    @Test
+    public void testPartitionLeavesWithoutLeaves() {
+        List<List<LeafPartition>> result = this.sis.partition_leaves_test(new ArrayList<LeafReaderContext>(), 5, 2, 1);
+        assertEquals(1, result.size());
+        assertEquals(0, result.get(0).size());
+    }
+
+    @Test
+    public void testSearchWithPartitionedSegment() throws Throwable {
+        for (int i = 0; i < 5000; i++) {
+            Document doc = new Document();
+            doc.add(new StringField("field", i % 3 == 0 ? "three" : "other", Store.NO));
+            this.writer.addDocument(doc);
+        }
+        this.writer.forceMerge(1);
+        DirectoryReader reader = DirectoryReader.open(this.writer, true, true);
+        try {
+            assertEquals(1, reader.leaves().size());
+            SuperIndexSearcher searcher = new SuperIndexSearcher(reader, this.executor, 2, 2);
+            assertEquals(4, searcher.numberOfSlices());
+
+            TotalHitCountSuperCollector countCollector = new TotalHitCountSuperCollector();
+            searcher.search(new MatchAllDocsQuery(), countCollector);
+            assertEquals(5000, countCollector.getTotalHits());
+
+            countCollector = new TotalHitCountSuperCollector();
+            TopScoreDocSuperCollector topCollector = new TopScoreDocSuperCollector(10);
+            searcher.search(new TermQuery(new Term("field", "three")), new MultiSuperCollector(countCollector, topCollector));
+            assertEquals(1667, countCollector.getTotalHits());
+            assertEquals(1667, topCollector.getTotalHits());
+            assertEquals(10, topCollector.topDocs(0).scoreDocs.length);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testSearchWithTimeout() throws Throwable {
+        for (int i = 0; i < 5000; i++) {
+            Document doc = new Document();
+            doc.add(new StringField("field", "value", Store.NO));
+            this.writer.addDocument(doc);
+        }
+        this.writer.forceMerge(1);
+        DirectoryReader reader = DirectoryReader.open(this.writer, true, true);
+        try {
+            SuperIndexSearcher searcher = new SuperIndexSearcher(reader, this.executor, 2, 2);
+            assertEquals(4, searcher.numberOfSlices());
+
+            TotalHitCountSuperCollector countCollector = new TotalHitCountSuperCollector();
+            assertTrue(searcher.search(new TermQuery(new Term("field", "value")), countCollector, () -> false));
+            assertEquals(5000, countCollector.getTotalHits());
+
+            countCollector = new TotalHitCountSuperCollector();
+            assertFalse(searcher.search(new TermQuery(new Term("field", "value")), countCollector, () -> true));
+            assertEquals(0, countCollector.getTotalHits());
+
+            AtomicInteger checks = new AtomicInteger();
+            countCollector = new TotalHitCountSuperCollector();
+            assertFalse(searcher.search(new TermQuery(new Term("field", "value")), countCollector, () -> checks.incrementAndGet() > 4));
+            assertTrue(countCollector.getTotalHits() > 0);
+            assertTrue(countCollector.getTotalHits() < 5000);
+        } finally {
+            reader.close();
+        }
+    }
+
+    @Test
+    public void testCountFromIndexStatistics() throws Throwable {
+        for (int i = 0; i < 5000; i++) {
+            Document doc = new Document();
+            doc.add(new StringField("field", i % 3 == 0 ? "three" : "other", Store.NO));
+            doc.add(new StringField("id", "" + i, Store.NO));
+            this.writer.addDocument(doc);
+        }
+        this.writer.forceMerge(1);
+        DirectoryReader reader = DirectoryReader.open(this.writer, true, true);
+        try {
+            SuperIndexSearcher searcher = new SuperIndexSearcher(reader, this.executor, 1);
+            CountOnlySuperCollector collector = new CountOnlySuperCollector();
+            searcher.search(new TermQuery(new Term("field", "three")), collector);
+            assertEquals(1667, collector.counted.get());
+            assertEquals(0, collector.collected.get());
+
+            SuperIndexSearcher partitionedSearcher = new SuperIndexSearcher(reader, this.executor, 2, 2);
+            collector = new CountOnlySuperCollector();
+            partitionedSearcher.search(new MatchAllDocsQuery(), collector);
+            assertEquals(5000, collector.counted.get());
+            assertEquals(0, collector.collected.get());
+
+            collector = new CountOnlySuperCollector();
+            partitionedSearcher.search(new TermQuery(new Term("field", "three")), collector);
+            assertEquals(0, collector.counted.get());
+            assertEquals(1667, collector.collected.get());
+        } finally {
+            reader.close();
+        }
+
+        this.writer.deleteDocuments(new Term("id", "0"));
+        reader = DirectoryReader.open(this.writer, true, true);
+        try {
+            SuperIndexSearcher searcher = new SuperIndexSearcher(reader, this.executor, 1);
+            CountOnlySuperCollector collector = new CountOnlySuperCollector();
+            searcher.search(new MatchAllDocsQuery(), collector);
+            assertEquals(4999, collector.counted.get());
+            assertEquals(0, collector.collected.get());
+
+            collector = new CountOnlySuperCollector();
+            searcher.search(new TermQuery(new Term("field", "three")), collector);
+            assertEquals(0, collector.counted.get());
+            assertEquals(1666, collector.collected.get());
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static class CountOnlySuperCollector extends SuperCollector<SubCollector> {
+        AtomicInteger counted = new AtomicInteger();
+        AtomicInteger collected = new AtomicInteger();
+
+        @Override
+        protected SubCollector createSubCollector() {
+            return new SubCollector() {
+                @Override
+                public void collect(int doc) {
+                    collected.incrementAndGet();
+                }
+
+                @Override
+                public boolean countOnly() {
+                    return true;
+                }
+
+                @Override
+                public boolean addCount(int count) {
+                    counted.addAndGet(count);
+                    return true;
+                }
+
+                @Override
+                public void complete() {
+                }
+
+                @Override
+                public ScoreMode scoreMode() {
+                    return ScoreMode.COMPLETE_NO_SCORES;
+                }
+            };
+        }
+
+        @Override
+        public void complete() {
+        }
+    }
 }
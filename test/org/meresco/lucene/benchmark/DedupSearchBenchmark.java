@@ -0,0 +1,151 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene.benchmark;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.lucene.document.Document;
+import org.apache.lucene.document.Field.Store;
+import org.apache.lucene.document.NumericDocValuesField;
+import org.apache.lucene.document.TextField;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.IndexWriterConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.store.FSDirectory;
+import org.meresco.lucene.TestUtils;
+import org.meresco.lucene.analysis.MerescoStandardAnalyzer;
+import org.meresco.lucene.search.DeDupFilterSuperCollector;
+import org.meresco.lucene.search.IncrementalTopScoreDocSuperCollector;
+import org.meresco.lucene.search.SuperIndexSearcher;
+import org.meresco.lucene.search.TopDocSuperCollector;
+import org.meresco.lucene.search.TopScoreDocSuperCollector;
+
+/**
+ * Compares the dedup page loop that searches again with a ten times deeper
+ * top collector against one search with an IncrementalTopScoreDocSuperCollector.
+ *
+ * Usage: DedupSearchBenchmark [numberOfDocs [duplicatesPerKey [iterations]]]
+ */
+public class DedupSearchBenchmark {
+    private static final int MORE_RECORDS = 100;
+    private static final int STOP = 10;
+
+    public static void main(String[] args) throws Throwable {
+        int numberOfDocs = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+        int duplicatesPerKey = args.length > 1 ? Integer.parseInt(args[1]) : 500;
+        int iterations = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+
+        File tmpDir = TestUtils.createTempDirectory();
+        ExecutorService executor = Executors.newFixedThreadPool(10);
+        try (FSDirectory directory = FSDirectory.open(tmpDir.toPath());
+                IndexWriter writer = new IndexWriter(directory, new IndexWriterConfig(new MerescoStandardAnalyzer()))) {
+            for (int i = 0; i < numberOfDocs; i++) {
+                Document doc = new Document();
+                doc.add(new TextField("text", String.join(" ", Collections.nCopies(i % 13 + 1, "aap")) + " noot", Store.NO));
+                doc.add(new NumericDocValuesField("__key__", (i % 13) * numberOfDocs + i / duplicatesPerKey + 1));
+                writer.addDocument(doc);
+            }
+            writer.commit();
+            try (DirectoryReader reader = DirectoryReader.open(writer)) {
+                SuperIndexSearcher searcher = new SuperIndexSearcher(reader, executor, 10);
+                Query query = new TermQuery(new Term("text", "aap"));
+                System.out.println(String.format("%d docs, %d duplicates per key, %d iterations", numberOfDocs, duplicatesPerKey, iterations));
+                for (int round = 0; round < 2; round++) {
+                    // First round is warm up.
+                    long[] research = new long[iterations];
+                    long[] incremental = new long[iterations];
+                    int[] searches = new int[1];
+                    for (int i = 0; i < iterations; i++) {
+                        long t0 = System.nanoTime();
+                        searches[0] = dedupPage(searcher, query, false);
+                        research[i] = System.nanoTime() - t0;
+                        t0 = System.nanoTime();
+                        dedupPage(searcher, query, true);
+                        incremental[i] = System.nanoTime() - t0;
+                    }
+                    if (round > 0) {
+                        report("re-search (" + searches[0] + " searches)", research);
+                        report("incremental (1 search)", incremental);
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+            TestUtils.deleteDirectory(tmpDir);
+        }
+    }
+
+    private static int dedupPage(SuperIndexSearcher searcher, Query query, boolean incremental) throws Throwable {
+        int searches = 0;
+        int topCollectorStop = STOP;
+        int maxTopCollectorStop = STOP;
+        while (maxTopCollectorStop * 10 <= 10000)
+            maxTopCollectorStop *= 10;
+        TopDocSuperCollector topCollector = null;
+        DeDupFilterSuperCollector dedupCollector = null;
+        boolean needsSearch = true;
+        while (true) {
+            if (needsSearch) {
+                if (incremental)
+                    topCollector = new IncrementalTopScoreDocSuperCollector(topCollectorStop + MORE_RECORDS, maxTopCollectorStop + MORE_RECORDS);
+                else
+                    topCollector = new TopScoreDocSuperCollector(topCollectorStop + MORE_RECORDS);
+                dedupCollector = new DeDupFilterSuperCollector("__key__", null, topCollector);
+                searcher.search(query, dedupCollector);
+                searches++;
+            }
+            Set<Long> seen = new HashSet<>();
+            for (ScoreDoc scoreDoc : topCollector.topDocs(0).scoreDocs) {
+                DeDupFilterSuperCollector.Key key = dedupCollector.keyForDocId(scoreDoc.doc);
+                seen.add(key == null ? -scoreDoc.doc : key.getDeDupKey());
+                if (seen.size() >= STOP)
+                    break;
+            }
+            if (seen.size() >= STOP || topCollectorStop + MORE_RECORDS >= topCollector.getTotalHits())
+                return searches;
+            topCollectorStop *= 10;
+            if (topCollectorStop > 10000)
+                return searches;
+            needsSearch = !topCollector.grow(topCollectorStop + MORE_RECORDS);
+        }
+    }
+
+    private static void report(String name, long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        System.out.println(String.format("%-28s median %8.2f ms, p90 %8.2f ms",
+                name, sorted[sorted.length / 2] / 1e6, sorted[(int) (sorted.length * 0.9)] / 1e6));
+    }
+}
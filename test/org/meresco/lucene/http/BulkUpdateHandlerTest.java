@@ -0,0 +1,133 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene.http;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.json.Json;
+
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.TermQuery;
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.ContextHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.meresco.lucene.BulkUpdate;
+import org.meresco.lucene.DocumentStreamConverter;
+import org.meresco.lucene.Lucene;
+import org.meresco.lucene.LuceneSettings;
+import org.meresco.lucene.OutOfMemoryShutdown;
+import org.meresco.lucene.SeecrTestCase;
+import org.meresco.lucene.numerate.TermNumerator;
+
+public class BulkUpdateHandlerTest extends SeecrTestCase {
+    private Lucene lucene;
+    private TermNumerator termNumerator;
+    private Server server;
+
+    @Override
+    @Before
+    public void setUp() throws Exception {
+        super.setUp();
+        lucene = new Lucene(this.tmpDir.resolve("lucene"), new LuceneSettings());
+        termNumerator = new TermNumerator(this.tmpDir.resolve("keys"));
+        server = new Server(0);
+        ContextHandler context = new ContextHandler("/core/bulkUpdate");
+        context.setHandler(new BulkUpdateHandler(lucene, new DocumentStreamConverter(termNumerator), new OutOfMemoryShutdown() {
+            @Override
+            public void shutdown() {}
+        }));
+        server.setHandler(context);
+        server.start();
+    }
+
+    @Override
+    @After
+    public void tearDown() throws Exception {
+        server.stop();
+        lucene.close();
+        termNumerator.close();
+        super.tearDown();
+    }
+
+    @Test
+    public void testNonAsciiIsReadAndWrittenAsUtf8() throws Throwable {
+        String updates =
+            "{\"identifier\": \"idé\", \"document\": [{\"type\": \"StringField\", \"name\": \"field\", \"value\": \"ünïcødé\"}]}\n" +
+            "{\"identifier\": \"idë\"}\n";
+        List<String> statuses = post(updates);
+        assertEquals(2, statuses.size());
+        assertEquals("idë", Json.createReader(new StringReader(statuses.get(0))).readObject().getString("identifier"));
+        assertEquals("{\"updates\":2,\"failures\":1}", statuses.get(1));
+        lucene.commit();
+        assertEquals(1, lucene.executeQuery(new TermQuery(new Term("field", "ünïcødé"))).total);
+    }
+
+    @Test(timeout=60000)
+    public void testWholeBodySentBeforeReadingResponse() throws Throwable {
+        // Statuses for each of these would be far more than the socket buffers hold.
+        StringBuilder updates = new StringBuilder();
+        String padding = new String(new char[200]).replace('\0', 'x');
+        int count = 100000;
+        for (int i = 0; i < count; i++) {
+            updates.append("{\"identifier\": \"" + padding + i + "\"}\n");
+        }
+        List<String> statuses = post(updates.toString());
+        assertEquals(BulkUpdate.MAX_REPORTED_FAILURES + 1, statuses.size());
+        assertEquals("{\"updates\":" + count + ",\"failures\":" + count + "}", statuses.get(statuses.size() - 1));
+    }
+
+    private List<String> post(String body) throws Exception {
+        int port = ((ServerConnector) server.getConnectors()[0]).getLocalPort();
+        HttpURLConnection connection = (HttpURLConnection) new URL("http://localhost:" + port + "/core/bulkUpdate/").openConnection();
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "application/x-ndjson");
+        connection.setDoOutput(true);
+        connection.setChunkedStreamingMode(8192);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(body.getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(200, connection.getResponseCode());
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = in.readLine()) != null)
+                lines.add(line);
+        }
+        return lines;
+    }
+}
@@ -29,6 +29,13 @@ package org.meresco.lucene.numerate;
 import static org.junit.Assert.*;
 
 import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Test;
 import org.meresco.lucene.SeecrTestCase;
@@ -68,4 +75,136 @@ public class TermNumeratorTest extends SeecrTestCase {
         }
     }
 
+    @Test
+    public void testInMemory() throws IOException {
+        TermNumerator numerator = new TermNumerator(this.tmpDir, true);
+        assertEquals(1, numerator.numerateTerm("string1"));
+        assertEquals(2, numerator.numerateTerm("string2"));
+        assertEquals(1, numerator.numerateTerm("string1"));
+        assertEquals("string2", numerator.getTerm(2));
+        try {
+            numerator.numerateTerm("");
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void testInMemoryWrittenOnClose() throws IOException {
+        TermNumerator numerator = new TermNumerator(this.tmpDir, true);
+        numerator.numerateTerm("one");
+        numerator.numerateTerm("two");
+        numerator.close();
+        assertTrue(Files.exists(this.tmpDir.resolve(TermNumerator.ORDINALS_FILE)));
+
+        numerator = new TermNumerator(this.tmpDir, true);
+        assertEquals(2, numerator.numerateTerm("two"));
+        assertEquals(1, numerator.numerateTerm("one"));
+        assertEquals(3, numerator.numerateTerm("three"));
+        numerator.close();
+    }
+
+    @Test
+    public void testInMemoryRebuiltFromTaxonomy() throws IOException {
+        TermNumerator numerator = new TermNumerator(this.tmpDir);
+        numerator.numerateTerm("one");
+        numerator.numerateTerm("a/b\u001fc");
+        numerator.close();
+
+        numerator = new TermNumerator(this.tmpDir, true);
+        assertEquals(2, numerator.numerateTerm("a/b\u001fc"));
+        assertEquals(1, numerator.numerateTerm("one"));
+        numerator.close();
+    }
+
+    @Test
+    public void testInMemoryCatchesUpWithTaxonomy() throws IOException {
+        TermNumerator numerator = new TermNumerator(this.tmpDir, true);
+        numerator.numerateTerm("one");
+        numerator.close();
+        numerator = new TermNumerator(this.tmpDir);
+        numerator.numerateTerm("two");
+        numerator.close();
+
+        numerator = new TermNumerator(this.tmpDir, true);
+        assertEquals(2, numerator.numerateTerm("two"));
+        assertEquals(3, numerator.numerateTerm("three"));
+        numerator.close();
+    }
+
+    @Test
+    public void testInMemoryIgnoresMapOfOtherTaxonomy() throws IOException {
+        TermNumerator numerator = new TermNumerator(this.tmpDir.resolve("other"), true);
+        numerator.numerateTerm("one");
+        numerator.numerateTerm("two");
+        numerator.close();
+        numerator = new TermNumerator(this.tmpDir.resolve("this"));
+        numerator.numerateTerm("two");
+        numerator.numerateTerm("one");
+        numerator.close();
+        Files.copy(this.tmpDir.resolve("other").resolve(TermNumerator.ORDINALS_FILE), this.tmpDir.resolve("this").resolve(TermNumerator.ORDINALS_FILE));
+
+        numerator = new TermNumerator(this.tmpDir.resolve("this"), true);
+        assertEquals(1, numerator.numerateTerm("two"));
+        assertEquals(2, numerator.numerateTerm("one"));
+        numerator.close();
+    }
+
+    @Test
+    public void testGetTerms() throws IOException {
+        TermNumerator numerator = new TermNumerator(this.tmpDir);
+        numerator.numerateTerm("one");
+        numerator.numerateTerm("twee");
+        numerator.commit();
+        numerator.numerateTerm("drie\u00eb");
+        assertArrayEquals(new String[] {"twee", "one", "drie\u00eb", "one"}, numerator.getTerms(new int[] {2, 1, 3, 1}));
+        assertArrayEquals(new String[] {null, null}, numerator.getTerms(new int[] {0, 4}));
+        assertNull(numerator.getTerm(4));
+        numerator.close();
+    }
+
+    @Test
+    public void testGetTermsAcrossPages() throws IOException {
+        TermNumerator numerator = new TermNumerator(this.tmpDir);
+        char[] chars = new char[8000];
+        Arrays.fill(chars, '\u00eb');
+        String large = new String(chars);
+        int[] ordinals = new int[20000];
+        String[] expected = new String[ordinals.length];
+        for (int i = 0; i < ordinals.length; i++) {
+            expected[i] = i % 1000 == 0 ? large + i : "term" + i;
+            ordinals[i] = numerator.numerateTerm(expected[i]);
+            if (i % 3000 == 0)
+                numerator.commit();
+        }
+        assertArrayEquals(expected, numerator.getTerms(ordinals));
+        numerator.close();
+    }
+
+    @Test
+    public void testGetTermConcurrently() throws Exception {
+        final TermNumerator numerator = new TermNumerator(this.tmpDir);
+        for (int i = 0; i < 1000; i++)
+            numerator.numerateTerm("term" + i);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 1000; i++)
+                        assertEquals("term" + i, numerator.getTerm(i + 1));
+                    return null;
+                }));
+            }
+            for (int i = 1000; i < 2000; i++)
+                numerator.numerateTerm("term" + i);
+            numerator.commit();
+            for (Future<Void> f : futures)
+                f.get();
+            assertEquals("term1999", numerator.getTerm(2000));
+        } finally {
+            executor.shutdown();
+        }
+        numerator.close();
+    }
 }
@@ -0,0 +1,106 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene.numerate;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.lucene.facet.taxonomy.FacetLabel;
+import org.junit.Test;
+import org.meresco.lucene.SeecrTestCase;
+
+public class TermOrdinalMapTest extends SeecrTestCase {
+
+    @Test
+    public void testGetAndPut() {
+        TermOrdinalMap map = new TermOrdinalMap(10);
+        assertEquals(-1, map.get("one"));
+        map.put("one", 1);
+        map.put("two", 2);
+        map.put("one", 1);
+        assertEquals(1, map.get("one"));
+        assertEquals(2, map.get("two"));
+        assertEquals(-1, map.get("three"));
+        assertEquals(2, map.size());
+        assertEquals(2, map.maxOrdinal());
+    }
+
+    @Test
+    public void testGrow() {
+        TermOrdinalMap map = new TermOrdinalMap(0);
+        for (int i = 1; i <= 100000; i++)
+            map.put("term" + i, i);
+        assertEquals(100000, map.size());
+        for (int i = 1; i <= 100000; i++)
+            assertEquals(i, map.get("term" + i));
+        assertEquals(-1, map.get("term0"));
+    }
+
+    @Test
+    public void testWriteAndRead() throws IOException {
+        Path path = this.tmpDir.resolve("map");
+        TermOrdinalMap map = new TermOrdinalMap(10);
+        for (int i = 1; i <= 5000; i++)
+            map.put("term" + i, i);
+        map.write(path);
+
+        TermOrdinalMap read = TermOrdinalMap.read(path, 0);
+        assertEquals(5000, read.size());
+        assertEquals(5000, read.maxOrdinal());
+        for (int i = 1; i <= 5000; i++)
+            assertEquals(i, read.get("term" + i));
+        assertFalse(Files.exists(this.tmpDir.resolve("map.tmp")));
+    }
+
+    @Test
+    public void testReadMissingOrCorrupt() throws IOException {
+        Path path = this.tmpDir.resolve("map");
+        assertNull(TermOrdinalMap.read(path, 0));
+        Files.write(path, new byte[] {1, 2, 3});
+        assertNull(TermOrdinalMap.read(path, 0));
+    }
+
+    @Test
+    public void testAsTaxonomyWriterCache() {
+        TermOrdinalMap map = new TermOrdinalMap(10);
+        assertFalse(map.put(new FacetLabel(), 0));
+        assertFalse(map.put(new FacetLabel("one"), 1));
+        assertEquals(0, map.get(new FacetLabel()));
+        assertEquals(1, map.get(new FacetLabel("one")));
+        assertEquals(1, map.get("one"));
+        assertFalse(map.isFull());
+        try {
+            map.get(new FacetLabel("a", "b"));
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+        map.clear();
+        assertEquals(0, map.size());
+        assertEquals(-1, map.get("one"));
+    }
+}
@@ -0,0 +1,97 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class FacetCountsCacheTest {
+
+    @Test
+    public void testGenerationAndTaxonomySize() {
+        FacetCountsCache cache = new FacetCountsCache();
+        OrdinalCounts counts = new OrdinalCounts(10);
+        assertNull(cache.get("key", 1, 10));
+        assertTrue(cache.put("key", 1, 10, counts, 1024));
+        assertSame(counts, cache.get("key", 1, 10));
+        assertNull(cache.get("key", 1, 11));
+        assertEquals(0, cache.size());
+        cache.put("key", 1, 10, counts, 1024);
+        assertNull(cache.get("key", 2, 10));
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.ramBytesUsed());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    public void testBoundedByMemory() {
+        FacetCountsCache cache = new FacetCountsCache();
+        OrdinalCounts counts = new OrdinalCounts(100);
+        long bytes = counts.ramBytesUsed();
+        assertTrue(bytes > 400);
+
+        cache.put("a", 1, 100, counts, 3 * bytes);
+        cache.put("b", 1, 100, counts, 3 * bytes);
+        cache.put("c", 1, 100, counts, 3 * bytes);
+        cache.get("a", 1, 100);
+        cache.put("d", 1, 100, counts, 3 * bytes);
+        assertEquals(3, cache.size());
+        assertEquals(3 * bytes, cache.ramBytesUsed());
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.get("b", 1, 100));
+        assertSame(counts, cache.get("a", 1, 100));
+
+        assertFalse(cache.put("e", 1, 100, counts, bytes - 1));
+        assertNull(cache.get("e", 1, 100));
+    }
+
+    @Test
+    public void testKeyBytesAreAccountedFor() {
+        FacetCountsCache cache = new FacetCountsCache();
+        OrdinalCounts counts = new OrdinalCounts(100);
+        long bytes = counts.ramBytesUsed();
+
+        assertTrue(cache.put("a", 1000, 1, 100, counts, 10000));
+        assertEquals(1000 + bytes, cache.ramBytesUsed());
+        assertTrue(cache.put("a", 2000, 1, 100, counts, 10000));
+        assertEquals(2000 + bytes, cache.ramBytesUsed());
+        assertFalse(cache.put("b", 10000, 1, 100, counts, 10000));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testSparseCountsTakeLessMemory() {
+        OrdinalCounts sparse = new OrdinalCounts(1 << 20);
+        sparse.increment(5);
+        assertTrue(sparse.ramBytesUsed() < 1024);
+        assertTrue(new OrdinalCounts(1 << 16).ramBytesUsed() > 4 << 16);
+    }
+}
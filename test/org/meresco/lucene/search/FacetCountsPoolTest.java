@@ -0,0 +1,119 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene.search;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+import org.meresco.lucene.search.FacetCountsPool.CountArray;
+
+public class FacetCountsPoolTest {
+
+    @Test
+    public void testReuseClearsTouchedOrdinals() {
+        FacetCountsPool pool = new FacetCountsPool(1024 * 1024);
+        CountArray array = pool.acquire(100);
+        array.add(3, 2);
+        array.add(3, 1);
+        array.add(99, 1);
+        pool.release(array);
+        assertEquals(400 + 4 * 12, pool.idleBytes());
+
+        CountArray again = pool.acquire(100);
+        assertSame(array, again);
+        assertArrayEquals(new int[100], again.values);
+        assertEquals(0, pool.idleBytes());
+    }
+
+    @Test
+    public void testReuseClearsAllWhenTooManyTouched() {
+        FacetCountsPool pool = new FacetCountsPool(1024 * 1024);
+        CountArray array = pool.acquire(100);
+        for (int ord = 0; ord < 50; ord++)
+            array.add(ord, 1);
+        pool.release(array);
+        assertArrayEquals(new int[100], pool.acquire(100).values);
+    }
+
+    @Test
+    public void testAddAllVisitsTouchedOrdinals() {
+        FacetCountsPool pool = new FacetCountsPool(1024 * 1024);
+        CountArray a = pool.acquire(10);
+        CountArray b = pool.acquire(10);
+        a.add(1, 1);
+        b.add(1, 2);
+        b.add(7, 3);
+        a.addAll(b);
+        assertArrayEquals(new int[] {0, 3, 0, 0, 0, 0, 0, 3, 0, 0}, a.values);
+        pool.release(a);
+        assertArrayEquals(new int[10], pool.acquire(10).values);
+    }
+
+    @Test
+    public void testNewTaxonomySizeDropsIdleArrays() {
+        FacetCountsPool pool = new FacetCountsPool(1024 * 1024);
+        CountArray array = pool.acquire(100);
+        pool.release(array);
+        assertNotSame(array, pool.acquire(101));
+        assertEquals(0, pool.idleBytes());
+        pool.release(array);
+        assertEquals(0, pool.idleBytes());
+    }
+
+    @Test
+    public void testBoundedByMaxBytes() {
+        FacetCountsPool pool = new FacetCountsPool(1000);
+        CountArray a = pool.acquire(100);
+        CountArray b = pool.acquire(100);
+        CountArray c = pool.acquire(100);
+        pool.release(a);
+        pool.release(b);
+        pool.release(c);
+        assertEquals(2 * (400 + 4 * 12), pool.idleBytes());
+        pool.setMaxBytes(500);
+        assertEquals(400 + 4 * 12, pool.idleBytes());
+    }
+
+    @Test
+    public void testOrdinalCountsReturnArraysToPool() {
+        FacetCountsPool pool = new FacetCountsPool(1024 * 1024);
+        OrdinalCounts counts = new OrdinalCounts(100, pool);
+        counts.increment(5);
+        OrdinalCounts other = new OrdinalCounts(100, pool);
+        other.increment(5);
+        other.increment(6);
+        counts.addAll(other);
+        other.release();
+        assertEquals(2, counts.get(5));
+        assertEquals(1, counts.get(6));
+        counts.release();
+
+        OrdinalCounts reused = new OrdinalCounts(100, pool);
+        assertArrayEquals(new int[100], reused.toArray());
+    }
+}
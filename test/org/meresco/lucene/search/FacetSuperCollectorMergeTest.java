@@ -0,0 +1,90 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene.search;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.facet.taxonomy.DocValuesOrdinalsReader;
+import org.apache.lucene.facet.taxonomy.FacetLabel;
+import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyReader;
+import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyWriter;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.junit.Test;
+
+public class FacetSuperCollectorMergeTest {
+
+    @Test
+    public void testMergeRanges() throws Exception {
+        FacetSuperCollector collector = new FacetSuperCollector(null, new FacetsConfig(), new DocValuesOrdinalsReader());
+        assertEquals(1, collector.mergeRanges(1 << 20));
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            collector.setExecutor(executor, 6);
+            assertEquals(1, collector.mergeRanges(FacetSuperCollector.MIN_MERGE_RANGE));
+            assertEquals(3, collector.mergeRanges(3 * FacetSuperCollector.MIN_MERGE_RANGE + 1));
+            assertEquals(6, collector.mergeRanges(1 << 20));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testMergeDenseCountsInRanges() throws Exception {
+        Directory directory = new ByteBuffersDirectory();
+        DirectoryTaxonomyWriter writer = new DirectoryTaxonomyWriter(directory);
+        writer.addCategory(new FacetLabel("flat", "x"));
+        writer.close();
+        DirectoryTaxonomyReader taxoReader = new DirectoryTaxonomyReader(directory);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            FacetSuperCollector collector = new FacetSuperCollector(taxoReader, new FacetsConfig(), new DocValuesOrdinalsReader());
+            collector.setExecutor(executor, 4);
+            int size = 5 * FacetSuperCollector.MIN_MERGE_RANGE;
+            for (int n = 1; n <= 3; n++) {
+                int[] values = new int[size];
+                for (int i = 0; i < size; i += 1000)
+                    values[i] = n;
+                collector.denseCounts.add(OrdinalCounts.dense(values));
+            }
+            OrdinalCounts sparse = new OrdinalCounts(size);
+            sparse.add(size - 1, 10);
+            collector.mergePool(sparse);
+            collector.complete();
+
+            int[] merged = collector.getFirstArray();
+            for (int i = 0; i < size - 1; i++)
+                assertEquals(i % 1000 == 0 ? 6 : 0, merged[i]);
+            assertEquals(10, merged[size - 1]);
+        } finally {
+            executor.shutdown();
+            taxoReader.close();
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene.search;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.lucene.facet.DrillDownQuery;
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.search.BooleanClause.Occur;
+import org.apache.lucene.search.BooleanQuery;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.TermQuery;
+import org.apache.lucene.search.WildcardQuery;
+import org.apache.lucene.util.FixedBitSet;
+import org.junit.Test;
+import org.meresco.lucene.queries.KeyFilter;
+
+public class MerescoQueryCachingPolicyTest {
+
+    @Test
+    public void testDrilldownTermsAreCached() throws Exception {
+        FacetsConfig facetsConfig = new FacetsConfig();
+        facetsConfig.setIndexFieldName("genre", "$facets.genre");
+        MerescoQueryCachingPolicy policy = new MerescoQueryCachingPolicy(facetsConfig);
+        Query drilldown = new TermQuery(DrillDownQuery.term(FacetsConfig.DEFAULT_INDEX_FIELD_NAME, "cat", "value"));
+        Query otherDrilldown = new TermQuery(DrillDownQuery.term("$facets.genre", "genre", "novel"));
+        Query term = new TermQuery(new Term("field", "value"));
+        for (int i = 0; i < 3; i++) {
+            assertFalse(policy.shouldCache(drilldown));
+            policy.onUse(drilldown);
+            policy.onUse(otherDrilldown);
+            policy.onUse(term);
+        }
+        assertTrue(policy.shouldCache(drilldown));
+        assertTrue(policy.shouldCache(otherDrilldown));
+        assertFalse(policy.shouldCache(term));
+    }
+
+    @Test
+    public void testFacetsConfigChanged() throws Exception {
+        FacetsConfig facetsConfig = new FacetsConfig();
+        MerescoQueryCachingPolicy policy = new MerescoQueryCachingPolicy(facetsConfig);
+        Query drilldown = new TermQuery(DrillDownQuery.term("$facets.genre", "genre", "novel"));
+        assertTrue(policy.shouldNeverCache(drilldown));
+        facetsConfig.setIndexFieldName("genre", "$facets.genre");
+        assertTrue(policy.shouldNeverCache(drilldown));
+        policy.facetsConfigChanged();
+        assertFalse(policy.shouldNeverCache(drilldown));
+    }
+
+    @Test
+    public void testMinimumFrequencies() throws Exception {
+        MerescoQueryCachingPolicy policy = new MerescoQueryCachingPolicy(new FacetsConfig());
+        Query wildcard = new WildcardQuery(new Term("field", "val*"));
+        Query filters = new BooleanQuery.Builder()
+                .add(new TermQuery(new Term("field", "value")), Occur.FILTER)
+                .add(wildcard, Occur.FILTER)
+                .build();
+        Query keyFilter = new KeyFilter(new FixedBitSet(10), "key");
+        for (int i = 0; i < 2; i++) {
+            policy.onUse(wildcard);
+            policy.onUse(filters);
+            policy.onUse(keyFilter);
+        }
+        assertTrue(policy.shouldCache(wildcard));
+        assertFalse(policy.shouldCache(filters));
+        policy.onUse(filters);
+        policy.onUse(filters);
+        assertTrue(policy.shouldCache(filters));
+        assertFalse(policy.shouldCache(keyFilter));
+    }
+}
@@ -0,0 +1,146 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene.search;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.facet.taxonomy.DocValuesOrdinalsReader;
+import org.apache.lucene.facet.taxonomy.FacetLabel;
+import org.apache.lucene.facet.taxonomy.OrdinalsReader;
+import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyReader;
+import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyWriter;
+import org.apache.lucene.store.ByteBuffersDirectory;
+import org.apache.lucene.store.Directory;
+import org.junit.Test;
+
+public class OrdinalCountsTest {
+
+    @Test
+    public void testSparseUntilTooManyEntries() {
+        OrdinalCounts counts = new OrdinalCounts(1 << 20);
+        assertFalse(counts.isDense());
+        counts.increment(5);
+        counts.increment(5);
+        counts.add(1000000, 3);
+        assertEquals(2, counts.get(5));
+        assertEquals(3, counts.get(1000000));
+        assertEquals(0, counts.get(6));
+        int[] ordinals = counts.ordinals();
+        Arrays.sort(ordinals);
+        assertArrayEquals(new int[] {5, 1000000}, ordinals);
+
+        for (int ord = 0; ord < (1 << 20) >>> 4; ord++)
+            counts.increment(ord * 16);
+        assertTrue(counts.isDense());
+        assertEquals(2, counts.get(5));
+        assertEquals(4, counts.get(1000000));
+        assertEquals(1, counts.get(16));
+        assertEquals(0, counts.get(17));
+    }
+
+    @Test
+    public void testDenseForSmallTaxonomy() {
+        OrdinalCounts counts = new OrdinalCounts(1000);
+        assertTrue(counts.isDense());
+        counts.increment(999);
+        assertEquals(1, counts.toArray()[999]);
+    }
+
+    @Test
+    public void testAddAll() {
+        OrdinalCounts sparse = new OrdinalCounts(10, 0);
+        sparse.increment(1);
+        sparse.increment(9);
+        OrdinalCounts other = new OrdinalCounts(10, 0);
+        other.increment(9);
+        sparse.addAll(other);
+        assertFalse(sparse.isDense());
+        assertEquals(1, sparse.get(1));
+        assertEquals(2, sparse.get(9));
+
+        OrdinalCounts dense = new OrdinalCounts(10);
+        dense.increment(1);
+        sparse.addAll(dense);
+        assertTrue(sparse.isDense());
+        assertArrayEquals(new int[] {0, 2, 0, 0, 0, 0, 0, 0, 0, 2}, sparse.toArray());
+    }
+
+    @Test
+    public void testAddRange() {
+        OrdinalCounts counts = OrdinalCounts.dense(new int[] {1, 1, 1, 1, 1});
+        counts.addRange(OrdinalCounts.dense(new int[] {1, 2, 3, 4, 5}), 1, 4);
+        assertArrayEquals(new int[] {1, 3, 4, 5, 1}, counts.toArray());
+    }
+
+    @Test
+    public void testSparseFacetsAsDense() throws IOException {
+        FacetsConfig config = new FacetsConfig();
+        // Every dim explicitly: LuceneSettings changes the default dim config for the whole JVM.
+        config.setHierarchical("tree", true);
+        config.setMultiValued("flat", false);
+        Directory directory = new ByteBuffersDirectory();
+        DirectoryTaxonomyWriter writer = new DirectoryTaxonomyWriter(directory);
+        int[] leafs = new int[] {
+            writer.addCategory(new FacetLabel("tree", "a", "b")),
+            writer.addCategory(new FacetLabel("tree", "a", "c")),
+            writer.addCategory(new FacetLabel("tree", "d")),
+            writer.addCategory(new FacetLabel("flat", "x")),
+            writer.addCategory(new FacetLabel("flat", "y")),
+            writer.addCategory(new FacetLabel("flat", "z")),
+        };
+        writer.close();
+        DirectoryTaxonomyReader taxoReader = new DirectoryTaxonomyReader(directory);
+        List<OrdinalsReader> ordinalsReaders = Arrays.asList(new DocValuesOrdinalsReader());
+
+        OrdinalCounts dense = new OrdinalCounts(taxoReader.getSize());
+        OrdinalCounts sparse = new OrdinalCounts(taxoReader.getSize(), 0);
+        int[] hits = new int[] {2, 1, 4, 1, 1, 0};
+        for (OrdinalCounts counts : new OrdinalCounts[] {dense, sparse}) {
+            for (int i = 0; i < leafs.length; i++)
+                counts.add(leafs[i], hits[i]);
+        }
+        assertFalse(sparse.isDense());
+        MerescoTaxonomyFacetCounts denseFacets = new MerescoTaxonomyFacetCounts(ordinalsReaders, taxoReader, config, dense);
+        MerescoTaxonomyFacetCounts sparseFacets = new MerescoTaxonomyFacetCounts(ordinalsReaders, taxoReader, config, sparse);
+        denseFacets.rollup();
+        sparseFacets.rollup();
+
+        assertEquals(7, sparseFacets.getSpecificValue("tree"));
+        assertEquals(3, sparseFacets.getSpecificValue("tree", "a"));
+        assertEquals(denseFacets.getTopChildren(10, "tree").toString(), sparseFacets.getTopChildren(10, "tree").toString());
+        assertEquals(denseFacets.getTopChildren(10, "tree", "a").toString(), sparseFacets.getTopChildren(10, "tree", "a").toString());
+        assertEquals(denseFacets.getTopChildren(1, "flat").toString(), sparseFacets.getTopChildren(1, "flat").toString());
+        assertEquals("dim=flat path=[] value=2 childCount=2\n  y (1)\n", sparseFacets.getTopChildren(1, "flat").toString());
+        taxoReader.close();
+    }
+}
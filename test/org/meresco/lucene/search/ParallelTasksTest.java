@@ -0,0 +1,97 @@
+/* begin license *
+ *
+ * "Meresco Lucene" is a set of components and tools to integrate Lucene (based on PyLucene) into Meresco
+ *
+ * Copyright (C) 2026 Seecr (Seek You Too B.V.) https://seecr.nl
+ *
+ * This file is part of "Meresco Lucene"
+ *
+ * "Meresco Lucene" is free software; you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation; either version 2 of the License, or
+ * (at your option) any later version.
+ *
+ * "Meresco Lucene" is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with "Meresco Lucene"; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
+ *
+ * end license */
+
+package org.meresco.lucene.search;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+public class ParallelTasksTest {
+
+    @Test
+    public void testResultsInOrder() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            List<Callable<Integer>> tasks = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                int n = i;
+                tasks.add(() -> n * n);
+            }
+            List<Integer> results = ParallelTasks.invokeAll(executor, tasks);
+            assertEquals(20, results.size());
+            for (int i = 0; i < 20; i++)
+                assertEquals(i * i, (int) results.get(i));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testWithoutExecutorOnCallingThread() throws Exception {
+        Thread caller = Thread.currentThread();
+        List<Callable<Boolean>> tasks = Arrays.asList(() -> Thread.currentThread() == caller, () -> Thread.currentThread() == caller);
+        assertEquals(Arrays.asList(true, true), ParallelTasks.invokeAll(null, tasks));
+    }
+
+    @Test
+    public void testCallerDoesNotWaitForBusyExecutor() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Object lock = new Object();
+            synchronized (lock) {
+                executor.submit(() -> {
+                    synchronized (lock) {
+                    }
+                });
+                List<Callable<String>> tasks = Arrays.asList(() -> "a", () -> "b");
+                assertEquals(Arrays.asList("a", "b"), ParallelTasks.invokeAll(executor, tasks));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testRethrowsIOException() throws Exception {
+        List<Callable<Void>> tasks = Arrays.asList(() -> null, () -> {
+            throw new IOException("failed");
+        });
+        try {
+            ParallelTasks.invokeAll(null, tasks);
+            fail();
+        } catch (IOException e) {
+            assertEquals("failed", e.getMessage());
+        }
+    }
+}